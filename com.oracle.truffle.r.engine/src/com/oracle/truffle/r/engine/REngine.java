@@ -24,8 +24,10 @@ package com.oracle.truffle.r.engine;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 import com.oracle.truffle.api.CallTarget;
@@ -61,17 +63,19 @@ import com.oracle.truffle.r.runtime.ArgumentsSignature;
 import com.oracle.truffle.r.runtime.FastROptions;
 import com.oracle.truffle.r.runtime.JumpToTopLevelException;
 import com.oracle.truffle.r.runtime.ExitException;
+import com.oracle.truffle.r.runtime.ParseCache;
 import com.oracle.truffle.r.runtime.RArguments;
 import com.oracle.truffle.r.runtime.RCaller;
 import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RErrorHandling;
 import com.oracle.truffle.r.runtime.RInternalError;
-import com.oracle.truffle.r.runtime.RParserFactory;
+import com.oracle.truffle.r.runtime.RPerfStats;
 import com.oracle.truffle.r.runtime.RProfile;
 import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.RSource;
 import com.oracle.truffle.r.runtime.RStartParams.SA_TYPE;
 import com.oracle.truffle.r.runtime.ReturnException;
+import com.oracle.truffle.r.runtime.StartupTracer;
 import com.oracle.truffle.r.runtime.SubstituteVirtualFrame;
 import com.oracle.truffle.r.runtime.ThreadTimings;
 import com.oracle.truffle.r.runtime.Utils;
@@ -149,11 +153,18 @@ final class REngine implements Engine, Engine.Timings {
 
     private void initializeShared() {
         suppressWarnings = true;
+        StartupTracer.Span contextSpan = StartupTracer.begin(StartupTracer.Kind.PHASE, "context");
+        long time = System.nanoTime();
+        StartupTracer.Span span = StartupPhase.BASE.begin();
         MaterializedFrame baseFrame = RRuntime.createNonFunctionFrame("base");
         REnvironment.baseInitialize(baseFrame, globalFrame);
         RBuiltinPackages.loadBase(baseFrame);
+        time = StartupPhase.BASE.record(time, span);
+        span = StartupPhase.GRAPHICS.begin();
         RGraphics.initialize();
+        time = StartupPhase.GRAPHICS.record(time, span);
         if (FastROptions.LoadBase.getBooleanValue()) {
+            span = StartupPhase.PROFILES.begin();
             /*
              * eval the system/site/user profiles. Experimentally GnuR does not report warnings
              * during system profile evaluation, but does for the site/user profiles.
@@ -182,6 +193,8 @@ final class REngine implements Engine, Engine.Timings {
                     throw new RInternalError(e, "error while parsing user profile from %s", userProfile.getName());
                 }
             }
+            time = StartupPhase.PROFILES.record(time, span);
+            span = StartupPhase.STARTUP_FUNCTIONS.begin();
             if (!(context.getStartParams().getRestoreAction() == SA_TYPE.NORESTORE)) {
                 // call sys.load.image(".RData", RCmdOption.QUIET
                 checkAndRunStartupShutdownFunction("sys.load.image", new String[]{"\".RData\"", context.getStartParams().getQuiet() ? "TRUE" : "FALSE"});
@@ -189,6 +202,81 @@ final class REngine implements Engine, Engine.Timings {
             }
             checkAndRunStartupShutdownFunction(".First");
             checkAndRunStartupShutdownFunction(".First.sys");
+            StartupPhase.STARTUP_FUNCTIONS.record(time, span);
+        }
+        startedContexts.increment();
+        StartupTracer.end(contextSpan);
+    }
+
+    /**
+     * The phases of {@link #initializeShared}, with the time spent in them accumulated over all
+     * contexts. The phases are also traced by the {@link StartupTracer}.
+     */
+    private enum StartupPhase {
+        BASE("base"),
+        GRAPHICS("graphics"),
+        PROFILES("profiles"),
+        STARTUP_FUNCTIONS("startup.functions");
+
+        private final String name;
+        private final LongAdder nanos = new LongAdder();
+
+        StartupPhase(String name) {
+            this.name = name;
+        }
+
+        StartupTracer.Span begin() {
+            return StartupTracer.begin(StartupTracer.Kind.PHASE, name);
+        }
+
+        /**
+         * Records the time since {@code start}, ends {@code span} and returns the current time.
+         */
+        long record(long start, StartupTracer.Span span) {
+            long now = System.nanoTime();
+            nanos.add(now - start);
+            StartupTracer.end(span);
+            return now;
+        }
+    }
+
+    private static final LongAdder startedContexts = new LongAdder();
+
+    static {
+        RPerfStats.register(new StartupPerfHandler());
+    }
+
+    /**
+     * Reports the time spent in each {@link StartupPhase}.
+     */
+    private static class StartupPerfHandler implements RPerfStats.Handler {
+        @Override
+        public void initialize(String optionText) {
+            // the times are always recorded
+        }
+
+        @Override
+        public String getName() {
+            return "startup";
+        }
+
+        @Override
+        public void report() {
+            RPerfStats.out().printf("Startup of %d contexts:%n", startedContexts.sum());
+            for (StartupPhase phase : StartupPhase.values()) {
+                RPerfStats.out().printf("    %-20s %8d ms%n", phase.name, phase.nanos.sum() / 1000000);
+            }
+            RPerfStats.out().println();
+        }
+
+        @Override
+        public Map<String, Object> getMetrics() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("contexts", startedContexts.sum());
+            for (StartupPhase phase : StartupPhase.values()) {
+                result.put(phase.name + ".ms", phase.nanos.sum() / 1000000);
+            }
+            return result;
         }
     }
 
@@ -272,8 +360,7 @@ final class REngine implements Engine, Engine.Timings {
     }
 
     private static List<RSyntaxNode> parseImpl(Map<String, Object> constants, Source source) throws ParseException {
-        RParserFactory.Parser<RSyntaxNode> parser = RParserFactory.getParser();
-        return parser.script(source, new RASTBuilder(constants));
+        return ParseCache.script(source, new RASTBuilder(constants));
     }
 
     @Override
@@ -285,8 +372,7 @@ final class REngine implements Engine, Engine.Timings {
 
     @Override
     public RFunction parseFunction(Map<String, Object> constants, String name, Source source, MaterializedFrame enclosingFrame) throws ParseException {
-        RParserFactory.Parser<RSyntaxNode> parser = RParserFactory.getParser();
-        RootCallTarget callTarget = parser.rootFunction(source, name, new RASTBuilder(constants));
+        RootCallTarget callTarget = ParseCache.rootFunction(source, name, new RASTBuilder(constants));
         FrameSlotChangeMonitor.initializeEnclosingFrame(callTarget.getRootNode().getFrameDescriptor(), enclosingFrame);
         return RDataFactory.createFunction(name, callTarget, null, enclosingFrame);
     }
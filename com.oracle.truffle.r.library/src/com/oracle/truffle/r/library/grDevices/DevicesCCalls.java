@@ -16,8 +16,11 @@ package com.oracle.truffle.r.library.grDevices;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.r.library.grDevices.pdf.PdfGraphicsDevice;
+import com.oracle.truffle.r.library.grDevices.raster.RasterGraphicsDevice;
 import com.oracle.truffle.r.library.graphics.core.GraphicsEngineImpl;
 import com.oracle.truffle.r.nodes.builtin.RExternalBuiltinNode;
+import com.oracle.truffle.r.runtime.RError;
+import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.data.RArgsValuesAndNames;
 import com.oracle.truffle.r.runtime.data.RNull;
 import com.oracle.truffle.r.runtime.data.RStringVector;
@@ -29,7 +32,8 @@ public class DevicesCCalls {
         @TruffleBoundary
         public Object call(RArgsValuesAndNames args) {
             Object firstArgument = args.getArgument(0);
-            int deviceIndex = castInt(castVector(firstArgument));
+            // the R device numbers start at 1
+            int deviceIndex = castInt(castVector(firstArgument)) - 1;
             GraphicsEngineImpl.getInstance().killGraphicsDeviceByIndex(deviceIndex);
             return RNull.instance;
         }
@@ -40,7 +44,55 @@ public class DevicesCCalls {
         @Override
         @TruffleBoundary
         public Object call(RArgsValuesAndNames args) {
-            return GraphicsEngineImpl.getInstance().getCurrentGraphicsDeviceIndex();
+            return GraphicsEngineImpl.getInstance().getCurrentGraphicsDeviceIndex() + 1;
+        }
+    }
+
+    /**
+     * The entry point of the cairo-based {@code png} and {@code jpeg} devices, which are backed by
+     * the {@link RasterGraphicsDevice}.
+     */
+    public static final class C_DevCairo extends RExternalBuiltinNode {
+        // device types of devCairo (cairoFns.c)
+        private static final int PNG = 2;
+        private static final int JPEG = 3;
+        // antialias = "none"
+        private static final int ANTIALIAS_NONE = 2;
+
+        @Override
+        @TruffleBoundary
+        public Object call(RArgsValuesAndNames args) {
+            RasterGraphicsDevice.Parameters parameters = new RasterGraphicsDevice.Parameters();
+            parameters.filePath = isString(args.getArgument(0));
+            int type = castInt(castVector(args.getArgument(1)));
+            if (type == PNG) {
+                parameters.format = RasterGraphicsDevice.Format.PNG;
+            } else if (type == JPEG) {
+                parameters.format = RasterGraphicsDevice.Format.JPEG;
+            } else {
+                throw RError.error(this, RError.Message.GENERIC, "unsupported device type");
+            }
+            if (parameters.filePath == null || !RasterGraphicsDevice.isValidFilePattern(parameters.filePath)) {
+                throw RError.error(this, RError.Message.INVALID_ARGUMENT, "filename");
+            }
+            parameters.width = castInt(castVector(args.getArgument(2)));
+            parameters.height = castInt(castVector(args.getArgument(3)));
+            if (parameters.width <= 0 || parameters.height <= 0 || RRuntime.isNA(parameters.width) || RRuntime.isNA(parameters.height)) {
+                throw RError.error(this, RError.Message.GENERIC, "invalid 'width' or 'height'");
+            }
+            parameters.pointSize = castDouble(castVector(args.getArgument(4))).getDataAt(0);
+            String bg = isString(args.getArgument(5));
+            if (bg != null) {
+                parameters.bg = bg;
+            }
+            parameters.antialias = castInt(castVector(args.getArgument(7))) != ANTIALIAS_NONE;
+            parameters.quality = castInt(castVector(args.getArgument(8)));
+            try {
+                GraphicsEngineImpl.getInstance().registerGraphicsDevice(new RasterGraphicsDevice(parameters));
+            } catch (Exception e) {
+                throw RError.error(this, RError.Message.GENERIC, e.getMessage());
+            }
+            return RNull.instance;
         }
     }
 
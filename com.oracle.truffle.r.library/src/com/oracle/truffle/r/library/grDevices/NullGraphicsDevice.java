@@ -25,6 +25,11 @@ public final class NullGraphicsDevice implements GraphicsDevice {
         return instance;
     }
 
+    @Override
+    public String getName() {
+        return "null device";
+    }
+
     @Override
     public void deactivate() {
         throw createExceptionForMethod("deactivate");
@@ -40,6 +45,11 @@ public final class NullGraphicsDevice implements GraphicsDevice {
         throw createExceptionForMethod("close");
     }
 
+    @Override
+    public void newPage() {
+        throw createExceptionForMethod("newPage");
+    }
+
     @Override
     public DrawingParameters getDrawingParameters() {
         throw createExceptionForMethod("getDrawingParameters");
@@ -0,0 +1,318 @@
+/*
+ * This material is distributed under the GNU General Public License
+ * Version 2. You may review the terms of this license at
+ * http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Copyright (C) 1995, 1996  Robert Gentleman and Ross Ihaka
+ * Copyright (C) 1998 Ross Ihaka
+ * Copyright (c) 1998--2014, The R Core Team
+ * Copyright (c) 2002--2010, The R Foundation
+ * Copyright (C) 2005--2006, Morten Welinder
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates
+ *
+ * All rights reserved.
+ */
+package com.oracle.truffle.r.library.grDevices.raster;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import com.oracle.truffle.r.library.grDevices.AbstractDisplayListGraphicsDevice;
+import com.oracle.truffle.r.library.graphics.core.drawables.DrawableObject;
+import com.oracle.truffle.r.library.graphics.core.geometry.CoordinateSystem;
+import com.oracle.truffle.r.runtime.RError;
+import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.Utils;
+
+/**
+ * An off-screen device that rasterises into a {@link BufferedImage} and writes the image to a PNG
+ * or JPEG file, the counterpart of GnuR's {@code png} and {@code jpeg} devices. It does not need a
+ * window system and can therefore be used in headless batch runs.
+ *
+ * The drawing operations are collected in a display list and the page is rasterised in one go
+ * when it is complete, i.e., when a new page is started or the device is closed. Each page is
+ * written to its own file if the file name contains an integer format like {@code %03d}, otherwise
+ * every page overwrites the same file. Nothing is written if no page was started. A device only
+ * touches its own display list and image, so devices of different contexts render concurrently.
+ */
+public class RasterGraphicsDevice extends AbstractDisplayListGraphicsDevice {
+
+    public enum Format {
+        PNG("png"),
+        JPEG("jpeg");
+
+        private final String name;
+
+        Format(String name) {
+            this.name = name;
+        }
+    }
+
+    // the flags and conversions of integer formats accepted by checkIntFormat (grDevices/R/utils.R)
+    private static final String INT_FORMAT_FLAGS = "#0 ,+-";
+    private static final String INT_FORMAT_CONVERSIONS = "diouxX";
+
+    private final Parameters parameters;
+    private final String filePattern;
+    private final List<DrawableObject> displayList = new ArrayList<>();
+    private boolean pageStarted;
+    private int pageNumber;
+
+    /**
+     * The file path of the parameters must be accepted by {@link #isValidFilePattern(String)}.
+     */
+    public RasterGraphicsDevice(Parameters parameters) {
+        assert isValidFilePattern(parameters.filePath);
+        this.parameters = parameters;
+        this.filePattern = Utils.tildeExpand(parameters.filePath);
+    }
+
+    @Override
+    public String getName() {
+        return parameters.format.name;
+    }
+
+    @Override
+    public void deactivate() {
+        // nothing to do, the page is kept until the device is closed
+    }
+
+    @Override
+    public void activate() {
+        // nothing to do
+    }
+
+    @Override
+    public void close() {
+        if (pageStarted) {
+            renderPage();
+        }
+    }
+
+    @Override
+    public void newPage() {
+        if (pageStarted) {
+            renderPage();
+        }
+        pageStarted = true;
+    }
+
+    @Override
+    protected void addDrawableObject(DrawableObject drawableObject) {
+        displayList.add(drawableObject);
+        pageStarted = true;
+    }
+
+    private void renderPage() {
+        pageNumber++;
+        BufferedImage image = new BufferedImage(parameters.width, parameters.height, parameters.format == Format.JPEG ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        try {
+            if (parameters.antialias) {
+                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            }
+            Color background = parseColor(parameters.bg);
+            if (background.getAlpha() > 0 || parameters.format == Format.JPEG) {
+                g2.setColor(background.getAlpha() > 0 ? background : Color.WHITE);
+                g2.fillRect(0, 0, parameters.width, parameters.height);
+            }
+            g2.setColor(Color.BLACK);
+            CoordinateSystem coordinateSystem = new CoordinateSystem(0, parameters.width, 0, parameters.height);
+            for (DrawableObject drawableObject : displayList) {
+                drawableObject.recalculateForDrawingIn(coordinateSystem);
+                drawableObject.drawOn(g2);
+            }
+        } finally {
+            g2.dispose();
+        }
+        displayList.clear();
+        String fileName = formatFileName(filePattern, pageNumber);
+        try {
+            write(image, new File(fileName));
+        } catch (IOException e) {
+            throw RError.error(RError.SHOW_CALLER, RError.Message.CANNOT_OPEN_FILE, fileName, e.getMessage());
+        }
+    }
+
+    private void write(BufferedImage image, File file) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(parameters.format.name);
+        if (!writers.hasNext()) {
+            throw new IOException("no image writer for " + parameters.format.name);
+        }
+        ImageWriter writer = writers.next();
+        // the output stream does not truncate an existing file
+        file.delete();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+            if (out == null) {
+                throw new IOException("cannot create output stream");
+            }
+            writer.setOutput(out);
+            ImageWriteParam writeParam = writer.getDefaultWriteParam();
+            if (parameters.format == Format.JPEG) {
+                writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                writeParam.setCompressionQuality(Math.max(0, Math.min(100, parameters.quality)) / 100f);
+            }
+            writer.write(null, new IIOImage(image, null, null), writeParam);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Checks the file name like {@code checkIntFormat} in GnuR, i.e., apart from {@code %%} it may
+     * contain at most one integer format like {@code %d} or {@code %03d}, which is replaced by the
+     * page number.
+     */
+    public static boolean isValidFilePattern(String pattern) {
+        int formats = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            if (pattern.charAt(i) == '%') {
+                if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '%') {
+                    i++;
+                    continue;
+                }
+                int end = skipIntFormat(pattern, i + 1);
+                if (end < 0 || ++formats > 1) {
+                    return false;
+                }
+                i = end - 1;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index after the flags, width and conversion of an integer format starting at
+     * {@code start} (after the {@code %}), or {@code -1} if there is none.
+     */
+    private static int skipIntFormat(String pattern, int start) {
+        int i = start;
+        while (i < pattern.length() && INT_FORMAT_FLAGS.indexOf(pattern.charAt(i)) >= 0) {
+            i++;
+        }
+        while (i < pattern.length() && Character.isDigit(pattern.charAt(i))) {
+            i++;
+        }
+        return i < pattern.length() && INT_FORMAT_CONVERSIONS.indexOf(pattern.charAt(i)) >= 0 ? i + 1 : -1;
+    }
+
+    /**
+     * Formats the page number like C's {@code sprintf} would, which is not the same as
+     * {@link String#format} for all flags and conversions that {@code checkIntFormat} accepts.
+     */
+    private static String formatFileName(String pattern, int page) {
+        StringBuilder result = new StringBuilder(pattern.length() + 8);
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c != '%') {
+                result.append(c);
+            } else if (pattern.charAt(i + 1) == '%') {
+                result.append('%');
+                i++;
+            } else {
+                int flagsEnd = i + 1;
+                while (INT_FORMAT_FLAGS.indexOf(pattern.charAt(flagsEnd)) >= 0) {
+                    flagsEnd++;
+                }
+                int end = skipIntFormat(pattern, i + 1);
+                String flags = pattern.substring(i + 1, flagsEnd);
+                int width = flagsEnd == end - 1 ? 0 : Integer.parseInt(pattern.substring(flagsEnd, end - 1));
+                appendPageNumber(result, page, flags, width, pattern.charAt(end - 1));
+                i = end - 1;
+            }
+        }
+        return result.toString();
+    }
+
+    private static void appendPageNumber(StringBuilder result, int page, String flags, int width, char conversion) {
+        String prefix = "";
+        String digits;
+        switch (conversion) {
+            case 'o':
+                digits = Integer.toOctalString(page);
+                prefix = flags.indexOf('#') >= 0 ? "0" : "";
+                break;
+            case 'x':
+                digits = Integer.toHexString(page);
+                prefix = flags.indexOf('#') >= 0 ? "0x" : "";
+                break;
+            case 'X':
+                digits = Integer.toHexString(page).toUpperCase();
+                prefix = flags.indexOf('#') >= 0 ? "0X" : "";
+                break;
+            default:
+                digits = Integer.toString(page);
+                if (flags.indexOf('+') >= 0) {
+                    prefix = "+";
+                } else if (flags.indexOf(' ') >= 0) {
+                    prefix = " ";
+                }
+                break;
+        }
+        int padding = Math.max(0, width - prefix.length() - digits.length());
+        if (flags.indexOf('-') >= 0) {
+            result.append(prefix).append(digits);
+            appendRepeated(result, ' ', padding);
+        } else if (flags.indexOf('0') >= 0) {
+            result.append(prefix);
+            appendRepeated(result, '0', padding);
+            result.append(digits);
+        } else {
+            appendRepeated(result, ' ', padding);
+            result.append(prefix).append(digits);
+        }
+    }
+
+    private static void appendRepeated(StringBuilder result, char c, int count) {
+        for (int i = 0; i < count; i++) {
+            result.append(c);
+        }
+    }
+
+    /**
+     * Supports {@code "transparent"} and the {@code "#RRGGBB"} and {@code "#RRGGBBAA"} notations,
+     * anything else is white.
+     */
+    private static Color parseColor(String color) {
+        if (color == null || RRuntime.isNA(color) || "transparent".equals(color)) {
+            return new Color(255, 255, 255, 0);
+        }
+        if (color.length() == 7 || color.length() == 9) {
+            try {
+                if (color.charAt(0) == '#') {
+                    int rgb = Integer.parseInt(color.substring(1, 7), 16);
+                    int alpha = color.length() == 9 ? Integer.parseInt(color.substring(7), 16) : 255;
+                    return new Color(rgb >> 16, (rgb >> 8) & 0xFF, rgb & 0xFF, alpha);
+                }
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+        }
+        return Color.WHITE;
+    }
+
+    public static class Parameters {
+        public String filePath = "Rplot%03d.png";
+        public Format format = Format.PNG;
+        public int width = 480;
+        public int height = 480;
+        public double pointSize = 12.;
+        public String bg = "white";
+        public boolean antialias = true;
+        public int quality = 75;
+    }
+}
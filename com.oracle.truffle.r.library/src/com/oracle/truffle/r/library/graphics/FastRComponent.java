@@ -81,4 +81,11 @@ public class FastRComponent extends JComponent {
             repaint();
         }
     }
+
+    public void clearDisplayList() {
+        synchronized (displayList) {
+            displayList.clear();
+        }
+        repaint();
+    }
 }
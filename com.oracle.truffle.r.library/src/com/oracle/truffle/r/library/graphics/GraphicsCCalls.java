@@ -56,8 +56,9 @@ public class GraphicsCCalls {
         }
 
         private static void setClipRect() {
-            // todo Transcrive from Gclip() (graphics.c)
-            getGraphicsEngine().setCurrentGraphicsDeviceClipRect(0, 0, 0, 0);
+            // Gclip() (graphics.c) clips to the plot region with the default par(xpd = FALSE), which
+            // is the unit square of the coordinates as par(usr) is not supported
+            getGraphicsEngine().setCurrentGraphicsDeviceClipRect(0, 0, 1, 1);
         }
 
         private static GraphicsDevice getCurrentGraphicsDevice() {
@@ -69,6 +70,18 @@ public class GraphicsCCalls {
         }
     }
 
+    public static final class C_PlotNew extends RExternalBuiltinNode {
+
+        @Override
+        @TruffleBoundary
+        public RNull call(RArgsValuesAndNames args) {
+            // GNewPlot (graphics.c) starts a new page only when the layout of par(mfrow) etc. is
+            // full, without par() support every plot has the default layout of a single figure
+            GraphicsEngineImpl.getInstance().newPage();
+            return RNull.instance;
+        }
+    }
+
     public static final class C_Par extends RExternalBuiltinNode {
 
         @Override
@@ -35,8 +35,9 @@ import com.oracle.truffle.r.runtime.ffi.RFFIFactory;
  * <li>Native graphics from GnuR</li>
  * <li>Internal (Java) graphics, very incomplete implementation</li>
  * </ul>
- * The default is native graphics, selected by a startup option. Graphics is not virtualized, so
- * multiple contexts all share the same underlying implementation which is initialized exactly once.
+ * The default is native graphics, selected by a startup option. Native graphics is not virtualized,
+ * so multiple contexts all share the same underlying implementation which is initialized exactly
+ * once. The internal graphics engine and its devices are per context.
  *
  */
 public class RGraphics {
@@ -52,19 +53,18 @@ public class RGraphics {
     private static final AtomicBoolean initialized = new AtomicBoolean();
 
     public static void initialize() {
-        if (initialized.compareAndSet(false, true)) {
-            if (FastROptions.UseInternalGraphics.getBooleanValue()) {
-                REnvironment baseEnv = REnvironment.baseEnv();
-                baseEnv.safePut(DOT_DEVICE, NULL_DEVICE);
-                RPairList devices = RDataFactory.createPairList(NULL_DEVICE);
-                baseEnv.safePut(DOT_DEVICES, devices);
-                registerBaseGraphicsSystem();
-            } else {
-                DLL.RegisteredNativeSymbol rns = DLL.RegisteredNativeSymbol.any();
-                long func = DLL.findSymbol("InitGraphics", null, rns);
-                assert func != DLL.SYMBOL_NOT_FOUND;
-                RFFIFactory.getRFFI().getCallRFFI().invokeVoidCall(func, "InitGraphics", new Object[0]);
-            }
+        if (FastROptions.UseInternalGraphics.getBooleanValue()) {
+            // the internal graphics engine is per context
+            REnvironment baseEnv = REnvironment.baseEnv();
+            baseEnv.safePut(DOT_DEVICE, NULL_DEVICE);
+            RPairList devices = RDataFactory.createPairList(NULL_DEVICE);
+            baseEnv.safePut(DOT_DEVICES, devices);
+            registerBaseGraphicsSystem();
+        } else if (initialized.compareAndSet(false, true)) {
+            DLL.RegisteredNativeSymbol rns = DLL.RegisteredNativeSymbol.any();
+            long func = DLL.findSymbol("InitGraphics", null, rns);
+            assert func != DLL.SYMBOL_NOT_FOUND;
+            RFFIFactory.getRFFI().getCallRFFI().invokeVoidCall(func, "InitGraphics", new Object[0]);
         }
     }
 
@@ -17,12 +17,22 @@ package com.oracle.truffle.r.library.graphics.core;
 import com.oracle.truffle.r.library.graphics.core.geometry.Coordinates;
 
 public interface GraphicsDevice {
+    /**
+     * The name of the device as listed in {@code .Devices}.
+     */
+    String getName();
+
     void deactivate();
 
     void activate();
 
     void close();
 
+    /**
+     * Starts a new page, which completes the current page if anything was drawn on it.
+     */
+    void newPage();
+
     DrawingParameters getDrawingParameters();
 
     void setMode(Mode newMode);
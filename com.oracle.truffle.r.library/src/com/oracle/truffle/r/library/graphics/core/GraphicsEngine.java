@@ -57,6 +57,11 @@ public interface GraphicsEngine {
 
     void drawPolyline(Coordinates coordinates, DrawingParameters drawingParameters);
 
+    /**
+     * Starts a new page on the current device, installing one if there is none.
+     */
+    void newPage();
+
     void killGraphicsDeviceByIndex(int graphicsDeviceIndex);
 
     int getCurrentGraphicsDeviceIndex();
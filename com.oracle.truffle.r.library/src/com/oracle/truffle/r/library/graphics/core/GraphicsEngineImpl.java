@@ -17,12 +17,26 @@ package com.oracle.truffle.r.library.graphics.core;
 import static com.oracle.truffle.r.library.graphics.core.GraphicsEvent.GE_FINAL_STATE;
 import static com.oracle.truffle.r.library.graphics.core.GraphicsEvent.GE_INIT_STATE;
 
+import java.awt.GraphicsEnvironment;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 import com.oracle.truffle.r.library.grDevices.NullGraphicsDevice;
 import com.oracle.truffle.r.library.grDevices.fastrgd.FastRGraphicsDevice;
+import com.oracle.truffle.r.library.grDevices.raster.RasterGraphicsDevice;
 import com.oracle.truffle.r.library.graphics.core.geometry.Coordinates;
 import com.oracle.truffle.r.runtime.Utils;
+import com.oracle.truffle.r.runtime.context.RContext;
+import com.oracle.truffle.r.runtime.data.RDataFactory;
+import com.oracle.truffle.r.runtime.data.RNull;
+import com.oracle.truffle.r.runtime.env.REnvironment;
 
 // todo implement 'active' devices array from devices.c
+/**
+ * The devices are per context. The {@code .Devices} and {@code .Device} variables that describe
+ * them are written to the base environment of the context that changes the devices.
+ */
 public final class GraphicsEngineImpl implements GraphicsEngine {
     // GNUR: GraphicsEngine.h (original value: 24)
     private static final int MAX_GRAPHICS_SYSTEMS_AMOUNT = 48;
@@ -30,7 +44,9 @@ public final class GraphicsEngineImpl implements GraphicsEngine {
     private static final int NULL_GRAPHICS_DEVICE_INDEX = 0;
     private static final int LAST_GRAPHICS_DEVICE_INDEX = MAX_GRAPHICS_DEVICES_AMOUNT - 1;
     private static final int NOT_FOUND = -1;
-    private static final GraphicsEngine instance = new GraphicsEngineImpl();
+    private static final String DOT_DEVICE = ".Device";
+    private static final String DOT_DEVICES = ".Devices";
+    private static final Map<RContext, GraphicsEngine> instances = Collections.synchronizedMap(new WeakHashMap<>());
 
     /**
      * According to GNUR devices.c: 0 - null device, 63 - empty.
@@ -43,7 +59,7 @@ public final class GraphicsEngineImpl implements GraphicsEngine {
     private CurrentGraphicsDevice currentGraphicsDevice = new CurrentGraphicsDevice(NullGraphicsDevice.getInstance(), NULL_GRAPHICS_DEVICE_INDEX);
 
     public static GraphicsEngine getInstance() {
-        return instance;
+        return instances.computeIfAbsent(RContext.getInstance(), context -> new GraphicsEngineImpl());
     }
 
     private GraphicsEngineImpl() {
@@ -132,6 +148,7 @@ public final class GraphicsEngineImpl implements GraphicsEngine {
         currentGraphicsDevice = new CurrentGraphicsDevice(newGraphicsDevice, index);
         notifyEachGraphicsSystem(newGraphicsDevice, GE_INIT_STATE);
         newGraphicsDevice.activate();
+        updateDevicesVariables();
     }
 
     private void notifyEachGraphicsSystem(GraphicsDevice graphicsDevice, GraphicsEvent event) {
@@ -148,25 +165,54 @@ public final class GraphicsEngineImpl implements GraphicsEngine {
         if (deviceToUnregister == null) {
             throw new NullPointerException("Graphics device to unregister is null");
         }
-        doUnregisterGraphicsDevice(deviceToUnregister);
         GraphicsDevice nextGraphicsDevice = getGraphicsDeviceNextTo(deviceToUnregister);
-        int index = findElementIndexInArray(nextGraphicsDevice, graphicsDevices);
-        currentGraphicsDevice = new CurrentGraphicsDevice(nextGraphicsDevice, index);
-        nextGraphicsDevice.activate();
+        if (!doUnregisterGraphicsDevice(deviceToUnregister)) {
+            return;
+        }
+        if (nextGraphicsDevice != getNullGraphicsDevice()) {
+            int index = findElementIndexInArray(nextGraphicsDevice, graphicsDevices);
+            currentGraphicsDevice = new CurrentGraphicsDevice(nextGraphicsDevice, index);
+            nextGraphicsDevice.activate();
+        }
+        updateDevicesVariables();
+        // the device may write its output when closed, which can fail
+        deviceToUnregister.close();
         // todo Interesting that in GNUR a GraphicsSystem is not notified when a GraphicsDevice is
         // killed
     }
 
-    private void doUnregisterGraphicsDevice(GraphicsDevice deviceToUnregister) {
+    private boolean doUnregisterGraphicsDevice(GraphicsDevice deviceToUnregister) {
         int index = findElementIndexInArray(deviceToUnregister, graphicsDevices);
         if (index == NOT_FOUND) {
             issueWarning("no graphics device to unregister");
-            return;
+            return false;
         }
         graphicsDevices[index] = null;
         devicesAmountWithoutNullDevice--;
         currentGraphicsDevice = new CurrentGraphicsDevice(getNullGraphicsDevice(), NULL_GRAPHICS_DEVICE_INDEX);
-        deviceToUnregister.close();
+        return true;
+    }
+
+    /**
+     * Updates {@code .Devices} and {@code .Device} in the base environment like
+     * {@code GEaddDevice} and {@code killDevice} (devices.c), i.e., {@code .Devices} lists the
+     * names of the devices by index with {@code ""} for unused indices.
+     */
+    private void updateDevicesVariables() {
+        int last = NULL_GRAPHICS_DEVICE_INDEX;
+        for (int i = NULL_GRAPHICS_DEVICE_INDEX + 1; i < LAST_GRAPHICS_DEVICE_INDEX; i++) {
+            if (graphicsDevices[i] != null) {
+                last = i;
+            }
+        }
+        Object devices = RNull.instance;
+        for (int i = last; i >= NULL_GRAPHICS_DEVICE_INDEX; i--) {
+            String name = graphicsDevices[i] == null ? "" : graphicsDevices[i].getName();
+            devices = RDataFactory.createPairList(RDataFactory.createStringVectorFromScalar(name), devices);
+        }
+        REnvironment baseEnv = REnvironment.baseEnv();
+        baseEnv.safePut(DOT_DEVICES, devices);
+        baseEnv.safePut(DOT_DEVICE, RDataFactory.createStringVectorFromScalar(currentGraphicsDevice.graphicsDevice.getName()));
     }
 
     @Override
@@ -202,7 +248,12 @@ public final class GraphicsEngineImpl implements GraphicsEngine {
     }
 
     private void installCurrentGraphicsDevice() throws Exception {
-        registerGraphicsDevice(new FastRGraphicsDevice());
+        if (GraphicsEnvironment.isHeadless()) {
+            // there is no window to draw into, write the plots to Rplot001.png etc.
+            registerGraphicsDevice(new RasterGraphicsDevice(new RasterGraphicsDevice.Parameters()));
+        } else {
+            registerGraphicsDevice(new FastRGraphicsDevice());
+        }
     }
 
     @Override
@@ -276,7 +327,7 @@ public final class GraphicsEngineImpl implements GraphicsEngine {
                     }
                 }
         }
-        return getNullGraphicsDevice();
+        return null;
     }
 
     private GraphicsDevice getNullGraphicsDevice() {
@@ -285,8 +336,8 @@ public final class GraphicsEngineImpl implements GraphicsEngine {
 
     @Override
     public void setCurrentGraphicsDeviceClipRect(double x1, double y1, double x2, double y2) {
-        // todo transcribe from GESetClip() (engine.c)
-        getCurrentGraphicsDevice().setClipRect(0, 0, 0, 0);
+        // like GESetClip() (engine.c), the device gets the corners in increasing order
+        getCurrentGraphicsDevice().setClipRect(Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2), Math.max(y1, y2));
     }
 
     @Override
@@ -294,9 +345,21 @@ public final class GraphicsEngineImpl implements GraphicsEngine {
         getCurrentGraphicsDevice().drawPolyline(coordinates, drawingParameters);
     }
 
+    @Override
+    public void newPage() {
+        // GENewPage() (engine.c) also clears the display list of the engine, which does not exist
+        // here as the devices keep their own
+        getCurrentGraphicsDevice().newPage();
+    }
+
     @Override
     public void killGraphicsDeviceByIndex(int graphicsDeviceIndex) {
-        // todo TBD
+        if (graphicsDeviceIndex > NULL_GRAPHICS_DEVICE_INDEX && graphicsDeviceIndex < LAST_GRAPHICS_DEVICE_INDEX) {
+            GraphicsDevice graphicsDevice = graphicsDevices[graphicsDeviceIndex];
+            if (graphicsDevice != null) {
+                unRegisterGraphicsDevice(graphicsDevice);
+            }
+        }
     }
 
     private final class CurrentGraphicsDevice {
@@ -0,0 +1,44 @@
+/*
+ * This material is distributed under the GNU General Public License
+ * Version 2. You may review the terms of this license at
+ * http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Copyright (C) 1995, 1996  Robert Gentleman and Ross Ihaka
+ * Copyright (C) 1998 Ross Ihaka
+ * Copyright (c) 1998--2014, The R Core Team
+ * Copyright (c) 2002--2010, The R Foundation
+ * Copyright (C) 2005--2006, Morten Welinder
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates
+ *
+ * All rights reserved.
+ */
+package com.oracle.truffle.r.library.graphics.core.drawables;
+
+import java.awt.Graphics2D;
+
+import com.oracle.truffle.r.library.graphics.core.geometry.CoordinateSystem;
+import com.oracle.truffle.r.library.graphics.core.geometry.Coordinates;
+
+/**
+ * Sets the clip of {@link Graphics2D} for the objects that follow it in a display list to the
+ * rectangle with the two given corners, or removes the clip if there are no coordinates.
+ */
+public class ClipDrawableObject extends CoordinatesDrawableObject {
+    public ClipDrawableObject(CoordinateSystem coordinateSystem, Coordinates corners) {
+        super(coordinateSystem, corners);
+    }
+
+    @Override
+    public void drawOn(Graphics2D g2) {
+        Coordinates coords = getDstCoordinates();
+        int[] xCoords = coords.getXCoordinatesAsInts();
+        int[] yCoords = coords.getYCoordinatesAsInts();
+        if (xCoords.length < 2) {
+            g2.setClip(null);
+        } else {
+            int x = Math.min(xCoords[0], xCoords[1]);
+            int y = Math.min(yCoords[0], yCoords[1]);
+            g2.setClip(x, y, Math.abs(xCoords[1] - xCoords[0]) + 1, Math.abs(yCoords[1] - yCoords[0]) + 1);
+        }
+    }
+}
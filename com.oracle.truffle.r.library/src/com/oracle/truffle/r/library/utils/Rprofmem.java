@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.library.utils;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.r.nodes.builtin.RExternalBuiltinNode;
+import com.oracle.truffle.r.runtime.RError;
+import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.context.RContext;
+import com.oracle.truffle.r.runtime.data.RNull;
+import com.oracle.truffle.r.runtime.data.model.RAbstractStringVector;
+import com.oracle.truffle.r.runtime.instrument.AllocationProfiler;
+
+/**
+ * Implements {@code Rprofmem} on top of {@link AllocationProfiler}. Every vector allocation of at
+ * least {@code threshold} bytes is written to the file, GnuR does not report allocations of small
+ * vectors individually either. The sizes are those of the vector data.
+ */
+public abstract class Rprofmem extends RExternalBuiltinNode.Arg3 {
+
+    private static final int MAX_DEPTH = 100;
+
+    @Specialization
+    @TruffleBoundary
+    public Object doRprofmem(RAbstractStringVector filenameVec, byte appendL, double thresholdD) {
+        if (!RContext.getInstance().isInitial()) {
+            throw RError.error(this, RError.Message.GENERIC, "profiling not supported in created contexts");
+        }
+        String filename = filenameVec.getDataAt(0);
+        if (filename.length() == 0) {
+            // disable
+            AllocationProfiler.stop();
+        } else {
+            try {
+                PrintWriter out = new PrintWriter(new FileWriter(filename, RRuntime.fromLogical(appendL)));
+                long threshold = Double.isNaN(thresholdD) ? 0 : (long) thresholdD;
+                AllocationProfiler.start(new AllocationProfiler(0, threshold, MAX_DEPTH, out));
+            } catch (IOException ex) {
+                throw RError.error(this, RError.Message.GENERIC, String.format("Rprofmem: cannot open output file '%s'", filename));
+            }
+        }
+        return RNull.instance;
+    }
+}
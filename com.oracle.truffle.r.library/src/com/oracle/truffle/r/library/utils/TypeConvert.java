@@ -23,125 +23,213 @@
 package com.oracle.truffle.r.library.utils;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.TreeSet;
 
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.r.nodes.builtin.RExternalBuiltinNode;
+import com.oracle.truffle.r.runtime.NumberParser;
+import com.oracle.truffle.r.runtime.RError;
+import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.data.RDataFactory;
-import com.oracle.truffle.r.runtime.data.RDoubleVector;
 import com.oracle.truffle.r.runtime.data.RIntVector;
-import com.oracle.truffle.r.runtime.data.RLogicalVector;
 import com.oracle.truffle.r.runtime.data.RVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractStringVector;
 
 public abstract class TypeConvert extends RExternalBuiltinNode.Arg5 {
 
-    private static boolean isNA(String s, RAbstractStringVector naStrings) {
-        // naStrings are in addition to NA_character_
-        if (RRuntime.isNA(s)) {
-            return true;
-        }
+    private static Set<String> createNAStrings(RAbstractStringVector naStrings) {
+        HashSet<String> result = new HashSet<>(naStrings.getLength() * 2);
         for (int i = 0; i < naStrings.getLength(); i++) {
-            if (s.equals(naStrings.getDataAt(i))) {
-                return true;
+            result.add(naStrings.getDataAt(i));
+        }
+        return result;
+    }
+
+    private static boolean isBlank(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isWhitespace(s.charAt(i))) {
+                return false;
             }
         }
-        return false;
+        return true;
     }
 
-    /*
-     * In the next three methods, firstPos is the index of the first element in the vector that is
-     * not isNA(elem, naStrings). However, there may be isNA values after that.
+    /**
+     * Infers the narrowest of logical, integer and double that can represent all elements of a
+     * column in a single pass, parsing the elements into the primitive array of the current type
+     * as it goes. When an element requires a wider type, the values parsed so far are converted
+     * (integer to double), or the inference ends (logical or double to character). As in GnuR,
+     * {@code NA}s, {@code na.strings} and blank strings do not take part in the inference.
      */
+    private static final class ColumnParser {
+        private static final int UNKNOWN = 0;
+        private static final int LOGICAL = 1;
+        private static final int INTEGER = 2;
+        private static final int DOUBLE = 3;
+        private static final int CHARACTER = 4;
 
-    private static RIntVector readIntVector(RAbstractStringVector x, int firstPos, int firstVal, RAbstractStringVector naStrings) {
-        int[] data = new int[x.getLength()];
-        Arrays.fill(data, 0, firstPos, RRuntime.INT_NA);
-        boolean complete = RDataFactory.COMPLETE_VECTOR;
-        data[firstPos] = firstVal;
-        for (int i = firstPos + 1; i < data.length; i++) {
-            String s = x.getDataAt(i);
-            boolean isNA = isNA(s, naStrings);
-            data[i] = isNA ? RRuntime.INT_NA : RRuntime.string2intNoCheck(s, true);
-            complete = complete && !isNA;
-        }
-        return RDataFactory.createIntVector(data, complete);
-    }
+        private final RAbstractStringVector x;
+        private final Set<String> naStrings;
+        private final char dec;
+        private int type = UNKNOWN;
+        private boolean complete = RDataFactory.COMPLETE_VECTOR;
+        private byte[] logicals;
+        private int[] ints;
+        private double[] doubles;
 
-    private static RDoubleVector readDoubleVector(RAbstractStringVector x, int firstPos, double firstVal, RAbstractStringVector naStrings) {
-        double[] data = new double[x.getLength()];
-        Arrays.fill(data, 0, firstPos, RRuntime.DOUBLE_NA);
-        boolean complete = RDataFactory.COMPLETE_VECTOR;
-        data[firstPos] = firstVal;
-        for (int i = firstPos + 1; i < data.length; i++) {
-            String s = x.getDataAt(i);
-            boolean isNA = isNA(s, naStrings);
-            data[i] = isNA ? RRuntime.DOUBLE_NA : RRuntime.string2doubleNoCheck(s, true);
-            complete = complete && !isNA;
-        }
-        return RDataFactory.createDoubleVector(data, complete);
-    }
+        /**
+         * The result of the last successful {@link #parseDouble}.
+         */
+        private double doubleValue;
 
-    private static RLogicalVector readLogicalVector(RAbstractStringVector x, int firstPos, byte firstVal, RAbstractStringVector naStrings) {
-        byte[] data = new byte[x.getLength()];
-        Arrays.fill(data, 0, firstPos, RRuntime.LOGICAL_NA);
-        boolean complete = RDataFactory.COMPLETE_VECTOR;
-        data[firstPos] = firstVal;
-        for (int i = firstPos + 1; i < data.length; i++) {
-            String s = x.getDataAt(i);
-            boolean isNA = isNA(s, naStrings);
-            data[i] = isNA ? RRuntime.LOGICAL_NA : RRuntime.string2logicalNoCheck(s, true);
-            complete = complete && !isNA;
+        ColumnParser(RAbstractStringVector x, Set<String> naStrings, char dec) {
+            this.x = x;
+            this.naStrings = naStrings;
+            this.dec = dec;
         }
-        return RDataFactory.createLogicalVector(data, complete);
-    }
 
-    @Specialization
-    protected Object typeConvert(RAbstractStringVector x, RAbstractStringVector naStrings, byte asIs, @SuppressWarnings("unused") Object dec, @SuppressWarnings("unused") Object numeral) {
-        if (x.getLength() == 0) {
-            return RDataFactory.createEmptyLogicalVector();
+        boolean isNA(String s) {
+            return RRuntime.isNA(s) || naStrings.contains(s);
         }
 
-        int i = 0;
-        while (isNA(x.getDataAt(i), naStrings) && i < x.getLength()) {
-            i++;
+        /**
+         * Returns the converted vector, or {@code null} if the column is not numeric or logical.
+         */
+        RVector parse() {
+            int length = x.getLength();
+            for (int i = 0; i < length; i++) {
+                String s = x.getDataAt(i);
+                if (isNA(s) || isBlank(s)) {
+                    complete = RDataFactory.INCOMPLETE_VECTOR;
+                    setNA(i);
+                    continue;
+                }
+                if (!parseElement(s, i)) {
+                    type = CHARACTER;
+                    return null;
+                }
+            }
+            switch (type) {
+                case UNKNOWN:
+                    // all NAs
+                    byte[] data = new byte[length];
+                    Arrays.fill(data, RRuntime.LOGICAL_NA);
+                    return RDataFactory.createLogicalVector(data, RDataFactory.INCOMPLETE_VECTOR);
+                case LOGICAL:
+                    return RDataFactory.createLogicalVector(logicals, complete);
+                case INTEGER:
+                    return RDataFactory.createIntVector(ints, complete);
+                case DOUBLE:
+                    return RDataFactory.createDoubleVector(doubles, complete);
+                default:
+                    throw RInternalError.shouldNotReachHere();
+            }
         }
 
-        if (i == x.getLength()) {
-            // all NAs
-            byte[] data = new byte[i];
-            Arrays.fill(data, RRuntime.LOGICAL_NA);
-            return RDataFactory.createLogicalVector(data, RDataFactory.INCOMPLETE_VECTOR);
+        private void setNA(int i) {
+            switch (type) {
+                case LOGICAL:
+                    logicals[i] = RRuntime.LOGICAL_NA;
+                    break;
+                case INTEGER:
+                    ints[i] = RRuntime.INT_NA;
+                    break;
+                case DOUBLE:
+                    doubles[i] = RRuntime.DOUBLE_NA;
+                    break;
+                default:
+                    // the leading NAs are filled in once the type is known
+                    break;
+            }
         }
 
-        String s = x.getDataAt(i);
-        try {
-            int intVal = RRuntime.string2intNoCheck(s, true);
-            return readIntVector(x, i, intVal, naStrings);
-        } catch (NumberFormatException ix) {
-            try {
-                double doubleVal = RRuntime.string2doubleNoCheck(s, true);
-                try {
-                    return readDoubleVector(x, i, doubleVal, naStrings);
-                } catch (NumberFormatException lx) {
-                    // fall through
-                }
-            } catch (NumberFormatException dx) {
-                try {
-                    byte logicalVal = RRuntime.string2logicalNoCheck(s, true);
-                    try {
-                        return readLogicalVector(x, i, logicalVal, naStrings);
-                    } catch (NumberFormatException lx) {
-                        // fall through
+        private boolean parseElement(String s, int i) {
+            switch (type) {
+                case UNKNOWN:
+                    byte logical = RRuntime.string2logicalNoCheck(s);
+                    if (logical != RRuntime.LOGICAL_NA) {
+                        type = LOGICAL;
+                        logicals = new byte[x.getLength()];
+                        Arrays.fill(logicals, 0, i, RRuntime.LOGICAL_NA);
+                        logicals[i] = logical;
+                        return true;
                     }
-                } catch (NumberFormatException lx) {
-                    // fall through
-                }
+                    int intValue = NumberParser.parseInt(s);
+                    if (intValue != RRuntime.INT_NA) {
+                        type = INTEGER;
+                        ints = new int[x.getLength()];
+                        Arrays.fill(ints, 0, i, RRuntime.INT_NA);
+                        ints[i] = intValue;
+                        return true;
+                    }
+                    if (parseDouble(s)) {
+                        type = DOUBLE;
+                        doubles = new double[x.getLength()];
+                        Arrays.fill(doubles, 0, i, RRuntime.DOUBLE_NA);
+                        doubles[i] = doubleValue;
+                        return true;
+                    }
+                    return false;
+                case LOGICAL:
+                    logicals[i] = RRuntime.string2logicalNoCheck(s);
+                    return logicals[i] != RRuntime.LOGICAL_NA;
+                case INTEGER:
+                    ints[i] = NumberParser.parseInt(s);
+                    if (ints[i] != RRuntime.INT_NA) {
+                        return true;
+                    }
+                    if (parseDouble(s)) {
+                        widenToDouble(i);
+                        doubles[i] = doubleValue;
+                        return true;
+                    }
+                    return false;
+                case DOUBLE:
+                    if (parseDouble(s)) {
+                        doubles[i] = doubleValue;
+                        return true;
+                    }
+                    return false;
+                default:
+                    throw RInternalError.shouldNotReachHere();
+            }
+        }
+
+        private void widenToDouble(int end) {
+            type = DOUBLE;
+            doubles = new double[x.getLength()];
+            for (int j = 0; j < end; j++) {
+                doubles[j] = RRuntime.int2double(ints[j]);
             }
+            ints = null;
+        }
+
+        private boolean parseDouble(String s) {
+            doubleValue = NumberParser.parseDouble(s, 0, s.length(), dec);
+            return !RRuntime.isNA(doubleValue);
+        }
+    }
+
+    @Specialization
+    protected Object typeConvert(RAbstractStringVector x, RAbstractStringVector naStrings, byte asIs, Object dec, @SuppressWarnings("unused") Object numeral) {
+        if (!(dec instanceof RAbstractStringVector) || ((RAbstractStringVector) dec).getLength() != 1 || ((RAbstractStringVector) dec).getDataAt(0).isEmpty()) {
+            throw RError.error(this, RError.Message.INVALID_ARGUMENT, "dec");
+        }
+        if (x.getLength() == 0) {
+            return RDataFactory.createEmptyLogicalVector();
+        }
+
+        ColumnParser parser = new ColumnParser(x, createNAStrings(naStrings), ((RAbstractStringVector) dec).getDataAt(0).charAt(0));
+        RVector result = parser.parse();
+        if (result != null) {
+            return result;
         }
 
-        // fall through target - conversion to int, double or logical failed
+        // conversion to logical, int or double failed
 
         if (asIs == RRuntime.LOGICAL_TRUE) {
             return x;
@@ -149,25 +237,24 @@ public abstract class TypeConvert extends RExternalBuiltinNode.Arg5 {
             // create a factor
             TreeSet<String> levels = new TreeSet<>();
             for (int j = 0; j < x.getLength(); j++) {
-                s = x.getDataAt(j);
-                if (!isNA(s, naStrings)) {
+                String s = x.getDataAt(j);
+                if (!parser.isNA(s)) {
                     levels.add(s);
                 }
             }
             String[] levelsArray = new String[levels.size()];
             levels.toArray(levelsArray);
+            HashMap<String, Integer> codes = new HashMap<>(levelsArray.length * 2);
+            for (int k = 0; k < levelsArray.length; k++) {
+                codes.put(levelsArray[k], k + 1);
+            }
 
             int[] data = new int[x.getLength()];
             boolean complete = true;
             for (int j = 0; j < data.length; j++) {
-                s = x.getDataAt(j);
-                if (!isNA(s, naStrings)) {
-                    for (int k = 0; k < levelsArray.length; k++) {
-                        if (levelsArray[k].equals(s)) {
-                            data[j] = k + 1;
-                            break;
-                        }
-                    }
+                String s = x.getDataAt(j);
+                if (!parser.isNA(s)) {
+                    data[j] = codes.get(s);
                 } else {
                     data[j] = RRuntime.INT_NA;
                     complete = false;
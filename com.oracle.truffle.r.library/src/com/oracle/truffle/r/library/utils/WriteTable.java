@@ -13,9 +13,16 @@ package com.oracle.truffle.r.library.utils;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.r.nodes.builtin.RExternalBuiltinNode;
+import com.oracle.truffle.r.runtime.DoubleFormatter;
+import com.oracle.truffle.r.runtime.FastROptions;
 import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.RRuntime;
@@ -36,19 +43,50 @@ import com.oracle.truffle.r.runtime.data.model.RAbstractDoubleVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractIntVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractLogicalVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractRawVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractStringVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractVector;
 
 //Transcribed from GnuR, library/utils/src/io.c
 
 public final class WriteTable extends RExternalBuiltinNode {
 
+    /**
+     * Number of rows formatted as one unit of work when formatting in parallel.
+     */
+    private static final int CHUNK_ROWS = 8192;
+
+    /**
+     * The formatted output is written to the connection whenever this many bytes are buffered.
+     */
+    private static final int FLUSH_SIZE = 64 * 1024;
+
     @TruffleBoundary
     private static Object execute(RConnection con, Object xx, int nr, int nc, Object rnames, String csep, String ceol, String cna, char cdec, boolean qmethod, boolean[] quoteCol, boolean quoteRn)
                     throws IOException, IllegalArgumentException {
         OutputStream os = con.getOutputStream();
-        String tmp = null;
+        ColumnEncoder[] columns = new ColumnEncoder[nc];
         if (RRuntime.hasRClass(xx, RRuntime.CLASS_DATA_FRAME)) {
-            executeDataFrame(os, (RVector) xx, nr, nc, rnames, csep, ceol, cna, cdec, qmethod, quoteCol, quoteRn);
+            RVector x = (RVector) xx;
+            /* handle factors internally, check integrity */
+            for (int j = 0; j < nc; j++) {
+                Object xjObj = x.getDataAtAsObject(j);
+                if (xjObj instanceof RAbstractContainer) {
+                    RAbstractContainer xj = (RAbstractContainer) xjObj;
+                    if (xj.getLength() != nr) {
+                        throw new IllegalArgumentException("corrupt data frame -- length of column " + (j + 1) + " does not not match nrows");
+                    }
+                    if (isFactor(xj)) {
+                        columns[j] = new FactorEncoder((RAbstractIntVector) xj, (RStringVector) xj.getAttributes().get("levels"), cna, quoteCol[j], qmethod);
+                    } else {
+                        columns[j] = createEncoder((RAbstractVector) xj, 0, cna, quoteCol[j], qmethod, cdec);
+                    }
+                } else {
+                    if (nr != 1) {
+                        throw new IllegalArgumentException("corrupt data frame -- length of column " + (j + 1) + " does not not match nrows");
+                    }
+                    columns[j] = new ConstantEncoder(encodePrimitiveElement(xjObj, cna, quoteRn, qmethod));
+                }
+            }
         } else { /* A matrix */
 
             // if (!isVectorAtomic(x))
@@ -58,88 +96,381 @@ public final class WriteTable extends RExternalBuiltinNode {
             if (x.getLength() != nr * nc) {
                 throw new IllegalArgumentException("corrupt matrix -- dims not not match length");
             }
+            for (int j = 0; j < nc; j++) {
+                columns[j] = createEncoder(x, j * nr, cna, quoteCol[j], qmethod, cdec);
+            }
+        }
+        ColumnEncoder rowNames = rnames instanceof RNull ? null : new StringEncoder((RStringVector) rnames, 0, null, quoteRn, qmethod);
+        TableEncoder table = new TableEncoder(rowNames, columns, csep.getBytes(), ceol.getBytes());
 
+        int threads = FastROptions.WriteTableThreads.getNonNegativeIntValue();
+        if (threads > 1 && nr > CHUNK_ROWS) {
+            writeParallel(os, table, nr, threads);
+        } else {
+            OutputBuffer buffer = new OutputBuffer();
             for (int i = 0; i < nr; i++) {
-                if (i % 1000 == 999) {
-                    // R_CheckUserInterrupt();
-                }
-                if (!(rnames instanceof RNull)) {
-                    os.write(new StringBuffer(encodeElement2((RStringVector) rnames, i, quoteRn, qmethod, cdec)).append(csep).toString().getBytes());
+                table.encodeRow(buffer, i);
+                if (buffer.length >= FLUSH_SIZE) {
+                    buffer.writeTo(os);
                 }
-                for (int j = 0; j < nc; j++) {
-                    if (j > 0) {
-                        os.write(csep.getBytes());
-                    }
-                    if (isna(x, i + j * nr)) {
-                        tmp = cna;
-                    } else {
-                        tmp = encodeElement2(x, i + j * nr, quoteCol[j], qmethod, cdec);
-                        /* if(cdec) change_dec(tmp, cdec, TYPEOF(x)); */
-                    }
-                    os.write(tmp.getBytes());
-                }
-                os.write(ceol.getBytes());
             }
-
+            buffer.writeTo(os);
         }
         return RNull.instance;
     }
 
-    private static void executeDataFrame(OutputStream os, RVector x, int nr, int nc, Object rnames, String csep, String ceol, String cna, char cdec, boolean qmethod, boolean[] quoteCol,
-                    boolean quoteRn)
-                    throws IOException {
-        String tmp;
-
-        /* handle factors internally, check integrity */
-        RStringVector[] levels = new RStringVector[nc];
-        for (int j = 0; j < nc; j++) {
-            Object xjObj = x.getDataAtAsObject(j);
-            if (xjObj instanceof RAbstractContainer) {
-                RAbstractContainer xj = (RAbstractContainer) xjObj;
-                if (xj.getLength() != nr) {
-                    throw new IllegalArgumentException("corrupt data frame -- length of column " + (j + 1) + " does not not match nrows");
-                }
-                if (isFactor(xj)) {
-                    levels[j] = (RStringVector) xj.getAttributes().get("levels");
+    /**
+     * Formats chunks of {@link #CHUNK_ROWS} rows concurrently, each into its own buffer, and writes
+     * the buffers in row order. At most {@code threads} chunks are in flight at any time, which
+     * bounds the memory used for buffering.
+     */
+    private static void writeParallel(OutputStream os, TableEncoder table, int nr, int threads) throws IOException {
+        ArrayDeque<Future<OutputBuffer>> pending = new ArrayDeque<>(threads);
+        try {
+            for (int start = 0; start < nr || !pending.isEmpty();) {
+                while (start < nr && pending.size() < threads) {
+                    int from = start;
+                    int to = Math.min(nr, start + CHUNK_ROWS);
+                    pending.add(ForkJoinPool.commonPool().submit(() -> {
+                        OutputBuffer buffer = new OutputBuffer();
+                        for (int i = from; i < to; i++) {
+                            table.encodeRow(buffer, i);
+                        }
+                        return buffer;
+                    }));
+                    start = to;
                 }
-            } else {
-                if (nr != 1) {
-                    throw new IllegalArgumentException("corrupt data frame -- length of column " + (j + 1) + " does not not match nrows");
+                pending.remove().get().writeTo(os);
+            }
+        } catch (InterruptedException ex) {
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        } finally {
+            for (Future<OutputBuffer> future : pending) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * A growable byte array that the rows are formatted into before being written to the
+     * connection in large blocks.
+     */
+    private static final class OutputBuffer {
+        private byte[] data = new byte[FLUSH_SIZE + FLUSH_SIZE / 4];
+        private int length;
+        private final StringBuilder str = new StringBuilder(24);
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+            }
+        }
+
+        void append(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, data, length, bytes.length);
+            length += bytes.length;
+        }
+
+        void append(byte b) {
+            ensureCapacity(1);
+            data[length++] = b;
+        }
+
+        /**
+         * Appends {@code s}, which is copied directly if it is ASCII and otherwise encoded with the
+         * default charset (as in {@link String#getBytes()}).
+         */
+        void append(String s) {
+            int n = s.length();
+            ensureCapacity(n);
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) {
+                    append(s.getBytes());
+                    return;
                 }
+                data[length + i] = (byte) c;
             }
+            length += n;
         }
 
-        for (int i = 0; i < nr; i++) {
-            // if (i % 1000 == 999)
-            // R_CheckUserInterrupt();
-            if (!(rnames instanceof RNull)) {
-                tmp = new StringBuffer(encodeElement2((RStringVector) rnames, i, quoteRn, qmethod, cdec)).append(csep).toString();
-                os.write(tmp.getBytes());
+        /**
+         * Appends a finite double with 15 significant digits, like GnuR's {@code EncodeElement0}.
+         */
+        void append(double value) {
+            str.setLength(0);
+            DoubleFormatter.append(str, value, DoubleFormatter.DBL_DIG);
+            int n = str.length();
+            ensureCapacity(n);
+            for (int i = 0; i < n; i++) {
+                data[length + i] = (byte) str.charAt(i);
             }
-            for (int j = 0; j < nc; j++) {
-                Object xjObj = x.getDataAtAsObject(j);
+            length += n;
+        }
+
+        void append(int value) {
+            if (value == Integer.MIN_VALUE) {
+                append(Integer.toString(value));
+                return;
+            }
+            ensureCapacity(11);
+            int v = value;
+            if (v < 0) {
+                data[length++] = '-';
+                v = -v;
+            }
+            int digits = 1;
+            for (int p = v; p >= 10; p /= 10) {
+                digits++;
+            }
+            for (int i = length + digits - 1; i >= length; i--) {
+                data[i] = (byte) ('0' + v % 10);
+                v /= 10;
+            }
+            length += digits;
+        }
+
+        void writeTo(OutputStream os) throws IOException {
+            if (length > 0) {
+                os.write(data, 0, length);
+                length = 0;
+            }
+        }
+    }
+
+    private static final class TableEncoder {
+        private final ColumnEncoder rowNames;
+        private final ColumnEncoder[] columns;
+        private final byte[] sep;
+        private final byte[] eol;
+
+        TableEncoder(ColumnEncoder rowNames, ColumnEncoder[] columns, byte[] sep, byte[] eol) {
+            this.rowNames = rowNames;
+            this.columns = columns;
+            this.sep = sep;
+            this.eol = eol;
+        }
+
+        void encodeRow(OutputBuffer buffer, int row) {
+            if (rowNames != null) {
+                rowNames.encode(buffer, row);
+                buffer.append(sep);
+            }
+            for (int j = 0; j < columns.length; j++) {
                 if (j > 0) {
-                    os.write(csep.getBytes());
+                    buffer.append(sep);
                 }
-                if (xjObj instanceof RAbstractContainer) {
-                    RAbstractContainer xj = (RAbstractContainer) xjObj;
-                    if (isna(xj, i)) {
-                        tmp = cna;
-                    } else {
-                        if (levels[j] != null) {
-                            tmp = encodeElement2(levels[j], (int) xj.getDataAtAsObject(i) - 1, quoteCol[j], qmethod, cdec);
-                        } else {
-                            tmp = encodeElement2((RAbstractVector) xj, i, quoteCol[j], qmethod, cdec);
-                        }
-                        /* if(cdec) change_dec(tmp, cdec, TYPEOF(xj)); */
-                    }
-                } else {
-                    tmp = encodePrimitiveElement(xjObj, cna, quoteRn, qmethod);
-                    /* if(cdec) change_dec(tmp, cdec, TYPEOF(xj)); */
+                columns[j].encode(buffer, row);
+            }
+            buffer.append(eol);
+        }
+    }
+
+    /**
+     * Formats the elements of one column, with the type dispatch done once per column rather than
+     * for every element. Column {@code j} of a matrix is a column of the underlying vector starting
+     * at {@code offset}.
+     */
+    private abstract static class ColumnEncoder {
+        protected final int offset;
+        protected final String cna;
+
+        ColumnEncoder(int offset, String cna) {
+            this.offset = offset;
+            this.cna = cna;
+        }
+
+        abstract void encode(OutputBuffer buffer, int row);
+    }
+
+    private static ColumnEncoder createEncoder(RAbstractVector x, int offset, String cna, boolean quote, boolean qmethod, char cdec) {
+        if (x instanceof RAbstractStringVector) {
+            return new StringEncoder((RAbstractStringVector) x, offset, cna, quote, qmethod);
+        } else if (x instanceof RAbstractIntVector) {
+            return new IntEncoder((RAbstractIntVector) x, offset, cna);
+        } else if (x instanceof RAbstractDoubleVector) {
+            return new DoubleEncoder((RAbstractDoubleVector) x, offset, cna);
+        } else if (x instanceof RAbstractLogicalVector) {
+            return new LogicalEncoder((RAbstractLogicalVector) x, offset, cna);
+        } else {
+            return new GenericEncoder(x, offset, cna, quote, qmethod, cdec);
+        }
+    }
+
+    private static final class IntEncoder extends ColumnEncoder {
+        private final RAbstractIntVector x;
+
+        IntEncoder(RAbstractIntVector x, int offset, String cna) {
+            super(offset, cna);
+            this.x = x;
+        }
+
+        @Override
+        void encode(OutputBuffer buffer, int row) {
+            int v = x.getDataAt(offset + row);
+            if (RRuntime.isNA(v)) {
+                buffer.append(cna);
+            } else {
+                buffer.append(v);
+            }
+        }
+    }
+
+    private static final class DoubleEncoder extends ColumnEncoder {
+        private final RAbstractDoubleVector x;
+
+        DoubleEncoder(RAbstractDoubleVector x, int offset, String cna) {
+            super(offset, cna);
+            this.x = x;
+        }
+
+        @Override
+        void encode(OutputBuffer buffer, int row) {
+            double v = x.getDataAt(offset + row);
+            if (RRuntime.isNA(v)) {
+                buffer.append(cna);
+            } else if (RRuntime.doubleIsInt(v)) {
+                buffer.append((int) v);
+            } else if (RRuntime.isFinite(v)) {
+                buffer.append(v);
+            } else {
+                buffer.append(RRuntime.doubleToStringNoCheck(v));
+            }
+        }
+    }
+
+    private static final class LogicalEncoder extends ColumnEncoder {
+        private static final byte[] TRUE = RRuntime.logicalToStringNoCheck(RRuntime.LOGICAL_TRUE).getBytes();
+        private static final byte[] FALSE = RRuntime.logicalToStringNoCheck(RRuntime.LOGICAL_FALSE).getBytes();
+
+        private final RAbstractLogicalVector x;
+
+        LogicalEncoder(RAbstractLogicalVector x, int offset, String cna) {
+            super(offset, cna);
+            this.x = x;
+        }
+
+        @Override
+        void encode(OutputBuffer buffer, int row) {
+            byte v = x.getDataAt(offset + row);
+            if (RRuntime.isNA(v)) {
+                buffer.append(cna);
+            } else {
+                buffer.append(v == RRuntime.LOGICAL_TRUE ? TRUE : FALSE);
+            }
+        }
+    }
+
+    /**
+     * Encodes strings, quoting them if requested. A {@code null} {@code cna} means that
+     * {@code NA}s are not replaced, which is the case for row names.
+     */
+    private static final class StringEncoder extends ColumnEncoder {
+        private final RAbstractStringVector x;
+        private final boolean quote;
+        private final byte escape;
+
+        StringEncoder(RAbstractStringVector x, int offset, String cna, boolean quote, boolean qmethod) {
+            super(offset, cna);
+            this.x = x;
+            this.quote = quote;
+            this.escape = (byte) (qmethod ? '\\' : '"');
+        }
+
+        @Override
+        void encode(OutputBuffer buffer, int row) {
+            String v = x.getDataAt(offset + row);
+            if (cna != null && RRuntime.isNA(v)) {
+                buffer.append(cna);
+            } else {
+                encodeString(buffer, v, quote, escape);
+            }
+        }
+    }
+
+    private static void encodeString(OutputBuffer buffer, String s, boolean quote, byte escape) {
+        if (!quote) {
+            buffer.append(s);
+        } else if (s.indexOf('"') < 0) {
+            buffer.append((byte) '"');
+            buffer.append(s);
+            buffer.append((byte) '"');
+        } else {
+            buffer.append(encodeStringElement(s, true, escape == '\\'));
+        }
+    }
+
+    private static final class FactorEncoder extends ColumnEncoder {
+        private final RAbstractIntVector codes;
+        private final RStringVector levels;
+        private final boolean quote;
+        private final byte escape;
+
+        FactorEncoder(RAbstractIntVector codes, RStringVector levels, String cna, boolean quote, boolean qmethod) {
+            super(0, cna);
+            this.codes = codes;
+            this.levels = levels;
+            this.quote = quote;
+            this.escape = (byte) (qmethod ? '\\' : '"');
+        }
+
+        @Override
+        void encode(OutputBuffer buffer, int row) {
+            int code = codes.getDataAt(row);
+            if (RRuntime.isNA(code)) {
+                buffer.append(cna);
+            } else {
+                if (code < 1 || code > levels.getLength()) {
+                    throw new IllegalArgumentException("index out of range");
                 }
-                os.write(tmp.getBytes());
+                encodeString(buffer, levels.getDataAt(code - 1), quote, escape);
+            }
+        }
+    }
+
+    private static final class ConstantEncoder extends ColumnEncoder {
+        private final String value;
+
+        ConstantEncoder(String value) {
+            super(0, null);
+            this.value = value;
+        }
+
+        @Override
+        void encode(OutputBuffer buffer, int row) {
+            buffer.append(value);
+        }
+    }
+
+    private static final class GenericEncoder extends ColumnEncoder {
+        private final RAbstractVector x;
+        private final boolean quote;
+        private final boolean qmethod;
+        private final char cdec;
+
+        GenericEncoder(RAbstractVector x, int offset, String cna, boolean quote, boolean qmethod, char cdec) {
+            super(offset, cna);
+            this.x = x;
+            this.quote = quote;
+            this.qmethod = qmethod;
+            this.cdec = cdec;
+        }
+
+        @Override
+        void encode(OutputBuffer buffer, int row) {
+            int index = offset + row;
+            if (isna(x, index)) {
+                buffer.append(cna);
+            } else {
+                buffer.append(encodeElement2(x, index, quote, qmethod, cdec));
+                /* if(cdec) change_dec(tmp, cdec, TYPEOF(x)); */
             }
-            os.write(ceol.getBytes());
         }
     }
 
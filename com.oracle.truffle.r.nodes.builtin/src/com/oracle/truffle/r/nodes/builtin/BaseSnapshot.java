@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.nodes.builtin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.oracle.truffle.api.source.Source;
+import com.oracle.truffle.r.nodes.access.ConstantNode;
+import com.oracle.truffle.r.nodes.function.RCallNode;
+import com.oracle.truffle.r.runtime.ArgumentsSignature;
+import com.oracle.truffle.r.runtime.FastROptions;
+import com.oracle.truffle.r.runtime.RArguments;
+import com.oracle.truffle.r.runtime.RCompression;
+import com.oracle.truffle.r.runtime.RDeparse;
+import com.oracle.truffle.r.runtime.RInternalError;
+import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.RSerialize;
+import com.oracle.truffle.r.runtime.RSource;
+import com.oracle.truffle.r.runtime.RVersionNumber;
+import com.oracle.truffle.r.runtime.builtins.RBuiltinKind;
+import com.oracle.truffle.r.runtime.context.Engine.ParseException;
+import com.oracle.truffle.r.runtime.context.RContext;
+import com.oracle.truffle.r.runtime.data.RDataFactory;
+import com.oracle.truffle.r.runtime.data.RFunction;
+import com.oracle.truffle.r.runtime.data.RList;
+import com.oracle.truffle.r.runtime.data.RNull;
+import com.oracle.truffle.r.runtime.data.RPromise.Closure;
+import com.oracle.truffle.r.runtime.data.RPromise.PromiseState;
+import com.oracle.truffle.r.runtime.data.RStringVector;
+import com.oracle.truffle.r.runtime.env.REnvironment;
+import com.oracle.truffle.r.runtime.env.REnvironment.PutException;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxNode;
+
+/**
+ * A snapshot of the bindings that evaluating the base package and its overrides creates in the base
+ * environment, enabled with option {@link FastROptions#BaseSnapshot}. Restoring the snapshot
+ * replaces the evaluation of the base package, which is the largest part of the startup of a
+ * context, by the creation of a promise per binding, like GnuR does with its lazy-load database of
+ * the base package. Most of the values are never used by a short script, and the others are
+ * unserialized when they are first accessed.
+ *
+ * The values are stored in the format of a lazy-load database, so that the promises can call
+ * {@code lazyLoadDBfetch}, in {@code <dir>/<digest>/base.rdb}, where the digest is the SHA-256 of
+ * the fingerprint. The index {@code <dir>/base.rdx} holds the fingerprint and the key of each
+ * binding and environment (it is not an R object, unlike the index of a package database). The
+ * fingerprint identifies the R sources of the base package and the FastR build, a snapshot with a
+ * different fingerprint is replaced by a new one.
+ *
+ * Like {@code makeLazyLoadDB} in GnuR, environments other than the well-known ones are not
+ * serialized as part of the values that refer to them, but as separate entries {@code env::<n>}
+ * that are restored by an {@code envhook} shared by all promises, so that values sharing an
+ * environment still do so after restoring them.
+ */
+final class BaseSnapshot {
+
+    private static final int MAGIC = 0x46526274;
+    private static final String INDEX_FILE = "base.rdx";
+    private static final String DATA_FILE = "base.rdb";
+
+    /**
+     * The {@code envhook} of {@code lazyLoadDBexec}, which can only use primitives and internals as
+     * it runs before the base package is available. It is evaluated in an environment that binds
+     * {@code env} (the keys of the environments by name), {@code datafile}, {@code compressed} and
+     * {@code envenv} (the restored environments).
+     */
+    private static final String ENV_HOOK = "envhook <- function(n) {\n" +
+                    "    if (.Internal(exists(n, envenv, \"any\", FALSE))) return(envenv[[n]])\n" +
+                    "    e <- .Internal(new.env(TRUE, baseenv(), 29L))\n" +
+                    "    .Internal(assign(n, e, envenv, FALSE))\n" +
+                    "    data <- lazyLoadDBfetch(env[[n]], datafile, compressed, envhook)\n" +
+                    "    .Internal(\"parent.env<-\"(e, data$enclos))\n" +
+                    "    vars <- names(data$bindings)\n" +
+                    "    for (i in seq_along(vars)) .Internal(assign(vars[i], data$bindings[[i]], e, FALSE))\n" +
+                    "    if (data$locked) .Internal(lockEnvironment(e, FALSE))\n" +
+                    "    e\n" +
+                    "}\n" +
+                    "envhook\n";
+
+    private final Path dir;
+    private final String fingerprint;
+
+    private BaseSnapshot(Path dir, String fingerprint) {
+        this.dir = dir;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Returns the snapshot for the base package in {@code baseSource} and the {@code overrides}, or
+     * {@code null} if snapshots are not enabled.
+     */
+    static BaseSnapshot create(Path baseSource, List<Source> overrides) {
+        String dir = FastROptions.BaseSnapshot.getStringValue();
+        if (dir == null || dir.isEmpty()) {
+            return null;
+        }
+        StringBuilder str = new StringBuilder(RVersionNumber.FULL);
+        try {
+            str.append('|').append(baseSource).append('|').append(Files.size(baseSource)).append('|').append(Files.getLastModifiedTime(baseSource).toMillis());
+        } catch (IOException e) {
+            report("cannot read " + baseSource, e);
+            return null;
+        }
+        for (Source source : overrides) {
+            str.append('|').append(source.getName()).append(':').append(Integer.toHexString(source.getCode().hashCode()));
+        }
+        str.append('|').append(buildTime());
+        return new BaseSnapshot(new File(dir).toPath(), str.toString());
+    }
+
+    /**
+     * The modification time of the jar or directory this class was loaded from, which changes with
+     * every build of FastR.
+     */
+    private static long buildTime() {
+        try {
+            CodeSource codeSource = BaseSnapshot.class.getProtectionDomain().getCodeSource();
+            URL location = codeSource == null ? null : codeSource.getLocation();
+            return location == null ? 0 : new File(location.toURI()).lastModified();
+        } catch (URISyntaxException | IllegalArgumentException | SecurityException e) {
+            // the snapshot is still invalidated by a change of the R sources
+            report("cannot determine the FastR build", e);
+            return 0;
+        }
+    }
+
+    private static void report(String message, Throwable e) {
+        if (RContext.getInstance().getStartParams().getVerbose()) {
+            RContext.getInstance().getConsoleHandler().printErrorln("base snapshot: " + message + ": " + e);
+        }
+    }
+
+    private Path getDataDir() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw RInternalError.shouldNotReachHere(e);
+        }
+        StringBuilder name = new StringBuilder();
+        for (byte b : digest.digest(fingerprint.getBytes(StandardCharsets.UTF_8))) {
+            name.append(String.format("%02x", b & 0xFF));
+        }
+        return dir.resolve(name.toString());
+    }
+
+    /**
+     * Binds the values of the snapshot in {@code baseEnv} as promises. Returns {@code false},
+     * without modifying {@code baseEnv}, if there is no snapshot with the current fingerprint.
+     */
+    boolean restore(REnvironment baseEnv) {
+        Path dataFile = getDataDir().resolve(DATA_FILE);
+        Path indexFile = dir.resolve(INDEX_FILE);
+        if (!Files.exists(indexFile)) {
+            return false;
+        }
+        List<String> names = new ArrayList<>();
+        List<int[]> keys = new ArrayList<>();
+        List<String> envNames = new ArrayList<>();
+        List<Object> envKeys = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || !fingerprint.equals(in.readUTF()) || !Files.exists(dataFile)) {
+                return false;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                names.add(in.readUTF());
+                keys.add(new int[]{in.readInt(), in.readInt()});
+            }
+            int envCount = in.readInt();
+            for (int i = 0; i < envCount; i++) {
+                envNames.add(in.readUTF());
+                envKeys.add(RDataFactory.createIntVector(new int[]{in.readInt(), in.readInt()}, RDataFactory.COMPLETE_VECTOR));
+            }
+        } catch (IOException e) {
+            report("cannot read " + indexFile, e);
+            return false;
+        }
+        RStringVector dataPath = RDataFactory.createStringVectorFromScalar(dataFile.toString());
+        RFunction envhook = createEnvHook(dataPath, envNames, envKeys);
+        for (int i = 0; i < names.size(); i++) {
+            RSyntaxNode function = RContext.getASTBuilder().lookup(RSyntaxNode.LAZY_DEPARSE, "lazyLoadDBfetch", true);
+            RCallNode fetch = RCallNode.createCall(RSyntaxNode.LAZY_DEPARSE, function.asRNode(), ArgumentsSignature.empty(4),
+                            ConstantNode.create(RDataFactory.createIntVector(keys.get(i), RDataFactory.COMPLETE_VECTOR)), ConstantNode.create(dataPath),
+                            ConstantNode.create(RDataFactory.createIntVectorFromScalar(1)), ConstantNode.create(envhook));
+            RDeparse.ensureSourceSection(fetch);
+            try {
+                baseEnv.put(names.get(i), RDataFactory.createPromise(PromiseState.Explicit, Closure.create(fetch), baseEnv.getFrame()));
+            } catch (PutException e) {
+                // a locked binding of a substitute builtin, see HiddenInternalFunctions.MakeLazy
+            }
+        }
+        return true;
+    }
+
+    private static RFunction createEnvHook(RStringVector dataPath, List<String> envNames, List<Object> envKeys) {
+        REnvironment hookEnv = RDataFactory.createNewEnv(null);
+        RArguments.initializeEnclosingFrame(hookEnv.getArgumentsFrame(), REnvironment.baseEnv().getFrame());
+        String[] namesArray = envNames.toArray(new String[envNames.size()]);
+        hookEnv.safePut("env", RDataFactory.createList(envKeys.toArray(), RDataFactory.createStringVector(namesArray, RDataFactory.COMPLETE_VECTOR)));
+        hookEnv.safePut("datafile", dataPath);
+        hookEnv.safePut("compressed", RDataFactory.createIntVectorFromScalar(1));
+        hookEnv.safePut("envenv", RDataFactory.createNewEnv(null));
+        try {
+            return (RFunction) RContext.getEngine().parseAndEval(RSource.fromTextInternal(ENV_HOOK, RSource.Internal.BASE_SNAPSHOT), hookEnv.getFrame(), false);
+        } catch (ParseException e) {
+            throw RInternalError.shouldNotReachHere(e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the bindings in {@code baseEnv}, except for the builtins. Failures are
+     * reported if verbose and otherwise ignored, as the snapshot will be written again by the next
+     * startup.
+     */
+    void write(REnvironment baseEnv, Map<String, RBuiltinFactory> builtins) {
+        Path dataDir = getDataDir();
+        Path tmpData = null;
+        Path tmpIndex = null;
+        try {
+            Files.createDirectories(dataDir);
+            tmpData = Files.createTempFile(dataDir, DATA_FILE, ".tmp");
+            tmpIndex = Files.createTempFile(dir, INDEX_FILE, ".tmp");
+            RStringVector names = baseEnv.ls(true, null, true);
+            List<String> written = new ArrayList<>();
+            List<int[]> keys = new ArrayList<>();
+            EnvHook envHook = new EnvHook();
+            List<int[]> envKeys = new ArrayList<>();
+            try (OutputStream data = new BufferedOutputStream(Files.newOutputStream(tmpData))) {
+                int offset = 0;
+                for (int i = 0; i < names.getLength(); i++) {
+                    String name = names.getDataAt(i);
+                    RBuiltinFactory builtin = builtins.get(name);
+                    if (builtin != null && builtin.getKind() != RBuiltinKind.INTERNAL) {
+                        continue;
+                    }
+                    byte[] entry = compress(serialize(baseEnv.get(name), envHook));
+                    data.write(entry);
+                    written.add(name);
+                    keys.add(new int[]{offset, entry.length});
+                    offset += entry.length;
+                }
+                // writing an environment may add further environments
+                for (int i = 0; i < envHook.envs.size(); i++) {
+                    byte[] entry = compress(serialize(envData(envHook.envs.get(i)), envHook));
+                    data.write(entry);
+                    envKeys.add(new int[]{offset, entry.length});
+                    offset += entry.length;
+                }
+            }
+            try (DataOutputStream index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpIndex)))) {
+                index.writeInt(MAGIC);
+                index.writeUTF(fingerprint);
+                index.writeInt(written.size());
+                for (int i = 0; i < written.size(); i++) {
+                    index.writeUTF(written.get(i));
+                    index.writeInt(keys.get(i)[0]);
+                    index.writeInt(keys.get(i)[1]);
+                }
+                index.writeInt(envKeys.size());
+                for (int i = 0; i < envKeys.size(); i++) {
+                    index.writeUTF(EnvHook.envName(i));
+                    index.writeInt(envKeys.get(i)[0]);
+                    index.writeInt(envKeys.get(i)[1]);
+                }
+            }
+            // the data must be in place before the index that refers to it
+            Files.move(tmpData, dataDir.resolve(DATA_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tmpIndex, dir.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RInternalError e) {
+            // values that cannot be serialized also prevent the snapshot
+            report("cannot write the snapshot to " + dir, e);
+            deleteIfExists(tmpData);
+            deleteIfExists(tmpIndex);
+        }
+    }
+
+    private static byte[] serialize(Object value, EnvHook envHook) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RSerialize.serialize(out, value, RSerialize.XDR, RSerialize.DEFAULT_VERSION, envHook);
+        return out.toByteArray();
+    }
+
+    /**
+     * The entry of an environment as expected by {@link #ENV_HOOK}.
+     */
+    private static RList envData(REnvironment env) {
+        RStringVector names = env.ls(true, null, false);
+        Object[] values = new Object[names.getLength()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = env.get(names.getDataAt(i));
+        }
+        Object[] data = new Object[]{RDataFactory.createList(values, names), env.getParent(), RRuntime.asLogical(env.isLocked())};
+        return RDataFactory.createList(data, RDataFactory.createStringVector(new String[]{"bindings", "enclos", "locked"}, RDataFactory.COMPLETE_VECTOR));
+    }
+
+    /**
+     * Gives each environment that {@link RSerialize} does not handle itself a persistent name, in
+     * the order in which they are first written.
+     */
+    private static final class EnvHook implements RSerialize.CallHook {
+        private final Map<REnvironment, String> names = new IdentityHashMap<>();
+        private final List<REnvironment> envs = new ArrayList<>();
+
+        static String envName(int index) {
+            return "env::" + (index + 1);
+        }
+
+        @Override
+        public Object eval(Object arg) {
+            if (!(arg instanceof REnvironment)) {
+                return RNull.instance;
+            }
+            REnvironment env = (REnvironment) arg;
+            String name = names.get(env);
+            if (name == null) {
+                name = envName(envs.size());
+                names.put(env, name);
+                envs.add(env);
+            }
+            return name;
+        }
+    }
+
+    /**
+     * Creates an entry of a lazy-load database with compression 1, i.e., the length of the
+     * uncompressed data followed by the compressed data.
+     */
+    private static byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        out.write(ByteBuffer.allocate(4).putInt(data.length).array());
+        try (OutputStream compressed = RCompression.getCompressingOutputStream(RCompression.Type.GZIP, out)) {
+            compressed.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static void deleteIfExists(Path path) {
+        if (path != null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                // ignored
+            }
+        }
+    }
+}
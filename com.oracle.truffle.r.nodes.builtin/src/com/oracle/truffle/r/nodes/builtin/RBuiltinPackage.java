@@ -28,7 +28,9 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.TreeMap;
 import java.util.function.Function;
 
@@ -139,6 +141,15 @@ public abstract class RBuiltinPackage {
         return builtins;
     }
 
+    /**
+     * The "override" sources of the package, in the order in which {@link #loadOverrides} evaluates
+     * them.
+     */
+    public List<Source> getOverrides() {
+        ArrayList<Source> sources = rSources.get(getName());
+        return sources == null ? Collections.emptyList() : sources;
+    }
+
     /**
      * Runtime component of the package initialization process.
      */
@@ -39,6 +39,7 @@ import com.oracle.truffle.r.runtime.RDeparse;
 import com.oracle.truffle.r.runtime.REnvVars;
 import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.RSource;
+import com.oracle.truffle.r.runtime.StartupTracer;
 import com.oracle.truffle.r.runtime.Utils;
 import com.oracle.truffle.r.runtime.builtins.RBuiltin;
 import com.oracle.truffle.r.runtime.builtins.RBuiltinDescriptor;
@@ -69,6 +70,7 @@ public final class RBuiltinPackages implements RBuiltinLookup {
     public static void loadBase(MaterializedFrame baseFrame) {
         RBuiltinPackage pkg = basePackage;
         REnvironment baseEnv = REnvironment.baseEnv();
+        StartupTracer.Span span = StartupTracer.begin(StartupTracer.Kind.PHASE, "builtins");
         BaseVariables.initialize(baseEnv);
         /*
          * All the RBuiltin PRIMITIVE methods that were created earlier need to be added to the
@@ -88,21 +90,32 @@ public final class RBuiltinPackages implements RBuiltinLookup {
                 }
             }
         }
+        StartupTracer.end(span);
         // Now "load" the package
         Path baseDirPath = FileSystems.getDefault().getPath(REnvVars.rHome(), "library", "base");
         Path basePathbase = baseDirPath.resolve("R").resolve("base");
-        Source baseSource = null;
-        try {
-            baseSource = RSource.fromFileName(basePathbase.toString());
-        } catch (IOException ex) {
-            Utils.rSuicide(String.format("unable to open the base package %s", basePathbase));
-        }
         // Load the (stub) DLL for base
         try {
             DLL.loadPackageDLL(baseDirPath.resolve("libs").resolve("base.so").toString(), true, true);
         } catch (DLLException ex) {
             Utils.rSuicide(ex.getMessage());
         }
+        BaseSnapshot snapshot = BaseSnapshot.create(basePathbase, pkg.getOverrides());
+        if (snapshot != null) {
+            span = StartupTracer.begin(StartupTracer.Kind.PHASE, "base.snapshot.restore");
+            boolean restored = snapshot.restore(baseEnv);
+            StartupTracer.end(span);
+            if (restored) {
+                return;
+            }
+        }
+        span = StartupTracer.begin(StartupTracer.Kind.PHASE, "base.code");
+        Source baseSource = null;
+        try {
+            baseSource = RSource.fromFileName(basePathbase.toString());
+        } catch (IOException ex) {
+            Utils.rSuicide(String.format("unable to open the base package %s", basePathbase));
+        }
         // Any RBuiltinKind.SUBSTITUTE functions installed above should not be overridden
         try {
             RContext.getInstance().setLoadingBase(true);
@@ -114,7 +127,15 @@ public final class RBuiltinPackages implements RBuiltinLookup {
         } finally {
             RContext.getInstance().setLoadingBase(false);
         }
+        StartupTracer.end(span);
+        span = StartupTracer.begin(StartupTracer.Kind.PHASE, "base.overrides");
         pkg.loadOverrides(baseFrame);
+        StartupTracer.end(span);
+        if (snapshot != null) {
+            span = StartupTracer.begin(StartupTracer.Kind.PHASE, "base.snapshot.write");
+            snapshot.write(baseEnv, builtins);
+            StartupTracer.end(span);
+        }
     }
 
     public static void loadDefaultPackageOverrides(String pkgName) {
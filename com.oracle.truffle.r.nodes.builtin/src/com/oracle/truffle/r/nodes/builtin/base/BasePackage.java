@@ -56,6 +56,8 @@ import com.oracle.truffle.r.nodes.builtin.fastr.FastRInspect;
 import com.oracle.truffle.r.nodes.builtin.fastr.FastRInspectNodeGen;
 import com.oracle.truffle.r.nodes.builtin.fastr.FastRInterop;
 import com.oracle.truffle.r.nodes.builtin.fastr.FastRInteropFactory;
+import com.oracle.truffle.r.nodes.builtin.fastr.FastRProfMem;
+import com.oracle.truffle.r.nodes.builtin.fastr.FastRProfMemFactory;
 import com.oracle.truffle.r.nodes.builtin.fastr.FastRRefCountInfo;
 import com.oracle.truffle.r.nodes.builtin.fastr.FastRRefCountInfoNodeGen;
 import com.oracle.truffle.r.nodes.builtin.fastr.FastRStackTrace;
@@ -192,6 +194,8 @@ public class BasePackage extends RBuiltinPackage {
         add(ConnectionFunctions.File.class, ConnectionFunctionsFactory.FileNodeGen::create);
         add(ConnectionFunctions.Flush.class, ConnectionFunctionsFactory.FlushNodeGen::create);
         add(ConnectionFunctions.GZFile.class, ConnectionFunctionsFactory.GZFileNodeGen::create);
+        add(ConnectionFunctions.BZFile.class, ConnectionFunctionsFactory.BZFileNodeGen::create);
+        add(ConnectionFunctions.XZFile.class, ConnectionFunctionsFactory.XZFileNodeGen::create);
         add(ConnectionFunctions.GetAllConnections.class, ConnectionFunctionsFactory.GetAllConnectionsNodeGen::create);
         add(ConnectionFunctions.GetConnection.class, ConnectionFunctionsFactory.GetConnectionNodeGen::create);
         add(ConnectionFunctions.IsOpen.class, ConnectionFunctionsFactory.IsOpenNodeGen::create);
@@ -293,6 +297,9 @@ public class BasePackage extends RBuiltinPackage {
         add(FastRFunctionProfiler.Get.class, FastRFunctionProfilerFactory.GetNodeGen::create);
         add(FastRFunctionProfiler.Reset.class, FastRFunctionProfilerFactory.ResetNodeGen::create);
         add(FastRFunctionProfiler.Clear.class, FastRFunctionProfilerFactory.ClearNodeGen::create);
+        add(FastRProfMem.Start.class, FastRProfMemFactory.StartNodeGen::create);
+        add(FastRProfMem.Stop.class, FastRProfMemFactory.StopNodeGen::create);
+        add(FastRProfMem.Get.class, FastRProfMemFactory.GetNodeGen::create);
         add(FastRIdentity.class, FastRIdentityNodeGen::create);
         add(FastRInspect.class, FastRInspectNodeGen::create);
         add(FastRInterop.Eval.class, FastRInteropFactory.EvalNodeGen::create);
@@ -489,6 +496,7 @@ public class BasePackage extends RBuiltinPackage {
         add(PMatch.class, PMatchNodeGen::create);
         add(PMinMax.PMax.class, PMinMaxNodeGen.PMaxNodeGen::create);
         add(PMinMax.PMin.class, PMinMaxNodeGen.PMinNodeGen::create);
+        add(ParallelApply.Chunk.class, ParallelApplyFactory.ChunkNodeGen::create);
         add(Parse.class, ParseNodeGen::create);
         add(Paste.class, PasteNodeGen::create);
         add(Paste0.class, Paste0NodeGen::create);
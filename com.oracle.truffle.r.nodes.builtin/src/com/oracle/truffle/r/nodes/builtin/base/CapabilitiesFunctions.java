@@ -27,6 +27,7 @@ import static com.oracle.truffle.r.runtime.builtins.RBuiltinKind.INTERNAL;
 
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.r.nodes.builtin.RBuiltinNode;
+import com.oracle.truffle.r.runtime.FastROptions;
 import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.builtins.RBuiltin;
 import com.oracle.truffle.r.runtime.context.RContext;
@@ -85,6 +86,12 @@ public class CapabilitiesFunctions {
                     case cledit:
                         value = RContext.getInstance().isInteractive() && !RContext.getInstance().getStartParams().getNoReadline();
                         break;
+                    case jpeg:
+                    case png:
+                    case cairo:
+                        // provided by the raster device of the internal graphics
+                        value = FastROptions.UseInternalGraphics.getBooleanValue();
+                        break;
                 }
                 data[c.ordinal()] = RRuntime.asLogical(value);
             }
@@ -43,6 +43,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.DoubleBuffer;
 import java.nio.IntBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.zip.ZipException;
 
@@ -54,6 +55,7 @@ import com.oracle.truffle.api.dsl.TypeSystemReference;
 import com.oracle.truffle.r.nodes.builtin.CastBuilder;
 import com.oracle.truffle.r.nodes.builtin.RBuiltinNode;
 import com.oracle.truffle.r.nodes.builtin.base.ConnectionFunctionsFactory.WriteDataNodeGen;
+import com.oracle.truffle.r.runtime.RCompression;
 import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.RRuntime;
@@ -159,8 +161,9 @@ public abstract class ConnectionFunctions {
                     }
                 }
             }
+            Charset charset = BaseRConnection.lookupEncoding(encoding);
             try {
-                return new FileRConnection(path, open);
+                return new FileRConnection(path, open, encoding, charset);
             } catch (IOException ex) {
                 RError.warning(this, RError.Message.CANNOT_OPEN_FILE, description, ex.getMessage());
                 throw RError.error(this, RError.Message.CANNOT_OPEN_CONNECTION);
@@ -176,21 +179,43 @@ public abstract class ConnectionFunctions {
 
     /**
      * {@code gzfile} is very versatile (unfortunately); it can open uncompressed files, and files
-     * compressed by {@code bzip2, xz, lzma}. Currently we only support {@code gzip} and
-     * uncompressed.
+     * compressed by {@code bzip2, xz, lzma}. {@code bzfile} and {@code xzfile} share the
+     * implementation, and only differ in the format that they write.
      */
     @RBuiltin(name = "gzfile", kind = INTERNAL, parameterNames = {"description", "open", "encoding", "compression"}, behavior = IO)
-    public abstract static class GZFile extends RBuiltinNode {
+    public abstract static class GZFile extends CompressedFile {
         @Specialization
-        @TruffleBoundary
-        @SuppressWarnings("unused")
         protected Object gzFile(RAbstractStringVector description, RAbstractStringVector open, RAbstractStringVector encoding, double compression) {
+            return openCompressedFile(RCompression.Type.GZIP, description, open, encoding, compression);
+        }
+    }
+
+    @RBuiltin(name = "bzfile", kind = INTERNAL, parameterNames = {"description", "open", "encoding", "compression"}, behavior = IO)
+    public abstract static class BZFile extends CompressedFile {
+        @Specialization
+        protected Object bzFile(RAbstractStringVector description, RAbstractStringVector open, RAbstractStringVector encoding, double compression) {
+            return openCompressedFile(RCompression.Type.BZIP2, description, open, encoding, compression);
+        }
+    }
+
+    @RBuiltin(name = "xzfile", kind = INTERNAL, parameterNames = {"description", "open", "encoding", "compression"}, behavior = IO)
+    public abstract static class XZFile extends CompressedFile {
+        @Specialization
+        protected Object xzFile(RAbstractStringVector description, RAbstractStringVector open, RAbstractStringVector encoding, double compression) {
+            return openCompressedFile(RCompression.Type.LZMA, description, open, encoding, compression);
+        }
+    }
+
+    abstract static class CompressedFile extends RBuiltinNode {
+        @TruffleBoundary
+        protected Object openCompressedFile(RCompression.Type writeType, RAbstractStringVector description, RAbstractStringVector open, RAbstractStringVector encoding, double compression) {
+            Charset charset = BaseRConnection.lookupEncoding(encoding.getDataAt(0));
             try {
-                return new GZIPRConnection(description.getDataAt(0), open.getDataAt(0));
+                return new GZIPRConnection(description.getDataAt(0), open.getDataAt(0), writeType, (int) compression, encoding.getDataAt(0), charset);
             } catch (ZipException ex) {
                 // wasn't a gzip file, try uncompressed text
                 try {
-                    return new FileRConnection(description.getDataAt(0), "r");
+                    return new FileRConnection(description.getDataAt(0), "r", encoding.getDataAt(0), charset);
                 } catch (IOException ex1) {
                     throw reportError(description.getDataAt(0), ex1);
                 }
@@ -703,13 +728,13 @@ public abstract class ConnectionFunctions {
             IntBuffer intBuffer = checkOrder(buffer, swap).asIntBuffer();
             int nInts = bytesRead / 4;
             int[] data = new int[nInts];
+            intBuffer.get(data);
             boolean complete = RDataFactory.COMPLETE_VECTOR;
             for (int i = 0; i < nInts; i++) {
-                int d = intBuffer.get();
-                if (RRuntime.isNA(d)) {
+                if (RRuntime.isNA(data[i])) {
                     complete = RDataFactory.INCOMPLETE_VECTOR;
+                    break;
                 }
-                data[i] = d;
             }
             return RDataFactory.createIntVector(data, complete);
         }
@@ -725,12 +750,12 @@ public abstract class ConnectionFunctions {
             int nDoubles = bytesRead / 8;
             boolean complete = RDataFactory.COMPLETE_VECTOR;
             double[] data = new double[nDoubles];
+            doubleBuffer.get(data);
             for (int i = 0; i < nDoubles; i++) {
-                double d = doubleBuffer.get();
-                if (RRuntime.isNA(d)) {
+                if (RRuntime.isNA(data[i])) {
                     complete = RDataFactory.INCOMPLETE_VECTOR;
+                    break;
                 }
-                data[i] = d;
             }
             return RDataFactory.createDoubleVector(data, complete);
         }
@@ -1000,9 +1025,13 @@ public abstract class ConnectionFunctions {
         @Specialization
         @TruffleBoundary
         protected long seek(RConnection con, RAbstractDoubleVector where, RAbstractIntVector origin, RAbstractIntVector rw) {
-            long offset = (long) where.getDataAt(0);
+            double where0 = where.getDataAt(0);
             try {
-                return con.seek(offset, RConnection.SeekMode.values()[origin.getDataAt(0)], RConnection.SeekRWMode.values()[rw.getDataAt(0)]);
+                if (RRuntime.isNAorNaN(where0)) {
+                    // just query the current position
+                    return con.seek(0, RConnection.SeekMode.CURRENT, RConnection.SeekRWMode.values()[rw.getDataAt(0)]);
+                }
+                return con.seek((long) where0, RConnection.SeekMode.values()[origin.getDataAt(0)], RConnection.SeekRWMode.values()[rw.getDataAt(0)]);
             } catch (IOException x) {
                 throw RError.error(this, RError.Message.GENERIC, x.getMessage());
             }
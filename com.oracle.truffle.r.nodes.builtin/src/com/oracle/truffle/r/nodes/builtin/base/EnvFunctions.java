@@ -418,7 +418,7 @@ public class EnvFunctions {
         @TruffleBoundary
         protected REnvironment newEnv(byte hash, REnvironment parent, int size) {
             REnvironment env = RDataFactory.createNewEnv(null, RRuntime.fromLogical(hash), size);
-            RArguments.initializeEnclosingFrame(env.getFrame(), parent.getFrame());
+            RArguments.initializeEnclosingFrame(env.getArgumentsFrame(), parent.getFrame());
             return env;
         }
     }
@@ -19,9 +19,13 @@ import static com.oracle.truffle.r.runtime.builtins.RBuiltinKind.PRIMITIVE;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
@@ -51,6 +55,7 @@ import com.oracle.truffle.r.runtime.RError.Message;
 import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.RSerialize;
+import com.oracle.truffle.r.runtime.StartupTracer;
 import com.oracle.truffle.r.runtime.SubstituteVirtualFrame;
 import com.oracle.truffle.r.runtime.builtins.RBuiltin;
 import com.oracle.truffle.r.runtime.context.RContext;
@@ -186,26 +191,40 @@ public class HiddenInternalFunctions {
         }
 
         /**
-         * No error checking here as this called by trusted library code.
+         * No error checking here as this called by trusted library code. As in GnuR, {@code envhook}
+         * may be {@code NULL} if the values do not reference any persistent environments.
          */
         @Specialization
-        protected Object lazyLoadDBFetch(VirtualFrame frame, RIntVector key, RStringVector datafile, RIntVector compressed, RFunction envhook) {
+        protected Object lazyLoadDBFetch(VirtualFrame frame, RIntVector key, RStringVector datafile, RIntVector compressed, Object envhook) {
             return lazyLoadDBFetchInternal(frame.materialize(), key, datafile, compressed.getDataAt(0), envhook);
         }
 
         @Specialization
-        protected Object lazyLoadDBFetch(VirtualFrame frame, RIntVector key, RStringVector datafile, RDoubleVector compressed, RFunction envhook) {
+        protected Object lazyLoadDBFetch(VirtualFrame frame, RIntVector key, RStringVector datafile, RDoubleVector compressed, Object envhook) {
             return lazyLoadDBFetchInternal(frame.materialize(), key, datafile, (int) compressed.getDataAt(0), envhook);
         }
 
         @Specialization
-        protected Object lazyLoadDBFetch(VirtualFrame frame, RIntVector key, RStringVector datafile, RLogicalVector compressed, RFunction envhook) {
+        protected Object lazyLoadDBFetch(VirtualFrame frame, RIntVector key, RStringVector datafile, RLogicalVector compressed, Object envhook) {
             initCast();
             return lazyLoadDBFetch(frame, key, datafile, castIntNode.doLogicalVector(compressed), envhook);
         }
 
         @TruffleBoundary
-        private Object lazyLoadDBFetchInternal(MaterializedFrame frame, RIntVector key, RStringVector datafile, int compression, RFunction envhook) {
+        private Object lazyLoadDBFetchInternal(MaterializedFrame frame, RIntVector key, RStringVector datafile, int compression, Object envhook) {
+            if (!StartupTracer.isEnabled()) {
+                return fetch(frame, key, datafile, compression, envhook);
+            }
+            String fileName = new File(datafile.getDataAt(0)).getName();
+            StartupTracer.Span span = StartupTracer.begin(StartupTracer.Kind.LAZYLOAD, fileName.substring(0, Math.max(0, fileName.lastIndexOf('.'))) + "::" + ReadVariableNode.getSlowPathEvaluationName());
+            try {
+                return fetch(frame, key, datafile, compression, envhook);
+            } finally {
+                StartupTracer.end(span);
+            }
+        }
+
+        private Object fetch(MaterializedFrame frame, RIntVector key, RStringVector datafile, int compression, Object envhook) {
             if (CompilerDirectives.inInterpreter()) {
                 LoopNode.reportLoopCount(this, -5);
             }
@@ -234,7 +253,7 @@ public class HiddenInternalFunctions {
             } else {
                 udata = new byte[outlen];
                 if (compression == 2 || compression == 3) {
-                    RCompression.Type type = RCompression.Type.fromTypeChar(dbData[4]);
+                    RCompression.Type type = RCompression.Type.fromTypeChar(dbData[offset + 4]);
                     if (type == null) {
                         RError.warning(this, RError.Message.GENERIC, "unknown compression type");
                         return RNull.instance;
@@ -253,13 +272,17 @@ public class HiddenInternalFunctions {
                 throw RError.error(this, RError.Message.LAZY_LOAD_DB_CORRUPT, dbPath);
             }
             try {
-                RSerialize.CallHook callHook = new RSerialize.CallHook() {
-                    @Override
-                    public Object eval(Object arg) {
-                        Object[] callArgs = RArguments.create(envhook, RCaller.create(frame, getOriginalCall()), null, new Object[]{arg}, null);
-                        return callCache.execute(SubstituteVirtualFrame.create(frame), envhook.getTarget(), callArgs);
-                    }
-                };
+                RSerialize.CallHook callHook = null;
+                if (envhook instanceof RFunction) {
+                    RFunction hook = (RFunction) envhook;
+                    callHook = new RSerialize.CallHook() {
+                        @Override
+                        public Object eval(Object arg) {
+                            Object[] callArgs = RArguments.create(hook, RCaller.create(frame, getOriginalCall()), null, new Object[]{arg}, null);
+                            return callCache.execute(SubstituteVirtualFrame.create(frame), hook.getTarget(), callArgs);
+                        }
+                    };
+                }
                 String functionName = ReadVariableNode.getSlowPathEvaluationName();
                 Object result = RSerialize.unserialize(udata, callHook, packageName, functionName);
                 return result;
@@ -372,7 +395,7 @@ public class HiddenInternalFunctions {
 
         @TruffleBoundary
         private RIntVector lazyLoadDBinsertValueInternal(MaterializedFrame frame, Object value, RAbstractStringVector file, int type, int compression, RFunction hook) {
-            if (!(compression == 1 || compression == 3)) {
+            if (!(compression == 1 || compression == 2 || compression == 3)) {
                 throw RError.error(this, Message.GENERIC, "unsupported compression");
             }
 
@@ -385,37 +408,12 @@ public class HiddenInternalFunctions {
             };
 
             try {
-                byte[] data = RSerialize.serialize(value, type, RSerialize.DEFAULT_VERSION, callHook);
                 // See comment in LazyLoadDBFetch for format
-                int outLen;
-                int offset;
-                RCompression.Type ctype;
-                byte[] cdata;
-                if (compression == 1) {
-                    ctype = RCompression.Type.GZIP;
-                    offset = 4;
-                    outLen = (int) (1.001 * data.length) + 20;
-                    cdata = new byte[outLen];
-                    boolean rc = RCompression.compress(ctype, data, cdata);
-                    if (!rc) {
-                        throw RError.error(this, Message.GENERIC, "zlib compress error");
-                    }
-                } else if (compression == 3) {
-                    ctype = RCompression.Type.LZMA;
-                    offset = 5;
-                    outLen = data.length;
-                    cdata = new byte[outLen];
-                    boolean rc = RCompression.compress(ctype, data, cdata);
-                    if (!rc) {
-                        throw RError.error(this, Message.GENERIC, "lzma compress error");
-                    }
-                } else {
-                    throw RInternalError.shouldNotReachHere();
-                }
-                int[] intData = new int[2];
-                intData[1] = outLen + offset; // include length + type (compression == 3)
-                intData[0] = appendFile(file.getDataAt(0), cdata, data.length, ctype);
+                RCompression.Type ctype = compression == 1 ? RCompression.Type.GZIP : compression == 2 ? RCompression.Type.BZIP2 : RCompression.Type.LZMA;
+                int[] intData = appendFile(file.getDataAt(0), value, type, ctype, compression != 1, callHook);
                 return RDataFactory.createIntVector(intData, RDataFactory.COMPLETE_VECTOR);
+            } catch (IOException ex) {
+                throw RError.error(this, Message.GENERIC, "lazyLoadDBinsertValue file append error");
             } catch (Throwable ex) {
                 // Exceptions have been observed that were masked and very hard to find
                 ex.printStackTrace();
@@ -430,31 +428,114 @@ public class HiddenInternalFunctions {
         }
 
         /**
-         * Append the compressed data to {@code path}. N.B The uncompressed length is stored as an
-         * int in the first four bytes of the data. See {@link LazyLoadDBFetch}.
+         * Serialize {@code value} and append the compressed data to {@code path}. N.B The
+         * uncompressed length is stored as an int in the first four bytes of the data. See
+         * {@link LazyLoadDBFetch}. The data is compressed while it is serialized, so neither the
+         * serialized nor the compressed form is ever held in memory; the header is filled in once
+         * the uncompressed length is known. As in GnuR, if there is a type field and the data does
+         * not compress to less than its original size, it is stored uncompressed with type '0'
+         * instead, which means serializing it a second time.
          *
          * @param path path of file
-         * @param cdata the compressed data
-         * @param ulen length of uncompressed data
-         * @return offset in file of appended data
+         * @param type serialization format
+         * @param ctype compression type
+         * @param typeField whether the compression type is recorded after the length
+         * @return offset in file of appended data and its length
          */
-        private int appendFile(String path, byte[] cdata, int ulen, RCompression.Type type) {
-            File file = new File(path);
-            try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(file, true))) {
-                int result = (int) file.length();
-                ByteBuffer dataLengthBuf = ByteBuffer.allocate(4);
-                dataLengthBuf.putInt(ulen);
-                dataLengthBuf.position(0);
-                byte[] ulenData = new byte[4];
-                dataLengthBuf.get(ulenData);
-                out.write(ulenData);
-                if (type == RCompression.Type.LZMA) {
-                    out.write(RCompression.Type.LZMA.typeByte);
+        private static int[] appendFile(String path, Object value, int type, RCompression.Type ctype, boolean typeField, RSerialize.CallHook callHook) throws IOException {
+            try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                long offset = channel.size();
+                int headerLength = typeField ? 5 : 4;
+                try {
+                    RCompression.Type entryType = ctype;
+                    long ulen = writeEntry(channel, offset + headerLength, value, type, entryType, callHook);
+                    long clen = channel.position() - offset - headerLength;
+                    if (typeField && clen >= ulen) {
+                        channel.truncate(offset + headerLength);
+                        entryType = RCompression.Type.NONE;
+                        ulen = writeEntry(channel, offset + headerLength, value, type, entryType, callHook);
+                        clen = ulen;
+                    }
+                    if (offset + headerLength + clen > Integer.MAX_VALUE || ulen > Integer.MAX_VALUE) {
+                        throw new IOException("lazy-load database too large");
+                    }
+                    ByteBuffer header = ByteBuffer.allocate(headerLength);
+                    header.putInt((int) ulen);
+                    if (typeField) {
+                        header.put(entryType.typeByte);
+                    }
+                    header.flip();
+                    channel.write(header, offset);
+                    return new int[]{(int) offset, (int) (clen + headerLength)};
+                } catch (Throwable t) {
+                    // do not leave a partial entry behind
+                    channel.truncate(offset);
+                    throw t;
                 }
-                out.write(cdata);
-                return result;
-            } catch (IOException ex) {
-                throw RError.error(this, Message.GENERIC, "lazyLoadDBinsertValue file append error");
+            }
+        }
+
+        /**
+         * Serializes {@code value} through a compressing stream into {@code channel}, starting at
+         * {@code position}.
+         *
+         * @return the uncompressed length
+         */
+        private static long writeEntry(FileChannel channel, long position, Object value, int type, RCompression.Type ctype, RSerialize.CallHook callHook) throws IOException {
+            channel.position(position);
+            CountingOutputStream out = new CountingOutputStream(RCompression.getCompressingOutputStream(ctype, new BufferedOutputStream(new ChannelOutputStream(channel), BUFFER_SIZE)));
+            try {
+                RSerialize.serialize(out, value, type, RSerialize.DEFAULT_VERSION, callHook);
+            } finally {
+                out.close();
+            }
+            return out.count;
+        }
+
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        /**
+         * Writes to a {@link FileChannel} at its current position, leaving it open on
+         * {@link #close()}.
+         */
+        private static final class ChannelOutputStream extends OutputStream {
+            private final FileChannel channel;
+
+            ChannelOutputStream(FileChannel channel) {
+                this.channel = channel;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+
+        private static final class CountingOutputStream extends FilterOutputStream {
+            private long count;
+
+            CountingOutputStream(OutputStream out) {
+                super(out);
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                count++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                count += len;
             }
         }
     }
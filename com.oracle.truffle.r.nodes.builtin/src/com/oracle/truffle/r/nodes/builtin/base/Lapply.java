@@ -150,6 +150,12 @@ public abstract class Lapply extends RBuiltinNode {
             // TODO: R switches to double if x.getLength() is greater than 2^31-1
             frame.setObject(vectorSlot, vector);
             int length = lengthNode.executeInteger(frame, vector);
+            if (ParallelApply.isEnabled() && vector instanceof RAbstractVector) {
+                Object[] parallelResult = ParallelApply.apply(frame.materialize(), (RAbstractVector) vector, function);
+                if (parallelResult != null) {
+                    return parallelResult;
+                }
+            }
             Object[] result = new Object[length];
             if (length > 0) {
                 reportWork(this, length);
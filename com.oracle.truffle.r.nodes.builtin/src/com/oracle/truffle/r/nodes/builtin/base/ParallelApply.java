@@ -0,0 +1,420 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.nodes.builtin.base;
+
+import static com.oracle.truffle.r.runtime.builtins.RBehavior.COMPLEX;
+import static com.oracle.truffle.r.runtime.builtins.RBuiltinKind.PRIMITIVE;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.RootCallTarget;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.frame.FrameSlot;
+import com.oracle.truffle.api.frame.MaterializedFrame;
+import com.oracle.truffle.api.source.Source;
+import com.oracle.truffle.r.nodes.builtin.RBuiltinNode;
+import com.oracle.truffle.r.runtime.ArgumentsSignature;
+import com.oracle.truffle.r.runtime.FastROptions;
+import com.oracle.truffle.r.runtime.RCmdOptions;
+import com.oracle.truffle.r.runtime.RCmdOptions.Client;
+import com.oracle.truffle.r.runtime.RError;
+import com.oracle.truffle.r.runtime.RSerialize;
+import com.oracle.truffle.r.runtime.RSource;
+import com.oracle.truffle.r.runtime.RStartParams;
+import com.oracle.truffle.r.runtime.builtins.RBuiltin;
+import com.oracle.truffle.r.runtime.context.ContextInfo;
+import com.oracle.truffle.r.runtime.context.ContextPool;
+import com.oracle.truffle.r.runtime.context.RContext;
+import com.oracle.truffle.r.runtime.context.RContext.ContextKind;
+import com.oracle.truffle.r.runtime.data.RArgsValuesAndNames;
+import com.oracle.truffle.r.runtime.data.RAttributable;
+import com.oracle.truffle.r.runtime.data.RDataFactory;
+import com.oracle.truffle.r.runtime.data.RFunction;
+import com.oracle.truffle.r.runtime.data.RList;
+import com.oracle.truffle.r.runtime.data.RShareable;
+import com.oracle.truffle.r.runtime.data.model.RAbstractListVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractVector;
+import com.oracle.truffle.r.runtime.env.REnvironment;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxCall;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxConstant;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxElement;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxFunction;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxLookup;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxVisitor;
+
+/**
+ * Opt-in parallel evaluation of {@code lapply} (and therefore {@code sapply}) and {@code vapply},
+ * enabled by {@link FastROptions#ParallelApplyContexts}. The elements are split into contiguous
+ * chunks that are evaluated in {@link ContextKind#SHARE_PARENT_RO} contexts submitted to the
+ * {@link ContextPool}, while the invoking thread waits for all of them. The contexts are only kept
+ * for the next call if {@link FastROptions#ContextPoolSize} is set, otherwise each call creates
+ * them anew. The results are put back
+ * in the order of the elements, so the caller assembles them exactly as the sequential results.
+ *
+ * Only applications that cannot observe the difference are run in parallel: the function must be
+ * a closure defined at top level whose body calls nothing but a fixed set of side-effect free
+ * base functions, which must not be shadowed on the search path, and reads no global variables,
+ * there must be no extra arguments, and the elements must be atomic vectors without attributes.
+ * If any of this does not hold, or a chunk fails or signals a warning, {@link #apply} returns
+ * {@code null} and the caller falls back to the sequential evaluation, which also reports any
+ * error or warning in the usual way.
+ */
+public final class ParallelApply {
+
+    /**
+     * Chunks smaller than this are not worth the overhead of shipping them to another context.
+     */
+    private static final int MIN_CHUNK_SIZE = 64;
+
+    private static final String[] NO_ARGS = new String[0];
+
+    private static final HashSet<String> PURE_FUNCTIONS = new HashSet<>(Arrays.asList(
+                    "{", "(", "if", "for", "while", "repeat", "break", "next", "return", "function", "<-", "=",
+                    "+", "-", "*", "/", "^", "%%", "%/%", "%*%", ":", "==", "!=", "<", ">", "<=", ">=", "!", "&", "|", "&&", "||",
+                    "[", "[[", "$", "abs", "sqrt", "exp", "expm1", "log", "log1p", "log2", "log10", "sin", "cos", "tan", "asin",
+                    "acos", "atan", "atan2", "sinh", "cosh", "tanh", "floor", "ceiling", "round", "signif", "trunc", "sign",
+                    "gamma", "lgamma", "beta", "lbeta", "choose", "factorial", "sum", "prod", "mean", "min", "max", "range",
+                    "pmin", "pmax", "cumsum", "cumprod", "cummin", "cummax", "length", "c", "numeric", "integer", "double",
+                    "logical", "character", "vector", "list", "rep", "rep_len", "seq", "seq_len", "seq_along", "rev", "sort",
+                    "order", "which", "which.min", "which.max", "any", "all", "is.na", "is.null", "is.numeric", "ifelse",
+                    "as.numeric", "as.double", "as.integer", "as.logical", "as.character", "nchar", "paste", "paste0",
+                    "matrix", "t", "dim", "nrow", "ncol", "crossprod", "outer", "unlist", "identical", "unique", "tabulate"));
+
+    /**
+     * The names that a syntactically pure function uses without defining them.
+     */
+    private static final class FreeNames {
+        private final String[] calls;
+        private final String[] reads;
+
+        FreeNames(String[] calls, String[] reads) {
+            this.calls = calls;
+            this.reads = reads;
+        }
+    }
+
+    private static final FreeNames IMPURE = new FreeNames(null, null);
+
+    /**
+     * Caches the result of the syntactic purity analysis per function, {@link #IMPURE} if the
+     * function is not pure. Whether the free names resolve to base depends on the search path and
+     * is checked on every call.
+     */
+    private static final Map<RootCallTarget, FreeNames> pureFunctions = new WeakHashMap<>();
+
+    private static final AtomicInteger chunkIds = new AtomicInteger();
+    private static final Map<Integer, Object[]> chunks = new ConcurrentHashMap<>();
+    private static final LongAdder parallelChunks = new LongAdder();
+
+    private ParallelApply() {
+        // only static methods
+    }
+
+    public static boolean isEnabled() {
+        return FastROptions.ParallelApplyContexts.getNonNegativeIntValue() > 1;
+    }
+
+    /**
+     * Returns the number of chunks that were evaluated in parallel so far.
+     */
+    public static long getParallelChunkCount() {
+        return parallelChunks.sum();
+    }
+
+    /**
+     * Applies {@code fun} to the elements of {@code vector} in parallel, or returns {@code null}
+     * if that is not possible. {@code frame} is the frame of the {@code lapply}/{@code vapply}
+     * closure.
+     */
+    @TruffleBoundary
+    public static Object[] apply(MaterializedFrame frame, RAbstractVector vector, RFunction fun) {
+        int length = vector.getLength();
+        // the chunks themselves are evaluated sequentially
+        if (length < 2 * MIN_CHUNK_SIZE || fun.isBuiltin() || RContext.getInstance().getKind() == ContextKind.SHARE_PARENT_RO) {
+            return null;
+        }
+        if (hasVarArgs(frame) || !isPure(fun)) {
+            return null;
+        }
+        Object[] elements = getElements(vector);
+        if (elements == null) {
+            return null;
+        }
+        // from here on, the elements are shipped to the workers
+        for (Object element : elements) {
+            if (element instanceof RShareable) {
+                ((RShareable) element).makeSharedPermanent();
+            }
+        }
+        byte[] serializedFun = RSerialize.serialize(fun, RSerialize.XDR, RSerialize.DEFAULT_VERSION, null);
+        int chunkCount = Math.min(FastROptions.ParallelApplyContexts.getNonNegativeIntValue(), length / MIN_CHUNK_SIZE);
+        ContextPool.Task[] tasks = new ContextPool.Task[chunkCount];
+        int[] ids = new int[chunkCount];
+        try {
+            for (int i = 0; i < chunkCount; i++) {
+                Object[] chunk = Arrays.copyOfRange(elements, chunkStart(i, chunkCount, length), chunkStart(i + 1, chunkCount, length));
+                ids[i] = chunkIds.incrementAndGet();
+                chunks.put(ids[i], new Object[]{serializedFun, chunk});
+                // a warning aborts the chunk, so that the sequential evaluation reports it
+                Source source = RSource.fromTextInternal("local({ p <- .fastr.parallel.chunk(" + ids[i] + "L); tryCatch(lapply(p[[2L]], p[[1L]]), warning = function(w) NULL) })",
+                                RSource.Internal.CONTEXT_EVAL);
+                tasks[i] = ContextPool.submit(createContextInfo(), NO_ARGS, source);
+            }
+            Object[] result = new Object[length];
+            boolean failed = false;
+            for (int i = 0; i < chunkCount; i++) {
+                RList taskResult = tasks[i].getResult();
+                Object value = taskResult.getDataAt(0);
+                int start = chunkStart(i, chunkCount, length);
+                int chunkLength = chunkStart(i + 1, chunkCount, length) - start;
+                if (taskResult.getAttr("error") != null || !(value instanceof RList) || ((RList) value).getLength() != chunkLength) {
+                    // wait for the remaining chunks anyway, the contexts are reused
+                    failed = true;
+                    continue;
+                }
+                RList values = (RList) value;
+                for (int j = 0; j < chunkLength; j++) {
+                    result[start + j] = values.getDataAt(j);
+                }
+            }
+            if (failed) {
+                return null;
+            }
+            parallelChunks.add(chunkCount);
+            return result;
+        } catch (InterruptedException e) {
+            throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "error finishing parallel apply");
+        } finally {
+            for (int id : ids) {
+                chunks.remove(id);
+            }
+        }
+    }
+
+    private static int chunkStart(int chunk, int chunkCount, int length) {
+        return (int) ((long) chunk * length / chunkCount);
+    }
+
+    private static ContextInfo createContextInfo() {
+        RStartParams startParams = new RStartParams(RCmdOptions.parseArguments(Client.RSCRIPT, NO_ARGS, false), false);
+        return ContextInfo.create(startParams, ContextKind.SHARE_PARENT_RO, RContext.getInstance(), RContext.getInstance().getConsoleHandler());
+    }
+
+    private static boolean hasVarArgs(MaterializedFrame frame) {
+        FrameSlot slot = frame.getFrameDescriptor().findFrameSlot(ArgumentsSignature.VARARG_NAME);
+        if (slot == null) {
+            return false;
+        }
+        Object value = frame.getValue(slot);
+        return value instanceof RArgsValuesAndNames && ((RArgsValuesAndNames) value).getLength() > 0;
+    }
+
+    /**
+     * Returns the elements {@code X[[i]]} if they can be shared with other contexts, {@code null}
+     * otherwise. Like {@code RChannel}, the caller makes the shared vectors permanently shared, so
+     * that neither side updates them in place.
+     */
+    private static Object[] getElements(RAbstractVector vector) {
+        int length = vector.getLength();
+        Object[] elements = new Object[length];
+        if (vector instanceof RList) {
+            RList list = (RList) vector;
+            for (int i = 0; i < length; i++) {
+                Object element = list.getDataAt(i);
+                if (element instanceof RAttributable && ((RAttributable) element).getAttributes() != null) {
+                    return null;
+                }
+                if (isAtomic(element)) {
+                    elements[i] = element;
+                } else if (element instanceof Integer || element instanceof Double || element instanceof Byte || element instanceof String) {
+                    elements[i] = element;
+                } else {
+                    return null;
+                }
+            }
+        } else if (isAtomic(vector)) {
+            for (int i = 0; i < length; i++) {
+                elements[i] = vector.getDataAtAsObject(i);
+            }
+        } else {
+            return null;
+        }
+        return elements;
+    }
+
+    private static boolean isAtomic(Object value) {
+        return value instanceof RAbstractVector && !(value instanceof RAbstractListVector);
+    }
+
+    private static boolean isPure(RFunction fun) {
+        if (fun.getEnclosingFrame() != REnvironment.globalEnv().getFrame()) {
+            return false;
+        }
+        FreeNames freeNames;
+        RootCallTarget target = fun.getTarget();
+        synchronized (pureFunctions) {
+            freeNames = pureFunctions.get(target);
+            if (freeNames == null) {
+                freeNames = fun.getRootNode() instanceof RSyntaxFunction ? new PurityVisitor().getFreeNames((RSyntaxFunction) fun.getRootNode()) : IMPURE;
+                pureFunctions.put(target, freeNames);
+            }
+        }
+        if (freeNames == IMPURE) {
+            return false;
+        }
+        for (String name : freeNames.calls) {
+            if (isShadowed(name)) {
+                return false;
+            }
+        }
+        for (String name : freeNames.reads) {
+            if (isShadowed(name) || REnvironment.baseEnv().get(name) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether {@code name} is defined in the global environment or any package attached to
+     * the search path above base.
+     */
+    private static boolean isShadowed(String name) {
+        REnvironment base = REnvironment.baseEnv();
+        for (REnvironment env = REnvironment.globalEnv(); env != null && env != base; env = env.getParent()) {
+            if (env.get(name) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks that a function only calls {@link #PURE_FUNCTIONS} and only reads its own variables.
+     * Assignments with {@code <-} and {@code =} are local to the function and therefore allowed.
+     */
+    private static final class PurityVisitor extends RSyntaxVisitor<Boolean> {
+        private final HashSet<String> locals = new HashSet<>();
+        private final HashSet<String> reads = new HashSet<>();
+        private final HashSet<String> calls = new HashSet<>();
+
+        /**
+         * Returns the functions called and the variables read but not defined by
+         * {@code function}, or {@link #IMPURE} if it is not syntactically pure.
+         */
+        FreeNames getFreeNames(RSyntaxFunction function) {
+            if (!accept(function)) {
+                return IMPURE;
+            }
+            reads.removeAll(locals);
+            return new FreeNames(calls.toArray(new String[calls.size()]), reads.toArray(new String[reads.size()]));
+        }
+
+        @Override
+        protected Boolean visit(RSyntaxCall element) {
+            RSyntaxElement lhs = element.getSyntaxLHS();
+            if (!(lhs instanceof RSyntaxLookup)) {
+                return false;
+            }
+            String name = ((RSyntaxLookup) lhs).getIdentifier();
+            if (!PURE_FUNCTIONS.contains(name)) {
+                return false;
+            }
+            calls.add(name);
+            RSyntaxElement[] args = element.getSyntaxArguments();
+            if ((name.equals("<-") || name.equals("=") || name.equals("for")) && args.length > 0) {
+                // the target of an assignment or replacement, or the loop variable
+                RSyntaxElement target = args[0];
+                while (target instanceof RSyntaxCall && ((RSyntaxCall) target).getSyntaxArguments().length > 0) {
+                    target = ((RSyntaxCall) target).getSyntaxArguments()[0];
+                }
+                if (!(target instanceof RSyntaxLookup)) {
+                    return false;
+                }
+                locals.add(((RSyntaxLookup) target).getIdentifier());
+            }
+            for (int i = 0; i < args.length; i++) {
+                // the field name of $ is not a variable
+                if (args[i] != null && !(name.equals("$") && i == 1) && !accept(args[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        protected Boolean visit(RSyntaxConstant element) {
+            return true;
+        }
+
+        @Override
+        protected Boolean visit(RSyntaxLookup element) {
+            reads.add(element.getIdentifier());
+            return true;
+        }
+
+        @Override
+        protected Boolean visit(RSyntaxFunction element) {
+            ArgumentsSignature signature = element.getSyntaxSignature();
+            for (int i = 0; i < signature.getLength(); i++) {
+                locals.add(signature.getName(i));
+            }
+            for (RSyntaxElement arg : element.getSyntaxArgumentDefaults()) {
+                if (arg != null && !accept(arg)) {
+                    return false;
+                }
+            }
+            return accept(element.getSyntaxBody());
+        }
+    }
+
+    /**
+     * Hands a chunk of an ongoing parallel apply to the worker context evaluating it, as a list of
+     * the function and the elements.
+     */
+    @RBuiltin(name = ".fastr.parallel.chunk", kind = PRIMITIVE, parameterNames = {"id"}, behavior = COMPLEX)
+    public abstract static class Chunk extends RBuiltinNode {
+        @Specialization
+        @TruffleBoundary
+        protected RList chunk(int id) {
+            Object[] chunk = chunks.get(id);
+            if (chunk == null) {
+                throw RError.error(this, RError.Message.GENERIC, "invalid chunk id");
+            }
+            try {
+                Object fun = RSerialize.unserialize((byte[]) chunk[0], null, null, null);
+                return RDataFactory.createList(new Object[]{fun, RDataFactory.createList((Object[]) chunk[1])});
+            } catch (IOException e) {
+                throw RError.error(this, RError.Message.GENERIC, "error unserializing the function");
+            }
+        }
+    }
+}
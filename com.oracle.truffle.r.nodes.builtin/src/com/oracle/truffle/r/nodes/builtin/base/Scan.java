@@ -27,6 +27,7 @@ import com.oracle.truffle.r.nodes.builtin.CastBuilder;
 import com.oracle.truffle.r.nodes.builtin.RBuiltinNode;
 import com.oracle.truffle.r.nodes.unary.CastToVectorNode;
 import com.oracle.truffle.r.nodes.unary.CastToVectorNodeGen;
+import com.oracle.truffle.r.runtime.NumberParser;
 import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.RRuntime;
@@ -520,7 +521,7 @@ public abstract class Scan extends RBuiltinNode {
             if (isNaString(buffer, 0, data)) {
                 return RRuntime.INT_NA;
             } else {
-                return RRuntime.string2intNoCheck(buffer);
+                return NumberParser.parseInt(buffer);
             }
         }
 
@@ -528,7 +529,7 @@ public abstract class Scan extends RBuiltinNode {
             if (isNaString(buffer, 0, data)) {
                 return RRuntime.DOUBLE_NA;
             } else {
-                return RRuntime.string2doubleNoCheck(buffer);
+                return NumberParser.parseDouble(buffer, 0, buffer.length(), data.decchar);
             }
         }
 
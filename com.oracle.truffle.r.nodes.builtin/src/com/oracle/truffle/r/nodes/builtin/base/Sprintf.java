@@ -25,6 +25,11 @@ package com.oracle.truffle.r.nodes.builtin.base;
 import static com.oracle.truffle.r.runtime.builtins.RBehavior.PURE;
 import static com.oracle.truffle.r.runtime.builtins.RBuiltinKind.INTERNAL;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Locale;
 
 import com.oracle.truffle.api.CompilerDirectives;
@@ -50,6 +55,12 @@ public abstract class Sprintf extends RBuiltinNode {
 
     @Child private Sprintf sprintfRecursive;
 
+    /**
+     * The plan for the most recently used format string of this call site. Plans are immutable,
+     * so racing updates from different threads are harmless.
+     */
+    private FormatPlan cachedPlan;
+
     @Specialization
     protected String sprintf(String fmt, @SuppressWarnings("unused") RMissing x) {
         return fmt;
@@ -64,7 +75,7 @@ public abstract class Sprintf extends RBuiltinNode {
     @Specialization
     @TruffleBoundary
     protected String sprintf(String fmt, int x) {
-        return format(fmt, x);
+        return format(new StringBuilder(), fmt, x);
     }
 
     @Specialization(guards = "fmtLengthOne(fmt)")
@@ -76,15 +87,16 @@ public abstract class Sprintf extends RBuiltinNode {
     @Specialization(guards = "fmtLengthOne(fmt)")
     @TruffleBoundary
     protected String sprintf(RAbstractStringVector fmt, byte x) {
-        return format(fmt.getDataAt(0), x);
+        return format(new StringBuilder(), fmt.getDataAt(0), x);
     }
 
     @Specialization
     @TruffleBoundary
     protected RStringVector sprintf(String fmt, RAbstractIntVector x) {
+        StringBuilder sb = new StringBuilder();
         String[] r = new String[x.getLength()];
         for (int k = 0; k < r.length; k++) {
-            r[k] = format(fmt, x.getDataAt(k));
+            r[k] = format(sb, fmt, x.getDataAt(k));
         }
         return RDataFactory.createStringVector(r, RDataFactory.COMPLETE_VECTOR);
     }
@@ -98,14 +110,7 @@ public abstract class Sprintf extends RBuiltinNode {
     @Specialization
     @TruffleBoundary
     protected String sprintf(String fmt, double x) {
-        char f = Character.toLowerCase(firstFormatChar(fmt));
-        if (f == 'x' || f == 'd') {
-            if (Math.floor(x) == x) {
-                return format(fmt, (long) x);
-            }
-            throw RError.error(this, RError.Message.INVALID_FORMAT_DOUBLE, fmt);
-        }
-        return format(fmt, x);
+        return formatDouble(new StringBuilder(), fmt, x);
     }
 
     @Specialization(guards = "fmtLengthOne(fmt)")
@@ -117,9 +122,10 @@ public abstract class Sprintf extends RBuiltinNode {
     @Specialization
     @TruffleBoundary
     protected RStringVector sprintf(String fmt, RAbstractDoubleVector x) {
+        StringBuilder sb = new StringBuilder();
         String[] r = new String[x.getLength()];
         for (int k = 0; k < r.length; k++) {
-            r[k] = sprintf(fmt, x.getDataAt(k));
+            r[k] = formatDouble(sb, fmt, x.getDataAt(k));
         }
         return RDataFactory.createStringVector(r, RDataFactory.COMPLETE_VECTOR);
     }
@@ -133,7 +139,7 @@ public abstract class Sprintf extends RBuiltinNode {
     @Specialization
     @TruffleBoundary
     protected String sprintf(String fmt, String x) {
-        return format(fmt, x);
+        return format(new StringBuilder(), fmt, x);
     }
 
     @Specialization(guards = "fmtLengthOne(fmt)")
@@ -145,9 +151,10 @@ public abstract class Sprintf extends RBuiltinNode {
     @Specialization
     @TruffleBoundary
     protected RStringVector sprintf(String fmt, RAbstractStringVector x) {
+        StringBuilder sb = new StringBuilder();
         String[] r = new String[x.getLength()];
         for (int k = 0; k < r.length; k++) {
-            r[k] = format(fmt, x.getDataAt(k));
+            r[k] = format(sb, fmt, x.getDataAt(k));
         }
         return RDataFactory.createStringVector(r, RDataFactory.COMPLETE_VECTOR);
     }
@@ -204,10 +211,11 @@ public abstract class Sprintf extends RBuiltinNode {
                 return RDataFactory.createStringVector(fmt);
             }
         } else {
+            StringBuilder sb = new StringBuilder();
             String[] r = new String[maxLength];
             for (int k = 0; k < r.length; k++) {
                 Object[] sprintfArgs = createSprintfArgs(values, k, maxLength);
-                r[k] = format(fmt, sprintfArgs);
+                r[k] = format(sb, fmt, sprintfArgs);
             }
             return RDataFactory.createStringVector(r, RDataFactory.COMPLETE_VECTOR);
 
@@ -264,7 +272,43 @@ public abstract class Sprintf extends RBuiltinNode {
         }
     }
 
-    private static String format(String fmt, Object... args) {
+    private String formatDouble(StringBuilder sb, String fmt, double x) {
+        char f = Character.toLowerCase(firstFormatChar(fmt));
+        if (f == 'x' || f == 'd') {
+            if (Math.floor(x) == x) {
+                return format(sb, fmt, (long) x);
+            }
+            throw RError.error(this, RError.Message.INVALID_FORMAT_DOUBLE, fmt);
+        }
+        return format(sb, fmt, x);
+    }
+
+    /**
+     * Formats {@code args} according to {@code fmt}, using the compiled {@link FormatPlan} for
+     * {@code fmt} when possible. The given builder is reused across the elements of a vectorized
+     * call.
+     */
+    private String format(StringBuilder sb, String fmt, Object... args) {
+        FormatPlan plan = getPlan(fmt);
+        if (plan.segments != null) {
+            sb.setLength(0);
+            if (plan.format(sb, args)) {
+                return sb.toString();
+            }
+        }
+        return legacyFormat(fmt, args);
+    }
+
+    private FormatPlan getPlan(String fmt) {
+        FormatPlan plan = cachedPlan;
+        if (plan == null || !plan.fmt.equals(fmt)) {
+            plan = FormatPlan.compile(fmt);
+            cachedPlan = plan;
+        }
+        return plan;
+    }
+
+    private static String legacyFormat(String fmt, Object... args) {
         char[] conversions = new char[args.length];
         String format = processFormat(fmt, args, conversions);
         adjustValues(args, conversions);
@@ -373,19 +417,314 @@ public abstract class Sprintf extends RBuiltinNode {
 
     private static void adjustValues(Object[] args, char[] conversions) {
         for (int i = 0; i < args.length; i++) {
-            if (conversions[i] == 0) {
-                continue;
+            args[i] = adjustValue(args[i], conversions[i]);
+        }
+    }
+
+    private static Object adjustValue(Object arg, char conversion) {
+        if (conversion == 'd') {
+            if (arg instanceof Double) {
+                return ((Double) arg).intValue();
+            }
+        } else if (conversion == 's') {
+            if (arg instanceof Byte) {
+                return RRuntime.logicalToString((Byte) arg);
+            }
+        }
+        return arg;
+    }
+
+    //
+    // precompiled format plans
+    //
+
+    /**
+     * A format string compiled into a sequence of literal and conversion segments, so that
+     * vectorized calls do not re-parse the format for every element. Common conversions are
+     * written directly into a {@link StringBuilder}; everything else (and every combination of
+     * flags that {@link java.util.Formatter} would reject) is delegated per segment to
+     * {@link String#format}, which keeps the results identical to {@link Sprintf#legacyFormat}.
+     */
+    private static final class FormatPlan {
+        final String fmt;
+        /**
+         * Either {@link String} literals or {@link Segment}s; {@code null} if the format can only
+         * be handled by {@link Sprintf#legacyFormat}, e.g. because widths are given by arguments.
+         */
+        final Object[] segments;
+        /**
+         * The conversion that determines how each argument is adjusted, see
+         * {@link Sprintf#adjustValues}.
+         */
+        final char[] conversions;
+
+        private FormatPlan(String fmt, Object[] segments, char[] conversions) {
+            this.fmt = fmt;
+            this.segments = segments;
+            this.conversions = conversions;
+        }
+
+        static FormatPlan compile(String fmt) {
+            char[] cs = fmt.toCharArray();
+            ArrayList<Object> segments = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            char[] conversions = new char[0];
+            int argc = 1;
+            int i = 0;
+            while (i < cs.length) {
+                while (i < cs.length && cs[i] != '%') {
+                    literal.append(cs[i++]);
+                }
+                if (i == cs.length) {
+                    break;
+                }
+                i++;
+                FormatInfo fi = extractFormatInfo(cs, i, argc);
+                argc = fi.argc;
+                if (fi.conversion == '%') {
+                    literal.append('%');
+                } else {
+                    if (fi.widthIsArg || fi.precisionIsArg) {
+                        return new FormatPlan(fmt, null, null);
+                    }
+                    if (literal.length() > 0) {
+                        segments.add(literal.toString());
+                        literal.setLength(0);
+                    }
+                    segments.add(new Segment(fi));
+                    if (fi.numArg > conversions.length) {
+                        conversions = Arrays.copyOf(conversions, fi.numArg);
+                    }
+                    conversions[fi.numArg - 1] = fi.conversion;
+                }
+                i = fi.nextChar;
             }
-            if (conversions[i] == 'd') {
-                if (args[i] instanceof Double) {
-                    args[i] = ((Double) args[i]).intValue();
+            if (literal.length() > 0) {
+                segments.add(literal.toString());
+            }
+            return new FormatPlan(fmt, segments.toArray(), conversions);
+        }
+
+        /**
+         * Appends the formatted arguments to {@code sb}. Returns {@code false} if the arguments do
+         * not match the plan, in which case the caller falls back to {@link Sprintf#legacyFormat} to
+         * produce the appropriate error.
+         */
+        boolean format(StringBuilder sb, Object[] args) {
+            if (args.length < conversions.length) {
+                return false;
+            }
+            for (Object s : segments) {
+                if (s instanceof String) {
+                    sb.append((String) s);
+                } else {
+                    Segment segment = (Segment) s;
+                    int argIndex = segment.info.numArg - 1;
+                    Object arg = adjustValue(args[argIndex], conversions[argIndex]);
+                    if (!segment.fast || !segment.append(sb, arg)) {
+                        sb.append(stringFormat(segment.spec, new Object[]{arg}));
+                    }
                 }
             }
-            if (conversions[i] == 's') {
-                if (args[i] instanceof Byte) {
-                    args[i] = RRuntime.logicalToString((Byte) args[i]);
+            return true;
+        }
+    }
+
+    private static final class Segment {
+        final FormatInfo info;
+        /** Equivalent {@link java.util.Formatter} specification for a single argument. */
+        final String spec;
+        /** Whether the flags allow formatting without {@link java.util.Formatter}. */
+        final boolean fast;
+
+        Segment(FormatInfo info) {
+            this.info = info;
+            StringBuilder sb = new StringBuilder("%");
+            if (info.adjustLeft) {
+                sb.append('-');
+            }
+            if (info.alwaysSign) {
+                sb.append('+');
+            }
+            if (info.alternate) {
+                sb.append('#');
+            }
+            if (info.padZero) {
+                sb.append('0');
+            }
+            if (info.spacePrefix) {
+                sb.append(' ');
+            }
+            if (info.width != 0) {
+                sb.append(info.width);
+            }
+            if (info.precision != 0) {
+                sb.append('.').append(info.precision);
+            }
+            this.spec = sb.append(info.conversion).toString();
+            this.fast = isFast(info);
+        }
+
+        private static boolean isFast(FormatInfo fi) {
+            if (fi.alternate || (fi.alwaysSign && fi.spacePrefix) || (fi.adjustLeft && fi.padZero) || ((fi.adjustLeft || fi.padZero) && fi.width == 0)) {
+                return false;
+            }
+            switch (fi.conversion) {
+                case 'd':
+                    return fi.precision == 0;
+                case 'x':
+                case 'X':
+                    return fi.precision == 0 && !fi.alwaysSign && !fi.spacePrefix;
+                case 's':
+                    return !fi.alwaysSign && !fi.spacePrefix && !fi.padZero;
+                case 'f':
+                case 'e':
+                case 'E':
+                case 'g':
+                case 'G':
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Appends {@code arg} formatted according to this segment, or returns {@code false} if
+         * the type of the argument is not handled here.
+         */
+        boolean append(StringBuilder sb, Object arg) {
+            switch (info.conversion) {
+                case 'd':
+                    if (arg instanceof Integer || arg instanceof Long || arg instanceof Byte) {
+                        long value = ((Number) arg).longValue();
+                        String digits = Long.toString(value);
+                        if (value < 0) {
+                            pad(sb, true, digits.substring(1));
+                        } else {
+                            pad(sb, false, digits);
+                        }
+                        return true;
+                    }
+                    return false;
+                case 'x':
+                case 'X':
+                    String hex;
+                    if (arg instanceof Integer) {
+                        hex = Integer.toHexString((Integer) arg);
+                    } else if (arg instanceof Long) {
+                        hex = Long.toHexString((Long) arg);
+                    } else {
+                        return false;
+                    }
+                    pad(sb, false, info.conversion == 'X' ? hex.toUpperCase() : hex);
+                    return true;
+                case 's':
+                    String str = String.valueOf(arg);
+                    if (info.precision != 0 && info.precision < str.length()) {
+                        str = str.substring(0, info.precision);
+                    }
+                    pad(sb, false, str);
+                    return true;
+                default:
+                    if (!(arg instanceof Double)) {
+                        return false;
+                    }
+                    double value = (Double) arg;
+                    if (Double.isNaN(value) || Double.isInfinite(value)) {
+                        return false;
+                    }
+                    String body = formatDouble(Math.abs(value));
+                    pad(sb, Double.compare(value, 0.0) < 0, Character.isUpperCase(info.conversion) ? body.toUpperCase() : body);
+                    return true;
+            }
+        }
+
+        /**
+         * Formats a finite, non-negative double the way {@link java.util.Formatter} does, i.e.
+         * rounding the shortest decimal representation half-up.
+         */
+        private String formatDouble(double value) {
+            int precision = info.precision == 0 ? 6 : info.precision;
+            BigDecimal bd = BigDecimal.valueOf(value);
+            switch (info.conversion) {
+                case 'f':
+                    return bd.setScale(precision, RoundingMode.HALF_UP).toPlainString();
+                case 'e':
+                case 'E':
+                    return scientific(bd, precision);
+                default:
+                    if (bd.signum() == 0) {
+                        return bd.setScale(precision - 1).toPlainString();
+                    }
+                    BigDecimal rounded = bd.round(new MathContext(precision, RoundingMode.HALF_UP));
+                    int exponent = rounded.precision() - rounded.scale() - 1;
+                    if (exponent >= -4 && exponent < precision) {
+                        return rounded.setScale(precision - exponent - 1).toPlainString();
+                    }
+                    return scientific(rounded, precision - 1);
+            }
+        }
+
+        private static String scientific(BigDecimal value, int precision) {
+            String digits;
+            int exponent;
+            if (value.signum() == 0) {
+                digits = "0";
+                exponent = 0;
+            } else {
+                BigDecimal rounded = value.round(new MathContext(precision + 1, RoundingMode.HALF_UP));
+                digits = rounded.unscaledValue().toString();
+                exponent = digits.length() - 1 - rounded.scale();
+            }
+            StringBuilder sb = new StringBuilder(precision + 6);
+            sb.append(digits.charAt(0));
+            if (precision > 0) {
+                sb.append('.');
+                sb.append(digits, 1, Math.min(digits.length(), precision + 1));
+                for (int i = digits.length(); i <= precision; i++) {
+                    sb.append('0');
                 }
             }
+            sb.append('e').append(exponent < 0 ? '-' : '+');
+            int absExponent = Math.abs(exponent);
+            if (absExponent < 10) {
+                sb.append('0');
+            }
+            return sb.append(absExponent).toString();
+        }
+
+        /**
+         * Appends the sign, if any, and {@code body}, padded to the width of this segment.
+         */
+        private void pad(StringBuilder sb, boolean negative, String body) {
+            char sign = negative ? '-' : info.alwaysSign ? '+' : info.spacePrefix ? ' ' : '\0';
+            int length = body.length() + (sign == '\0' ? 0 : 1);
+            int padding = Math.max(0, info.width - length);
+            if (info.padZero) {
+                appendSign(sb, sign);
+                appendRepeated(sb, '0', padding);
+                sb.append(body);
+            } else if (info.adjustLeft) {
+                appendSign(sb, sign);
+                sb.append(body);
+                appendRepeated(sb, ' ', padding);
+            } else {
+                appendRepeated(sb, ' ', padding);
+                appendSign(sb, sign);
+                sb.append(body);
+            }
+        }
+
+        private static void appendSign(StringBuilder sb, char sign) {
+            if (sign != '\0') {
+                sb.append(sign);
+            }
+        }
+
+        private static void appendRepeated(StringBuilder sb, char c, int count) {
+            for (int i = 0; i < count; i++) {
+                sb.append(c);
+            }
         }
     }
 
@@ -549,7 +888,7 @@ public abstract class Sprintf extends RBuiltinNode {
         int j = i;
         int num = cs[j++] - 48;
         while (isNumeric(cs[j])) {
-            num = 10 * num + cs[j++];
+            num = 10 * num + cs[j++] - 48;
         }
         fi.nextChar = j;
         return num;
@@ -47,6 +47,7 @@ import com.oracle.truffle.r.runtime.RArguments;
 import com.oracle.truffle.r.runtime.REnvVars;
 import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.StartupTracer;
 import com.oracle.truffle.r.runtime.Utils;
 import com.oracle.truffle.r.runtime.builtins.RBuiltin;
 import com.oracle.truffle.r.runtime.context.RContext;
@@ -134,9 +135,11 @@ public class SysFunctions {
                 if (func.toString().equals(LOADNAMESPACE)) {
                     if (setting) {
                         RContext.getInstance().setNamespaceName(values.getDataAt(0));
+                        StartupTracer.begin(StartupTracer.Kind.NAMESPACE, values.getDataAt(0));
                     } else {
                         // Now we can run the overrides
                         RBuiltinPackages.loadDefaultPackageOverrides(RContext.getInstance().getNamespaceName());
+                        StartupTracer.end(StartupTracer.Kind.NAMESPACE);
                     }
                     System.console();
                 }
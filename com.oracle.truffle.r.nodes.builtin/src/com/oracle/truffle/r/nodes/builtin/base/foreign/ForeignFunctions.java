@@ -66,6 +66,7 @@ import com.oracle.truffle.r.library.utils.Download;
 import com.oracle.truffle.r.library.utils.MenuNodeGen;
 import com.oracle.truffle.r.library.utils.ObjectSizeNodeGen;
 import com.oracle.truffle.r.library.utils.RprofNodeGen;
+import com.oracle.truffle.r.library.utils.RprofmemNodeGen;
 import com.oracle.truffle.r.library.utils.TypeConvertNodeGen;
 import com.oracle.truffle.r.library.utils.WriteTable;
 import com.oracle.truffle.r.nodes.access.vector.ElementAccessMode;
@@ -560,6 +561,8 @@ public class ForeignFunctions {
                         return new DevicesCCalls.C_DevOff();
                     case "devcur":
                         return new DevicesCCalls.C_DevCur();
+                    case "devCairo":
+                        return new DevicesCCalls.C_DevCairo();
                 }
             }
             switch (name) {
@@ -576,8 +579,9 @@ public class ForeignFunctions {
                     return getExternalModelBuiltinNode("termsform");
                 case "Rprof":
                     return RprofNodeGen.create();
-                case "unzip":
                 case "Rprofmem":
+                    return RprofmemNodeGen.create();
+                case "unzip":
                 case "addhistory":
                 case "loadhistory":
                 case "savehistory":
@@ -644,6 +648,8 @@ public class ForeignFunctions {
                 switch (lookupName(f)) {
                     case "C_par":
                         return new C_Par();
+                    case "C_plot_new":
+                        return new GraphicsCCalls.C_PlotNew();
                 }
             }
             String name = lookupName(f);
@@ -125,6 +125,10 @@ final class PrintContext {
         if (ctxStack.isEmpty()) {
             ctx.out.close();
             printCtxTL.remove();
+        } else {
+            // a nested print (e.g. from a show method) may be followed by direct writes such as
+            // cat, so its buffered output must not wait for the outermost context
+            ctx.out.flush();
         }
 
         return ctx;
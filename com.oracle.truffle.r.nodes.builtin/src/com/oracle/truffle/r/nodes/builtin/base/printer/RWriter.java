@@ -27,18 +27,46 @@ import java.io.Writer;
 
 import com.oracle.truffle.r.runtime.conn.StdConnections;
 
+/**
+ * Writes the printed output to the standard output connection (or the active sink). The printers
+ * write element by element, so the output is collected in a buffer that is reused and written to
+ * the connection whenever it exceeds {@link #BUFFER_SIZE} characters, and when the writer is
+ * flushed or closed. Large objects are thus written in chunks as they are printed, and the
+ * connection is not called for each element.
+ */
 class RWriter extends Writer {
 
+    private static final int BUFFER_SIZE = 8192;
+
+    private final StringBuilder buffer = new StringBuilder(BUFFER_SIZE);
+
     @Override
     public void write(char[] cbuf, int off, int len) throws IOException {
-        StdConnections.getStdout().writeString(new String(cbuf, off, len), false);
+        buffer.append(cbuf, off, len);
+        if (buffer.length() >= BUFFER_SIZE) {
+            flush();
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        buffer.append(str, off, off + len);
+        if (buffer.length() >= BUFFER_SIZE) {
+            flush();
+        }
     }
 
     @Override
     public void flush() throws IOException {
+        if (buffer.length() > 0) {
+            String chunk = buffer.toString();
+            buffer.setLength(0);
+            StdConnections.getStdout().writeString(chunk, false);
+        }
     }
 
     @Override
     public void close() throws IOException {
+        flush();
     }
 }
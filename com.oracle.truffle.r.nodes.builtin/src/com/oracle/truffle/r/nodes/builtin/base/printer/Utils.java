@@ -22,6 +22,8 @@
  */
 package com.oracle.truffle.r.nodes.builtin.base.printer;
 
+import java.io.PrintWriter;
+
 import com.oracle.truffle.r.runtime.data.RNull;
 import com.oracle.truffle.r.runtime.data.model.RAbstractVector;
 
@@ -40,6 +42,18 @@ final class Utils {
         return blanks == 0 ? "" : blanks + "";
     }
 
+    private static final char[] BLANKS = "                                ".toCharArray();
+
+    /**
+     * Writes {@code n} blanks, the equivalent of {@code printf("%*s", n, "")} without creating a
+     * format string.
+     */
+    static void printBlanks(PrintWriter out, int n) {
+        for (int remaining = n; remaining > 0; remaining -= BLANKS.length) {
+            out.write(BLANKS, 0, Math.min(remaining, BLANKS.length));
+        }
+    }
+
     @SuppressWarnings("unchecked")
     static <T> T castTo(Object x) {
         if (x instanceof RNull) {
@@ -13,6 +13,7 @@ package com.oracle.truffle.r.nodes.builtin.base.printer;
 
 import static com.oracle.truffle.r.nodes.builtin.base.printer.Utils.asBlankArg;
 import static com.oracle.truffle.r.nodes.builtin.base.printer.Utils.indexWidth;
+import static com.oracle.truffle.r.nodes.builtin.base.printer.Utils.printBlanks;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -178,7 +179,7 @@ abstract class VectorPrinter<T extends RAbstractVector> extends AbstractValuePri
 
             width = doLab(0);
 
-            FormatMetrics fm = formatVector(0, n);
+            FormatMetrics fm = formatVector(0, nPr);
             final int w = fm.maxWidth;
 
             for (int i = 0; i < nPr; i++) {
@@ -186,7 +187,7 @@ abstract class VectorPrinter<T extends RAbstractVector> extends AbstractValuePri
                     out.println();
                     width = doLab(i);
                 }
-                out.printf("%" + asBlankArg(gap) + "s", "");
+                printBlanks(out, gap);
                 printElementAndNotify(i, fm);
                 width += w + gap;
             }
@@ -207,11 +208,11 @@ abstract class VectorPrinter<T extends RAbstractVector> extends AbstractValuePri
             int nperline;
             int wn;
 
-            FormatMetrics fm = formatVector(0, n);
+            FormatMetrics fm = formatVector(0, nPr);
 
             PrintParameters pp = printCtx.parameters();
 
-            wn = StringVectorPrinter.formatString(names, 0, n, false, pp);
+            wn = StringVectorPrinter.formatString(names, 0, nPr, false, pp);
             if (fm.maxWidth < wn) {
                 fm.maxWidth = wn;
             }
@@ -222,8 +223,8 @@ abstract class VectorPrinter<T extends RAbstractVector> extends AbstractValuePri
             if (nperline <= 0) {
                 nperline = 1;
             }
-            nlines = n / nperline;
-            if (n % nperline != 0) {
+            nlines = nPr / nperline;
+            if (nPr % nperline != 0) {
                 nlines += 1;
             }
 
@@ -235,16 +236,19 @@ abstract class VectorPrinter<T extends RAbstractVector> extends AbstractValuePri
                 if (i > 0) {
                     out.println();
                 }
-                for (j = 0; j < nperline && (k = i * nperline + j) < n; j++) {
+                for (j = 0; j < nperline && (k = i * nperline + j) < nPr; j++) {
                     StringVectorPrinter.printString(names.getDataAt(k), w, namesPrintCtx);
-                    out.printf("%" + asBlankArg(gap) + "s", "");
+                    printBlanks(out, gap);
                 }
                 out.println();
-                for (j = 0; j < nperline && (k = i * nperline + j) < n; j++) {
+                for (j = 0; j < nperline && (k = i * nperline + j) < nPr; j++) {
                     printElementAndNotify(k, fm);
-                    out.printf("%" + asBlankArg(gap) + "s", "");
+                    printBlanks(out, gap);
                 }
             }
+            if (nPr < n) {
+                out.printf("\n [ reached getOption(\"max.print\") -- omitted %d entries ]", n - nPr);
+            }
         }
 
         private void printMatrix() throws IOException {
@@ -661,9 +665,10 @@ abstract class VectorPrinter<T extends RAbstractVector> extends AbstractValuePri
     private static void printVectorIndex(int i, int w, PrintWriter out) {
         /* print index label "[`i']" , using total width `w' (left filling blanks) */
         // out.printf("%*s[%ld]", w - indexWidth(i) - 2, "", i);
-        String blanks = asBlankArg(w - indexWidth(i) - 2);
-        String fmt = "%" + blanks + "s[%d]";
-        out.printf(fmt, "", i);
+        printBlanks(out, w - indexWidth(i) - 2);
+        out.print('[');
+        out.print(i);
+        out.print(']');
     }
 
     private static final class MatrixDimNames {
@@ -41,6 +41,7 @@ import com.oracle.truffle.r.runtime.RSource;
 import com.oracle.truffle.r.runtime.RStartParams;
 import com.oracle.truffle.r.runtime.builtins.RBuiltin;
 import com.oracle.truffle.r.runtime.context.ContextInfo;
+import com.oracle.truffle.r.runtime.context.ContextPool;
 import com.oracle.truffle.r.runtime.context.RContext;
 import com.oracle.truffle.r.runtime.data.RDataFactory;
 import com.oracle.truffle.r.runtime.data.RIntVector;
@@ -108,8 +109,16 @@ public class FastRContext {
         @TruffleBoundary
         protected RIntVector spawn(RAbstractStringVector exprs, int pc, String kind, RAbstractStringVector args) {
             RContext.ContextKind contextKind = RContext.ContextKind.valueOf(kind);
-            RContext.EvalThread[] threads = new RContext.EvalThread[pc];
             int[] data = new int[pc];
+            if (ContextPool.isEnabled(contextKind)) {
+                String[] argsArray = args.materialize().getDataCopy();
+                for (int i = 0; i < pc; i++) {
+                    ContextInfo info = createContextInfo(contextKind, args);
+                    data[i] = ContextPool.submit(info, argsArray, RSource.fromTextInternal(exprs.getDataAt(i % exprs.getLength()), RSource.Internal.CONTEXT_EVAL)).getId();
+                }
+                return RDataFactory.createIntVector(data, RDataFactory.COMPLETE_VECTOR);
+            }
+            RContext.EvalThread[] threads = new RContext.EvalThread[pc];
             for (int i = 0; i < pc; i++) {
                 ContextInfo info = createContextInfo(contextKind, args);
                 threads[i] = new RContext.EvalThread(info, RSource.fromTextInternal(exprs.getDataAt(i % exprs.getLength()), RSource.Internal.CONTEXT_EVAL));
@@ -134,6 +143,11 @@ public class FastRContext {
         protected RNull eval(RAbstractIntVector handle) {
             try {
                 for (int i = 0; i < handle.getLength(); i++) {
+                    ContextPool.Task task = ContextPool.getTask(handle.getDataAt(i));
+                    if (task != null) {
+                        task.join();
+                        continue;
+                    }
                     Thread thread = RContext.EvalThread.threads.get(handle.getDataAt(i));
                     if (thread == null) {
                         // already done
@@ -157,7 +171,8 @@ public class FastRContext {
      * for completion of all the sub-contexts. {@code args} provides the command line arguments to
      * the contexts - this is the same for all.
      *
-     * Each evaluation is run in a new {@link RContext}/{@link PolyglotEngine}. The result is a list
+     * Each evaluation is run in a new {@link RContext}/{@link PolyglotEngine}, or in a reset one
+     * taken from the {@link ContextPool} if the pool is enabled. The result is a list
      * of lists. The top level list has the same number of entries as the number of contexts. The
      * sublist contains the result of the evaluation with name "result". It may also have an
      * attribute "error" if the evaluation threw an exception, in which case the result will be NA.
@@ -182,6 +197,22 @@ public class FastRContext {
         protected Object eval(RAbstractStringVector exprs, int pc, String kind, RAbstractStringVector args) {
             RContext.ContextKind contextKind = RContext.ContextKind.valueOf(kind);
             Object[] results = new Object[pc];
+            if (ContextPool.isEnabled(contextKind)) {
+                String[] argsArray = args.materialize().getDataCopy();
+                ContextPool.Task[] tasks = new ContextPool.Task[pc];
+                for (int i = 0; i < pc; i++) {
+                    ContextInfo info = createContextInfo(contextKind, args);
+                    tasks[i] = ContextPool.submit(info, argsArray, RSource.fromTextInternal(exprs.getDataAt(i % exprs.getLength()), RSource.Internal.CONTEXT_EVAL));
+                }
+                try {
+                    for (int i = 0; i < pc; i++) {
+                        results[i] = tasks[i].getResult();
+                    }
+                } catch (InterruptedException ex) {
+                    throw RError.error(this, RError.Message.GENERIC, "error finishing eval thread");
+                }
+                return RDataFactory.createList(results);
+            }
             // separate threads that run in parallel; invoking thread waits for completion
             RContext.EvalThread[] threads = new RContext.EvalThread[pc];
             for (int i = 0; i < pc; i++) {
@@ -218,20 +249,34 @@ public class FastRContext {
         protected void id(CastBuilder casts) {
             casts.arg("id").asIntegerVector().mustBe(nullValue().not().and(notEmpty())).findFirst();
         }
+
+        protected void timeout(CastBuilder casts) {
+            casts.arg("timeout").asDoubleVector().findFirst().notNA().mustBe(gte(0.0));
+        }
     }
 
-    @RBuiltin(name = ".fastr.channel.create", kind = PRIMITIVE, parameterNames = {"key"}, behavior = COMPLEX)
+    /**
+     * Creates a channel, {@code capacity} is the number of messages that can be sent in each
+     * direction before the sender blocks.
+     */
+    @RBuiltin(name = ".fastr.channel.create", kind = PRIMITIVE, parameterNames = {"key", "capacity"}, behavior = COMPLEX)
     public abstract static class CreateChannel extends ChannelCastAdapter {
 
+        @Override
+        public Object[] getDefaultParameterValues() {
+            return new Object[]{RMissing.instance, RChannel.DEFAULT_QUEUE_CAPACITY};
+        }
+
         @Override
         protected void createCasts(CastBuilder casts) {
             key(casts);
+            casts.arg("capacity").asIntegerVector().findFirst().notNA().mustBe(gt(0));
         }
 
         @Specialization
         @TruffleBoundary
-        protected int createChannel(int key) {
-            return RChannel.createChannel(key);
+        protected int createChannel(int key, int capacity) {
+            return RChannel.createChannel(key, capacity);
         }
 
     }
@@ -283,17 +328,32 @@ public class FastRContext {
 
     }
 
-    @RBuiltin(name = ".fastr.channel.receive", kind = PRIMITIVE, parameterNames = {"id"}, behavior = COMPLEX)
+    /**
+     * Receives a message, waiting at most {@code timeout} seconds. Returns {@code NULL} if the
+     * timeout expires.
+     */
+    @RBuiltin(name = ".fastr.channel.receive", kind = PRIMITIVE, parameterNames = {"id", "timeout"}, behavior = COMPLEX)
     public abstract static class ChannelReceive extends ChannelCastAdapter {
+
+        @Override
+        public Object[] getDefaultParameterValues() {
+            return new Object[]{RMissing.instance, Double.POSITIVE_INFINITY};
+        }
+
         @Override
         protected void createCasts(CastBuilder casts) {
             id(casts);
+            timeout(casts);
         }
 
         @Specialization
         @TruffleBoundary
-        protected Object receive(int id) {
-            return RChannel.receive(id);
+        protected Object receive(int id, double timeout) {
+            if (timeout == Double.POSITIVE_INFINITY) {
+                return RChannel.receive(id);
+            }
+            Object res = RChannel.receive(id, timeout);
+            return res == null ? RNull.instance : res;
         }
 
     }
@@ -313,32 +373,39 @@ public class FastRContext {
 
     }
 
-    @RBuiltin(name = ".fastr.channel.select", kind = PRIMITIVE, parameterNames = {"ids"}, behavior = COMPLEX)
-    public abstract static class ChannelSelect extends RBuiltinNode {
+    /**
+     * Waits at most {@code timeout} seconds for a message on any of the channels {@code ids}.
+     * Returns a list of the id of the channel and the message, or {@code NULL} if the timeout
+     * expires.
+     */
+    @RBuiltin(name = ".fastr.channel.select", kind = PRIMITIVE, parameterNames = {"ids", "timeout"}, behavior = COMPLEX)
+    public abstract static class ChannelSelect extends ChannelCastAdapter {
+
+        @Override
+        public Object[] getDefaultParameterValues() {
+            return new Object[]{RMissing.instance, Double.POSITIVE_INFINITY};
+        }
+
         @Override
         protected void createCasts(CastBuilder casts) {
             casts.arg("ids").mustBe(instanceOf(RList.class));
+            timeout(casts);
         }
 
         @Specialization
         @TruffleBoundary
-        protected RList select(RList nodes) {
-            int ind = 0;
-            int length = nodes.getLength();
-            while (true) {
-                Object o = nodes.getDataAt(ind);
-                ind = (ind + 1) % length;
-                int id;
+        protected Object select(RList nodes, double timeout) {
+            int[] ids = new int[nodes.getLength()];
+            for (int i = 0; i < ids.length; i++) {
+                Object o = nodes.getDataAt(i);
                 if (o instanceof Integer) {
-                    id = (int) o;
+                    ids[i] = (int) o;
                 } else {
-                    id = ((RIntVector) o).getDataAt(0);
-                }
-                Object res = RChannel.poll(id);
-                if (res != null) {
-                    return RDataFactory.createList(new Object[]{id, res});
+                    ids[i] = ((RIntVector) o).getDataAt(0);
                 }
             }
+            RList res = RChannel.select(ids, timeout);
+            return res == null ? RNull.instance : res;
         }
     }
 }
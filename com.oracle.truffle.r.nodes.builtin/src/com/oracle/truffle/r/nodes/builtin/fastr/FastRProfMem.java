@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.nodes.builtin.fastr;
+
+import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.gt;
+import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.gte;
+import static com.oracle.truffle.r.runtime.RVisibility.OFF;
+import static com.oracle.truffle.r.runtime.builtins.RBehavior.COMPLEX;
+import static com.oracle.truffle.r.runtime.builtins.RBuiltinKind.PRIMITIVE;
+
+import java.util.List;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.r.nodes.builtin.CastBuilder;
+import com.oracle.truffle.r.nodes.builtin.RBuiltinNode;
+import com.oracle.truffle.r.runtime.RError;
+import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.builtins.RBuiltin;
+import com.oracle.truffle.r.runtime.data.RDataFactory;
+import com.oracle.truffle.r.runtime.data.RList;
+import com.oracle.truffle.r.runtime.data.RNull;
+import com.oracle.truffle.r.runtime.instrument.AllocationProfiler;
+
+/**
+ * Builtins controlling the sampling {@link AllocationProfiler}:
+ *
+ * <pre>
+ * .fastr.profmem.start(interval = 524288, depth = 10)
+ * f(...)
+ * .fastr.profmem.stop()
+ * .fastr.profmem.get()
+ * </pre>
+ *
+ * {@code interval} is the sampling interval in bytes, with {@code 0} every allocation is recorded.
+ */
+public class FastRProfMem {
+
+    @RBuiltin(name = ".fastr.profmem.start", visibility = OFF, kind = PRIMITIVE, parameterNames = {"interval", "depth"}, behavior = COMPLEX)
+    public abstract static class Start extends RBuiltinNode {
+
+        @Override
+        public Object[] getDefaultParameterValues() {
+            return new Object[]{512 * 1024, 10};
+        }
+
+        @Override
+        protected void createCasts(CastBuilder casts) {
+            casts.arg("interval").asDoubleVector().findFirst().notNA().mustBe(gte(0.0));
+            casts.arg("depth").asIntegerVector().findFirst().notNA().mustBe(gt(0));
+        }
+
+        @Specialization
+        @TruffleBoundary
+        protected RNull start(double interval, int depth) {
+            AllocationProfiler.start(new AllocationProfiler((long) interval, 0, depth, null));
+            return RNull.instance;
+        }
+    }
+
+    @RBuiltin(name = ".fastr.profmem.stop", visibility = OFF, kind = PRIMITIVE, parameterNames = {}, behavior = COMPLEX)
+    public abstract static class Stop extends RBuiltinNode {
+        @Specialization
+        @TruffleBoundary
+        protected RNull stop() {
+            AllocationProfiler.stop();
+            return RNull.instance;
+        }
+    }
+
+    /**
+     * Returns a list with the exact totals and the sampled allocations by call site, as columns
+     * ordered by the bytes allocated in the called function itself.
+     */
+    @RBuiltin(name = ".fastr.profmem.get", kind = PRIMITIVE, parameterNames = {}, behavior = COMPLEX)
+    public abstract static class Get extends RBuiltinNode {
+        private static final String[] TOTAL_NAMES = new String[]{"count", "bytes", "copies", "copied.bytes", "sampling.interval"};
+        private static final String[] COLUMN_NAMES = new String[]{"function", "location", "samples", "self.bytes", "total.bytes"};
+
+        @Specialization
+        @TruffleBoundary
+        protected RList get() {
+            AllocationProfiler profiler = AllocationProfiler.getProfiler();
+            if (profiler == null) {
+                throw RError.error(this, RError.Message.GENERIC, "allocation profiling not enabled");
+            }
+            List<AllocationProfiler.Entry> entries = profiler.getEntries();
+            int n = entries.size();
+            String[] functions = new String[n];
+            String[] locations = new String[n];
+            double[] samples = new double[n];
+            double[] selfBytes = new double[n];
+            double[] totalBytes = new double[n];
+            boolean complete = true;
+            for (int i = 0; i < n; i++) {
+                AllocationProfiler.Entry entry = entries.get(i);
+                functions[i] = entry.getFunction();
+                locations[i] = entry.getLocation() == null ? RRuntime.STRING_NA : entry.getLocation();
+                complete &= entry.getLocation() != null;
+                samples[i] = entry.getSamples();
+                selfBytes[i] = entry.getSelfBytes();
+                totalBytes[i] = entry.getTotalBytes();
+            }
+            RList byFunction = RDataFactory.createList(new Object[]{
+                            RDataFactory.createStringVector(functions, RDataFactory.COMPLETE_VECTOR),
+                            RDataFactory.createStringVector(locations, complete),
+                            RDataFactory.createDoubleVector(samples, RDataFactory.COMPLETE_VECTOR),
+                            RDataFactory.createDoubleVector(selfBytes, RDataFactory.COMPLETE_VECTOR),
+                            RDataFactory.createDoubleVector(totalBytes, RDataFactory.COMPLETE_VECTOR)},
+                            RDataFactory.createStringVector(COLUMN_NAMES, RDataFactory.COMPLETE_VECTOR));
+            double[] totals = new double[]{profiler.getCount(), profiler.getBytes(), profiler.getCopies(), profiler.getCopiedBytes(), profiler.getSamplingInterval()};
+            return RDataFactory.createList(new Object[]{
+                            RDataFactory.createDoubleVector(totals, RDataFactory.COMPLETE_VECTOR, RDataFactory.createStringVector(TOTAL_NAMES, RDataFactory.COMPLETE_VECTOR)),
+                            byFunction},
+                            RDataFactory.createStringVector(new String[]{"total", "by.function"}, RDataFactory.COMPLETE_VECTOR));
+        }
+    }
+}
@@ -32,13 +32,16 @@ import com.oracle.truffle.r.nodes.access.vector.SearchFirstStringNode.CompareStr
 import com.oracle.truffle.r.nodes.profile.VectorLengthProfile;
 import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.data.RDataFactory;
+import com.oracle.truffle.r.runtime.data.RStringVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractIntVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractStringVector;
 import com.oracle.truffle.r.runtime.ops.na.NACheck;
 
 /**
  * This node encapsulates a speculative search of the first elements in an character vector and
- * returns an integer vector with their indices.
+ * returns an integer vector with their indices. Exact searches in long vectors use the hash index
+ * of {@link RStringVector#getIndexOf} when looking up multiple elements, when the vector is already
+ * indexed, or when this node has searched long vectors repeatedly.
  */
 final class SearchFirstStringNode extends Node {
 
@@ -57,6 +60,7 @@ final class SearchFirstStringNode extends Node {
     private final NACheck targetNACheck = NACheck.create();
     private final BranchProfile everFoundDuplicate = BranchProfile.create();
     private final BranchProfile seenInvalid = BranchProfile.create();
+    private final ConditionProfile indexedProfile = ConditionProfile.createBinaryProfile();
 
     /** Instead of using the notFoundStartIndex we use NA. */
     private final boolean useNAForNotFound;
@@ -64,6 +68,14 @@ final class SearchFirstStringNode extends Node {
 
     @CompilationFinal private int[] cachedIndices;
 
+    /**
+     * The number of single-element searches in long vectors after which this node uses the index,
+     * e.g., for repeated {@code lst[[name]]} at the same call site.
+     */
+    private static final int INDEX_AFTER_SEARCHES = 4;
+    private int linearSearches;
+    @CompilationFinal private boolean preferIndex;
+
     private SearchFirstStringNode(boolean exactMatch, boolean useNAForNotFound) {
         this.exactMatch = exactMatch;
         this.useNAForNotFound = useNAForNotFound;
@@ -174,11 +186,12 @@ final class SearchFirstStringNode extends Node {
         int notFoundIndex = notFoundStartIndex;
         int[] indices = new int[elementsLength];
         boolean resultComplete = true;
+        boolean indexed = indexedProfile.profile(useIndex(target, targetLength, elementsLength));
         for (int i = 0; i < elementsLength; i++) {
             String element = elements.getDataAt(i);
             boolean isElementNA = elementsNACheck.check(element) || element.length() == 0;
             if (!isElementNA) {
-                int index = findIndex(target, targetLength, element);
+                int index = indexed ? ((RStringVector) target).getIndexOf(element) : findIndex(target, targetLength, element);
                 if (index >= 0) {
                     indices[i] = index + 1;
                     continue;
@@ -210,6 +223,20 @@ final class SearchFirstStringNode extends Node {
         return RDataFactory.createIntVector(indices, resultComplete && elements.isComplete());
     }
 
+    private boolean useIndex(RAbstractStringVector target, int targetLength, int elementsLength) {
+        if (!exactMatch || targetLength < RStringVector.INDEX_MIN_LENGTH || !(target instanceof RStringVector)) {
+            return false;
+        }
+        if (elementsLength > 1 || preferIndex || ((RStringVector) target).isIndexed()) {
+            return true;
+        }
+        if (++linearSearches >= INDEX_AFTER_SEARCHES) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            preferIndex = true;
+        }
+        return false;
+    }
+
     private int findIndex(RAbstractStringVector target, int targetLength, String element) {
         int nonExactIndex = -1;
         int elementHash = element.hashCode();
@@ -25,6 +25,7 @@ package com.oracle.truffle.r.nodes.binary;
 import com.oracle.truffle.r.nodes.primitive.BinaryMapNAFunctionNode;
 import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.RType;
 import com.oracle.truffle.r.runtime.data.RComplex;
 import com.oracle.truffle.r.runtime.data.RDataFactory;
 import com.oracle.truffle.r.runtime.data.RDoubleSequence;
@@ -50,6 +51,16 @@ public final class BinaryMapArithmeticFunctionNode extends BinaryMapNAFunctionNo
         this.arithmetic = arithmetic;
     }
 
+    private BinaryMapArithmeticFunctionNode(BinaryArithmetic arithmetic, NACheck leftNACheck, NACheck rightNACheck, NACheck resultNACheck) {
+        super(leftNACheck, rightNACheck, resultNACheck);
+        this.arithmetic = arithmetic;
+    }
+
+    @Override
+    protected BinaryMapNAFunctionNode createCopy(NACheck left, NACheck right, NACheck result) {
+        return new BinaryMapArithmeticFunctionNode((BinaryArithmetic) arithmetic.copy(), left, right, result);
+    }
+
     @Override
     protected boolean resultNeedsNACheck() {
         return arithmetic.introducesNA();
@@ -70,6 +81,12 @@ public final class BinaryMapArithmeticFunctionNode extends BinaryMapNAFunctionNo
         return null;
     }
 
+    @Override
+    public boolean isThreadSafe(RType resultType) {
+        // the integer versions replace themselves on overflow
+        return resultType == RType.Double && (isSequenceAddArithmetic() || arithmetic instanceof Multiply || arithmetic instanceof Div);
+    }
+
     private boolean isSequenceMulArithmetic() {
         return arithmetic instanceof Multiply || arithmetic instanceof IntegerDiv || arithmetic instanceof Div;
     }
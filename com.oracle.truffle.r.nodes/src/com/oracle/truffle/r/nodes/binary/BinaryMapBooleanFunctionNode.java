@@ -24,12 +24,15 @@ package com.oracle.truffle.r.nodes.binary;
 
 import com.oracle.truffle.r.nodes.primitive.BinaryMapNAFunctionNode;
 import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.RType;
 import com.oracle.truffle.r.runtime.data.RComplex;
 import com.oracle.truffle.r.runtime.data.RLogical;
 import com.oracle.truffle.r.runtime.data.model.RAbstractVector;
+import com.oracle.truffle.r.runtime.ops.BinaryCompare;
 import com.oracle.truffle.r.runtime.ops.BinaryLogic.And;
 import com.oracle.truffle.r.runtime.ops.BinaryLogic.Or;
 import com.oracle.truffle.r.runtime.ops.BooleanOperation;
+import com.oracle.truffle.r.runtime.ops.na.NACheck;
 
 public final class BinaryMapBooleanFunctionNode extends BinaryMapNAFunctionNode {
 
@@ -39,6 +42,16 @@ public final class BinaryMapBooleanFunctionNode extends BinaryMapNAFunctionNode
         this.operation = arithmetic;
     }
 
+    private BinaryMapBooleanFunctionNode(BooleanOperation operation, NACheck leftNACheck, NACheck rightNACheck, NACheck resultNACheck) {
+        super(leftNACheck, rightNACheck, resultNACheck);
+        this.operation = operation;
+    }
+
+    @Override
+    protected BinaryMapNAFunctionNode createCopy(NACheck left, NACheck right, NACheck result) {
+        return new BinaryMapBooleanFunctionNode((BooleanOperation) operation.copy(), left, right, result);
+    }
+
     @Override
     public boolean mayFoldConstantTime(Class<? extends RAbstractVector> left, Class<? extends RAbstractVector> right) {
         return super.mayFoldConstantTime(left, right);
@@ -50,6 +63,11 @@ public final class BinaryMapBooleanFunctionNode extends BinaryMapNAFunctionNode
         return super.tryFoldConstantTime(left, leftLength, right, rightLength);
     }
 
+    @Override
+    public boolean isThreadSafe(RType resultType) {
+        return operation instanceof BinaryCompare;
+    }
+
     @Override
     protected boolean resultNeedsNACheck() {
         return false;
@@ -0,0 +1,454 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.nodes.binary;
+
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.frame.FrameSlot;
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.nodes.Node;
+import com.oracle.truffle.api.nodes.SlowPathException;
+import com.oracle.truffle.api.profiles.LoopConditionProfile;
+import com.oracle.truffle.api.profiles.ValueProfile;
+import com.oracle.truffle.r.nodes.RASTUtils;
+import com.oracle.truffle.r.nodes.access.FrameSlotNode;
+import com.oracle.truffle.r.nodes.access.variables.ReadVariableNode;
+import com.oracle.truffle.r.nodes.function.RCallNode;
+import com.oracle.truffle.r.nodes.primitive.BinaryMapNAFunctionNode;
+import com.oracle.truffle.r.runtime.ArgumentsSignature;
+import com.oracle.truffle.r.runtime.FastROptions;
+import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.builtins.RBuiltinDescriptor;
+import com.oracle.truffle.r.runtime.context.RContext;
+import com.oracle.truffle.r.runtime.data.RArgsValuesAndNames;
+import com.oracle.truffle.r.runtime.data.RDataFactory;
+import com.oracle.truffle.r.runtime.data.RDouble;
+import com.oracle.truffle.r.runtime.data.RFunction;
+import com.oracle.truffle.r.runtime.data.model.RAbstractDoubleVector;
+import com.oracle.truffle.r.runtime.nodes.RBaseNode;
+import com.oracle.truffle.r.runtime.nodes.RNode;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxCall;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxConstant;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxElement;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxLookup;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxNode;
+import com.oracle.truffle.r.runtime.ops.BinaryArithmetic;
+import com.oracle.truffle.r.runtime.ops.BinaryArithmeticFactory;
+import com.oracle.truffle.r.runtime.ops.BinaryCompare;
+import com.oracle.truffle.r.runtime.ops.BooleanOperationFactory;
+
+/**
+ * Evaluates a call to an arithmetic or comparison operator whose arguments are nested calls of
+ * {@code +}, {@code -}, {@code *} and {@code /} on variables and double constants, e.g.
+ * {@code a * b + c / d}, in a single loop over the elements. Only the result vector is allocated,
+ * instead of one vector per intermediate result. The elements are computed by the same
+ * {@link BinaryMapArithmeticFunctionNode} and {@link BinaryMapBooleanFunctionNode} as in
+ * {@link BinaryArithmeticNode} and {@link BinaryBooleanNode}, so NA and NaN handling is unchanged.
+ *
+ * The node is a speculation of the enclosing call. The operator lookups are checked before any
+ * operand is evaluated: if an inner operator does not resolve to its builtin, {@link #execute}
+ * throws a {@link SlowPathException} and the call is evaluated as usual. An empty operand makes the
+ * result empty, like in GnuR. If an operand is not a double vector without attributes whose length
+ * is the length of the result, one or zero, the operands are not evaluated again: the operators are called with the values read so far, the remaining
+ * operands are evaluated in the order of the call, and the next execution rewrites the call.
+ */
+public final class FusedArithmeticNode extends RBaseNode {
+
+    @Child private Expression left;
+    @Child private Expression right;
+    @Child private BinaryMapNAFunctionNode function;
+    @Child private GenericCall genericCall;
+
+    private final RSyntaxCall call;
+    private final boolean logical;
+    private final int operandCount;
+    private final LoopConditionProfile loopProfile = LoopConditionProfile.createCountingProfile();
+
+    @CompilationFinal private boolean generic;
+
+    private FusedArithmeticNode(RSyntaxCall call, Expression left, Expression right, BinaryMapNAFunctionNode function, boolean logical, int operandCount) {
+        this.call = call;
+        this.left = left;
+        this.right = right;
+        this.function = function;
+        this.logical = logical;
+        this.operandCount = operandCount;
+    }
+
+    /**
+     * Creates the fused evaluation of {@code call}, a call to {@code builtin}, or returns
+     * {@code null} if the call does not contain at least two operators that can be fused.
+     */
+    public static FusedArithmeticNode create(RSyntaxCall call, RBuiltinDescriptor builtin) {
+        if (!FastROptions.FuseArithmetic.getBooleanValue() || !isBinaryCall(call)) {
+            return null;
+        }
+        BinaryMapNAFunctionNode function;
+        boolean logical;
+        BinaryArithmeticFactory arithmetic = getArithmetic(builtin.getName());
+        if (arithmetic != null) {
+            function = new BinaryMapArithmeticFunctionNode(arithmetic.create());
+            logical = false;
+        } else {
+            BooleanOperationFactory comparison = getComparison(builtin.getName());
+            if (comparison == null) {
+                return null;
+            }
+            function = new BinaryMapBooleanFunctionNode(comparison.create());
+            logical = true;
+        }
+        Builder builder = new Builder();
+        RSyntaxElement[] args = call.getSyntaxArguments();
+        Expression leftExpression = builder.build(args[0]);
+        Expression rightExpression = leftExpression == null ? null : builder.build(args[1]);
+        if (rightExpression == null || builder.operators == 0) {
+            return null;
+        }
+        return new FusedArithmeticNode(call, leftExpression, rightExpression, function, logical, builder.operands);
+    }
+
+    private static boolean isBinaryCall(RSyntaxCall call) {
+        ArgumentsSignature signature = call.getSyntaxSignature();
+        return signature.getLength() == 2 && signature.getName(0) == null && signature.getName(1) == null && call.getSyntaxLHS() instanceof RSyntaxLookup;
+    }
+
+    private static BinaryArithmeticFactory getArithmetic(String name) {
+        switch (name) {
+            case "+":
+                return BinaryArithmetic.ADD;
+            case "-":
+                return BinaryArithmetic.SUBTRACT;
+            case "*":
+                return BinaryArithmetic.MULTIPLY;
+            case "/":
+                return BinaryArithmetic.DIV;
+            default:
+                return null;
+        }
+    }
+
+    private static BooleanOperationFactory getComparison(String name) {
+        switch (name) {
+            case "==":
+                return BinaryCompare.EQUAL;
+            case "!=":
+                return BinaryCompare.NOT_EQUAL;
+            case "<":
+                return BinaryCompare.LESS_THAN;
+            case "<=":
+                return BinaryCompare.LESS_EQUAL;
+            case ">":
+                return BinaryCompare.GREATER_THAN;
+            case ">=":
+                return BinaryCompare.GREATER_EQUAL;
+            default:
+                return null;
+        }
+    }
+
+    private static final class Builder {
+        private int operands;
+        private int operators;
+
+        Expression build(RSyntaxElement element) {
+            if (element instanceof RSyntaxLookup) {
+                String identifier = ((RSyntaxLookup) element).getIdentifier();
+                if (((RSyntaxLookup) element).isFunctionLookup() || identifier.startsWith("..")) {
+                    return null;
+                }
+                return new Operand(RASTUtils.cloneNode(((RSyntaxNode) element).asRNode()), operands++);
+            } else if (element instanceof RSyntaxConstant) {
+                if (!(((RSyntaxConstant) element).getValue() instanceof Double)) {
+                    return null;
+                }
+                return new Operand(RASTUtils.cloneNode(((RSyntaxNode) element).asRNode()), operands++);
+            } else if (element instanceof RSyntaxCall && isBinaryCall((RSyntaxCall) element)) {
+                RSyntaxCall call = (RSyntaxCall) element;
+                String name = ((RSyntaxLookup) call.getSyntaxLHS()).getIdentifier();
+                BinaryArithmeticFactory arithmetic = getArithmetic(name);
+                if (arithmetic == null) {
+                    return null;
+                }
+                RSyntaxElement[] args = call.getSyntaxArguments();
+                Expression leftExpression = build(args[0]);
+                Expression rightExpression = leftExpression == null ? null : build(args[1]);
+                if (rightExpression == null) {
+                    return null;
+                }
+                operators++;
+                return new Operator(call, name, leftExpression, rightExpression, new BinaryMapArithmeticFunctionNode(arithmetic.create()));
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Evaluates the call, {@code operator} is the function the enclosing call resolved to.
+     */
+    public Object execute(VirtualFrame frame, RFunction operator) throws SlowPathException {
+        if (generic) {
+            throw new SlowPathException("operand is not a plain double vector");
+        }
+        left.checkOperators(frame);
+        right.checkOperators(frame);
+        Object[] operands = new Object[operandCount];
+        RAbstractDoubleVector[] values = new RAbstractDoubleVector[operandCount];
+        int length = left.evaluate(frame, operands, values) && right.evaluate(frame, operands, values) ? getLength(values) : -1;
+        if (length < 0) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            generic = true;
+            Object leftValue = left.evaluateGeneric(frame, operands);
+            Object rightValue = right.evaluateGeneric(frame, operands);
+            if (genericCall == null) {
+                genericCall = insert(new GenericCall(call));
+            }
+            return genericCall.execute(frame, operator, leftValue, rightValue);
+        }
+        left.enable(values);
+        right.enable(values);
+        function.getLeftNACheck().enable(left.mayBeNA(values));
+        function.getRightNACheck().enable(right.mayBeNA(values));
+        RContext.getInstance().setVisible(true);
+
+        boolean complete = true;
+        loopProfile.profileCounted(length);
+        RNode.reportWork(this, length);
+        if (logical) {
+            byte[] result = new byte[length];
+            for (int i = 0; loopProfile.inject(i < length); i++) {
+                byte value = function.applyLogical(left.execute(values, i), right.execute(values, i));
+                complete &= value != RRuntime.LOGICAL_NA;
+                result[i] = value;
+            }
+            return RDataFactory.createLogicalVector(result, complete);
+        } else {
+            double[] result = new double[length];
+            for (int i = 0; loopProfile.inject(i < length); i++) {
+                double value = function.applyDouble(left.execute(values, i), right.execute(values, i));
+                complete &= !RRuntime.isNA(value);
+                result[i] = value;
+            }
+            return RDataFactory.createDoubleVector(result, complete);
+        }
+    }
+
+    /**
+     * Returns the length of the result, the operands must all have this length, length one or
+     * length zero, which makes the result empty. Returns {@code -1} if the lengths differ.
+     */
+    private static int getLength(RAbstractDoubleVector[] values) {
+        int length = 1;
+        boolean empty = false;
+        for (int i = 0; i < values.length; i++) {
+            int operandLength = values[i].getLength();
+            if (operandLength == 0) {
+                empty = true;
+            } else if (operandLength != 1) {
+                if (length != 1 && length != operandLength) {
+                    return -1;
+                }
+                length = operandLength;
+            }
+        }
+        return empty ? 0 : length;
+    }
+
+    /**
+     * Calls an operator with already evaluated arguments.
+     */
+    private static final class GenericCall extends Node {
+
+        private final Object argsIdentifier = new Object();
+
+        @Child private RCallNode call;
+        @Child private FrameSlotNode slot = FrameSlotNode.createTemp(argsIdentifier, true);
+
+        GenericCall(RSyntaxCall syntax) {
+            this.call = RCallNode.createExplicitCall(argsIdentifier, syntax);
+        }
+
+        Object execute(VirtualFrame frame, RFunction operator, Object leftValue, Object rightValue) {
+            FrameSlot frameSlot = slot.executeFrameSlot(frame);
+            try {
+                frame.setObject(frameSlot, new RArgsValuesAndNames(new Object[]{leftValue, rightValue}, ArgumentsSignature.empty(2)));
+                return call.execute(frame, operator);
+            } finally {
+                frame.setObject(frameSlot, null);
+            }
+        }
+    }
+
+    private abstract static class Expression extends Node {
+
+        /**
+         * Checks that the operators resolve to their builtins.
+         */
+        public abstract void checkOperators(VirtualFrame frame) throws SlowPathException;
+
+        /**
+         * Evaluates the operands in the order of the call and stores them in {@code operands} and,
+         * if they are plain double vectors, in {@code values}. Returns {@code false} and stops at
+         * the first operand that is not a plain double vector.
+         */
+        public abstract boolean evaluate(VirtualFrame frame, Object[] operands, RAbstractDoubleVector[] values);
+
+        /**
+         * Computes the value by calling the operators, evaluating only the operands that are not
+         * in {@code operands} yet.
+         */
+        public abstract Object evaluateGeneric(VirtualFrame frame, Object[] operands);
+
+        public abstract void enable(RAbstractDoubleVector[] values);
+
+        public abstract boolean mayBeNA(RAbstractDoubleVector[] values);
+
+        public abstract double execute(RAbstractDoubleVector[] values, int index);
+    }
+
+    private static final class Operand extends Expression {
+
+        @Child private RNode value;
+
+        private final int index;
+        private final ValueProfile classProfile = ValueProfile.createClassProfile();
+
+        Operand(RNode value, int index) {
+            this.value = value;
+            this.index = index;
+        }
+
+        @Override
+        public void checkOperators(VirtualFrame frame) {
+            // nothing to do
+        }
+
+        @Override
+        public boolean evaluate(VirtualFrame frame, Object[] operands, RAbstractDoubleVector[] values) {
+            Object result = value.execute(frame);
+            operands[index] = result;
+            if (result instanceof Double) {
+                values[index] = RDouble.valueOf((double) result);
+            } else if (result instanceof RAbstractDoubleVector && ((RAbstractDoubleVector) result).getAttributes() == null) {
+                values[index] = (RAbstractDoubleVector) result;
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public Object evaluateGeneric(VirtualFrame frame, Object[] operands) {
+            return operands[index] == null ? value.execute(frame) : operands[index];
+        }
+
+        @Override
+        public void enable(RAbstractDoubleVector[] values) {
+            // nothing to do
+        }
+
+        @Override
+        public boolean mayBeNA(RAbstractDoubleVector[] values) {
+            return !values[index].isComplete();
+        }
+
+        @Override
+        public double execute(RAbstractDoubleVector[] values, int i) {
+            RAbstractDoubleVector vector = classProfile.profile(values[index]);
+            return vector.getDataAt(vector.getLength() == 1 ? 0 : i);
+        }
+    }
+
+    private static final class Operator extends Expression {
+
+        @Child private ReadVariableNode lookup;
+        @Child private Expression left;
+        @Child private Expression right;
+        @Child private BinaryMapArithmeticFunctionNode function;
+        @Child private GenericCall genericCall;
+
+        private final RSyntaxCall call;
+        private final String name;
+        @CompilationFinal private RBuiltinDescriptor builtin;
+
+        Operator(RSyntaxCall call, String name, Expression left, Expression right, BinaryMapArithmeticFunctionNode function) {
+            this.call = call;
+            this.lookup = ReadVariableNode.createForcedFunctionLookup(RSyntaxNode.SOURCE_UNAVAILABLE, name);
+            this.left = left;
+            this.right = right;
+            this.function = function;
+            this.name = name;
+        }
+
+        @Override
+        public void checkOperators(VirtualFrame frame) throws SlowPathException {
+            Object value = lookup.execute(frame);
+            RBuiltinDescriptor actual = value instanceof RFunction ? ((RFunction) value).getRBuiltin() : null;
+            if (builtin == null) {
+                CompilerDirectives.transferToInterpreterAndInvalidate();
+                if (actual == null || !name.equals(actual.getName())) {
+                    throw new SlowPathException("operator is redefined");
+                }
+                builtin = actual;
+            } else if (actual != builtin) {
+                throw new SlowPathException("operator is redefined");
+            }
+            left.checkOperators(frame);
+            right.checkOperators(frame);
+        }
+
+        @Override
+        public boolean evaluate(VirtualFrame frame, Object[] operands, RAbstractDoubleVector[] values) {
+            return left.evaluate(frame, operands, values) && right.evaluate(frame, operands, values);
+        }
+
+        @Override
+        public Object evaluateGeneric(VirtualFrame frame, Object[] operands) {
+            Object leftValue = left.evaluateGeneric(frame, operands);
+            Object rightValue = right.evaluateGeneric(frame, operands);
+            if (genericCall == null) {
+                CompilerDirectives.transferToInterpreterAndInvalidate();
+                genericCall = insert(new GenericCall(call));
+            }
+            return genericCall.execute(frame, (RFunction) lookup.execute(frame), leftValue, rightValue);
+        }
+
+        @Override
+        public void enable(RAbstractDoubleVector[] values) {
+            left.enable(values);
+            right.enable(values);
+            function.getLeftNACheck().enable(left.mayBeNA(values));
+            function.getRightNACheck().enable(right.mayBeNA(values));
+        }
+
+        @Override
+        public boolean mayBeNA(RAbstractDoubleVector[] values) {
+            // the double versions of these operators only return NA for NA operands
+            return left.mayBeNA(values) || right.mayBeNA(values);
+        }
+
+        @Override
+        public double execute(RAbstractDoubleVector[] values, int index) {
+            return function.applyDouble(left.execute(values, index), right.execute(values, index));
+        }
+    }
+}
@@ -24,9 +24,14 @@ package com.oracle.truffle.r.nodes.function;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.RootCallTarget;
 import com.oracle.truffle.api.frame.FrameDescriptor;
 import com.oracle.truffle.api.frame.FrameSlot;
@@ -57,6 +62,7 @@ import com.oracle.truffle.r.runtime.RArguments.S4Args;
 import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RErrorHandling;
 import com.oracle.truffle.r.runtime.RInternalError;
+import com.oracle.truffle.r.runtime.RPerfStats;
 import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.RSerialize;
 import com.oracle.truffle.r.runtime.RType;
@@ -242,6 +248,13 @@ public final class FunctionDefinitionNode extends RRootNode implements RSyntaxNo
          * It might be possible to only record this iff a handler is installed, by using the
          * RArguments array.
          */
+        if (callStats != null) {
+            if (callCount == null) {
+                CompilerDirectives.transferToInterpreterAndInvalidate();
+                callCount = callStats.getCounter(this);
+            }
+            countCall();
+        }
         Object handlerStack = RErrorHandling.getHandlerStack();
         Object restartStack = RErrorHandling.getRestartStack();
         boolean runOnExitHandlers = true;
@@ -485,4 +498,64 @@ public final class FunctionDefinitionNode extends RRootNode implements RSyntaxNo
     public String getSyntaxDebugName() {
         return name;
     }
+
+    // Performance analysis
+
+    @CompilationFinal private static CallsPerfHandler callStats;
+    @CompilationFinal private LongAdder callCount;
+
+    static {
+        RPerfStats.register(new CallsPerfHandler());
+    }
+
+    @TruffleBoundary
+    private void countCall() {
+        callCount.increment();
+    }
+
+    /**
+     * Counts the calls of R functions. The counters are kept per function node and summed up by
+     * the name of the function when reported.
+     */
+    private static class CallsPerfHandler implements RPerfStats.Handler {
+        private final Map<FunctionDefinitionNode, LongAdder> counts = new ConcurrentHashMap<>();
+
+        /**
+         * Returns the counter of {@code function}, which the node caches.
+         */
+        LongAdder getCounter(FunctionDefinitionNode function) {
+            return counts.computeIfAbsent(function, f -> new LongAdder());
+        }
+
+        private Map<String, Long> countsByName() {
+            Map<String, Long> result = new TreeMap<>();
+            for (Map.Entry<FunctionDefinitionNode, LongAdder> entry : counts.entrySet()) {
+                result.merge(entry.getKey().getName(), entry.getValue().sum(), Long::sum);
+            }
+            return result;
+        }
+
+        @Override
+        public void initialize(String optionText) {
+            callStats = this;
+        }
+
+        @Override
+        public String getName() {
+            return "calls";
+        }
+
+        @Override
+        public void report() {
+            RPerfStats.out().println("Function calls");
+            countsByName().entrySet().stream().sorted((a, b) -> Long.compare(b.getValue(), a.getValue())).forEach(
+                            entry -> RPerfStats.out().printf("%s: %d%n", entry.getKey(), entry.getValue()));
+            RPerfStats.out().println();
+        }
+
+        @Override
+        public Map<String, Object> getMetrics() {
+            return new TreeMap<>(countsByName());
+        }
+    }
 }
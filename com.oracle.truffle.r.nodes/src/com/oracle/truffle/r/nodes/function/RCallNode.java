@@ -49,6 +49,7 @@ import com.oracle.truffle.api.nodes.NodeCost;
 import com.oracle.truffle.api.nodes.NodeInfo;
 import com.oracle.truffle.api.nodes.NodeUtil;
 import com.oracle.truffle.api.nodes.RootNode;
+import com.oracle.truffle.api.nodes.SlowPathException;
 import com.oracle.truffle.api.nodes.UnexpectedResultException;
 import com.oracle.truffle.api.profiles.BranchProfile;
 import com.oracle.truffle.api.profiles.ConditionProfile;
@@ -60,6 +61,7 @@ import com.oracle.truffle.r.nodes.access.ConstantNode;
 import com.oracle.truffle.r.nodes.access.FrameSlotNode;
 import com.oracle.truffle.r.nodes.access.variables.LocalReadVariableNode;
 import com.oracle.truffle.r.nodes.access.variables.ReadVariableNode;
+import com.oracle.truffle.r.nodes.binary.FusedArithmeticNode;
 import com.oracle.truffle.r.nodes.builtin.RBuiltinFactory;
 import com.oracle.truffle.r.nodes.builtin.RBuiltinNode;
 import com.oracle.truffle.r.nodes.builtin.RBuiltinRootNode;
@@ -164,6 +166,7 @@ public abstract class RCallNode extends RCallBaseNode implements RSyntaxNode, RS
     private final ArgumentsSignature signature;
     @Child private ReadVariableNode lookupVarArgs;
     protected final LocalReadVariableNode explicitArgs;
+    private final RSyntaxCall explicitSyntax;
 
     private final ConditionProfile nullBuiltinProfile = ConditionProfile.createBinaryProfile();
 
@@ -181,7 +184,7 @@ public abstract class RCallNode extends RCallBaseNode implements RSyntaxNode, RS
     }
 
     protected RCaller createCaller(VirtualFrame frame, RFunction function) {
-        if (explicitArgs == null) {
+        if (explicitArgs == null || explicitSyntax != null) {
             return RCaller.create(frame, this);
         } else {
             return RCaller.create(frame, RCallerHelper.createFromArguments(function, (RArgsValuesAndNames) explicitArgs.execute(frame)));
@@ -193,6 +196,7 @@ public abstract class RCallNode extends RCallBaseNode implements RSyntaxNode, RS
         this.sourceSectionR = sourceSection;
         this.arguments = arguments;
         this.explicitArgs = null;
+        this.explicitSyntax = null;
         this.varArgIndexes = getVarArgIndexes(arguments);
         this.lookupVarArgs = varArgIndexes.length == 0 ? null : ReadVariableNode.createSilent(ArgumentsSignature.VARARG_NAME, RType.Any);
 
@@ -208,11 +212,12 @@ public abstract class RCallNode extends RCallBaseNode implements RSyntaxNode, RS
         this.signature = signature;
     }
 
-    protected RCallNode(SourceSection sourceSection, Object explicitArgsIdentifier) {
+    protected RCallNode(SourceSection sourceSection, Object explicitArgsIdentifier, RSyntaxCall explicitSyntax) {
         assert sourceSection != null;
         this.sourceSectionR = sourceSection;
         this.arguments = null;
         this.explicitArgs = LocalReadVariableNode.create(explicitArgsIdentifier, false);
+        this.explicitSyntax = explicitSyntax;
         this.varArgIndexes = null;
         this.lookupVarArgs = null;
         this.signature = null;
@@ -416,6 +421,22 @@ public abstract class RCallNode extends RCallBaseNode implements RSyntaxNode, RS
         return new PromiseCheckHelperNode();
     }
 
+    protected FusedArithmeticNode createFused(RBuiltinDescriptor builtin) {
+        return explicitArgs == null ? FusedArithmeticNode.create(this, builtin) : null;
+    }
+
+    /**
+     * Evaluates nested arithmetic on plain double vectors without intermediate vectors, see
+     * {@link FusedArithmeticNode}. Any other operands rewrite the call to
+     * {@link #callGroupGeneric}.
+     */
+    @Specialization(limit = "1", guards = {"isGroupGenericDispatch(function)", "cachedBuiltin == function.getRBuiltin()", "fused != null"}, rewriteOn = SlowPathException.class)
+    public Object callFused(VirtualFrame frame, RFunction function, //
+                    @Cached("function.getRBuiltin()") RBuiltinDescriptor cachedBuiltin, //
+                    @Cached("createFused(cachedBuiltin)") FusedArithmeticNode fused) throws SlowPathException {
+        return fused.execute(frame, function);
+    }
+
     @CompilationFinal private ArgumentsSignature summaryGroupSignatureCached = null;
     @CompilationFinal private boolean summaryGroupHasNaRmCached;
 
@@ -762,7 +783,15 @@ public abstract class RCallNode extends RCallBaseNode implements RSyntaxNode, RS
     }
 
     public static RCallNode createExplicitCall(Object explicitArgsIdentifier) {
-        return RCallNodeGen.create(RSyntaxNode.INTERNAL, explicitArgsIdentifier, null);
+        return RCallNodeGen.create(RSyntaxNode.INTERNAL, explicitArgsIdentifier, null, null);
+    }
+
+    /**
+     * Creates a call with explicit arguments that appears as {@code originalCall}, e.g. in error
+     * messages and in {@code sys.call()}.
+     */
+    public static RCallNode createExplicitCall(Object explicitArgsIdentifier, RSyntaxCall originalCall) {
+        return RCallNodeGen.create(originalCall.getSourceSection(), explicitArgsIdentifier, originalCall, null);
     }
 
     static RBuiltinRootNode findBuiltinRootNode(RootCallTarget callTarget) {
@@ -1071,17 +1100,26 @@ public abstract class RCallNode extends RCallBaseNode implements RSyntaxNode, RS
 
     @Override
     public RSyntaxElement getSyntaxLHS() {
+        if (explicitSyntax != null) {
+            return explicitSyntax.getSyntaxLHS();
+        }
         ForcePromiseNode func = getFunction();
         return func == null || func.getValueNode() == null ? RSyntaxLookup.createDummyLookup(RSyntaxNode.LAZY_DEPARSE, "FUN", true) : getFunctionNode().asRSyntaxNode();
     }
 
     @Override
     public ArgumentsSignature getSyntaxSignature() {
+        if (explicitSyntax != null) {
+            return explicitSyntax.getSyntaxSignature();
+        }
         return signature == null ? ArgumentsSignature.empty(1) : signature;
     }
 
     @Override
     public RSyntaxElement[] getSyntaxArguments() {
+        if (explicitSyntax != null) {
+            return explicitSyntax.getSyntaxArguments();
+        }
         return arguments == null ? new RSyntaxElement[]{RSyntaxLookup.createDummyLookup(RSyntaxNode.LAZY_DEPARSE, "...", false)} : arguments;
     }
 }
@@ -23,6 +23,7 @@
 package com.oracle.truffle.r.nodes.primitive;
 
 import com.oracle.truffle.r.runtime.RInternalError;
+import com.oracle.truffle.r.runtime.RType;
 import com.oracle.truffle.r.runtime.data.RComplex;
 import com.oracle.truffle.r.runtime.data.model.RAbstractVector;
 import com.oracle.truffle.r.runtime.nodes.RBaseNode;
@@ -94,6 +95,32 @@ public abstract class BinaryMapFunctionNode extends RBaseNode {
         return null;
     }
 
+    /**
+     * Returns <code>true</code> if the apply methods producing <code>resultType</code> may be
+     * invoked on {@link #createConcurrentCopy() copies} of this node concurrently for disjoint
+     * parts of the result, i.e., they do not rewrite nodes.
+     */
+    public boolean isThreadSafe(RType resultType) {
+        return false;
+    }
+
+    /**
+     * Creates a node that computes a part of the result on another thread. The state that the
+     * apply methods update is private to the copy, and is merged back by
+     * {@link #mergeConcurrentCopies} on the calling thread.
+     */
+    public BinaryMapFunctionNode createConcurrentCopy() {
+        return this;
+    }
+
+    /**
+     * Merges the state of the finished copies into this node and returns <code>true</code> if the
+     * result they computed is complete.
+     */
+    public boolean mergeConcurrentCopies(BinaryMapFunctionNode[] copies) {
+        return isComplete();
+    }
+
     /**
      * Enables the node for the two operation. Invoked once for each BinaryMap operation invocation.
      */
@@ -27,9 +27,19 @@ import com.oracle.truffle.r.runtime.ops.na.NACheck;
 
 public abstract class BinaryMapNAFunctionNode extends BinaryMapFunctionNode {
 
-    protected final NACheck leftNACheck = NACheck.create();
-    protected final NACheck rightNACheck = NACheck.create();
-    protected final NACheck resultNACheck = NACheck.create();
+    protected final NACheck leftNACheck;
+    protected final NACheck rightNACheck;
+    protected final NACheck resultNACheck;
+
+    protected BinaryMapNAFunctionNode() {
+        this(NACheck.create(), NACheck.create(), NACheck.create());
+    }
+
+    protected BinaryMapNAFunctionNode(NACheck leftNACheck, NACheck rightNACheck, NACheck resultNACheck) {
+        this.leftNACheck = leftNACheck;
+        this.rightNACheck = rightNACheck;
+        this.resultNACheck = resultNACheck;
+    }
 
     /**
      * Enables all NA checks for the given input vectors.
@@ -41,6 +51,33 @@ public abstract class BinaryMapNAFunctionNode extends BinaryMapFunctionNode {
         resultNACheck.enable(resultNeedsNACheck());
     }
 
+    /**
+     * Creates a node with the same operation and NA checks that are enabled like the ones of this
+     * node, but have not seen any NA.
+     */
+    @Override
+    public final BinaryMapNAFunctionNode createConcurrentCopy() {
+        return createCopy(leftNACheck.copyEnabled(), rightNACheck.copyEnabled(), resultNACheck.copyEnabled());
+    }
+
+    @Override
+    public final boolean mergeConcurrentCopies(BinaryMapFunctionNode[] copies) {
+        boolean complete = true;
+        for (int i = 0; i < copies.length; i++) {
+            BinaryMapNAFunctionNode copy = (BinaryMapNAFunctionNode) copies[i];
+            complete &= copy.isComplete();
+            leftNACheck.merge(copy.leftNACheck);
+            rightNACheck.merge(copy.rightNACheck);
+            resultNACheck.merge(copy.resultNACheck);
+        }
+        return complete;
+    }
+
+    /**
+     * Creates a node with the same operation as this node that uses the given NA checks.
+     */
+    protected abstract BinaryMapNAFunctionNode createCopy(NACheck left, NACheck right, NACheck result);
+
     /**
      * Returns <code>true</code> if there was never a <code>NA</code> value encountered when using
      * this node. Make you have enabled the NA check properly using
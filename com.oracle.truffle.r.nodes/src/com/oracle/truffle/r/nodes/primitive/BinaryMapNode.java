@@ -22,6 +22,10 @@
  */
 package com.oracle.truffle.r.nodes.primitive;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.Cached;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.profiles.BranchProfile;
@@ -31,6 +35,7 @@ import com.oracle.truffle.r.nodes.attributes.CopyAttributesNode;
 import com.oracle.truffle.r.nodes.attributes.CopyAttributesNodeGen;
 import com.oracle.truffle.r.nodes.primitive.BinaryMapNodeFactory.VectorMapBinaryInternalNodeGen;
 import com.oracle.truffle.r.nodes.profile.VectorLengthProfile;
+import com.oracle.truffle.r.runtime.FastROptions;
 import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.RRuntime;
@@ -57,6 +62,10 @@ import com.oracle.truffle.r.runtime.nodes.RNode;
  * is provided using a {@link BinaryMapFunctionNode}.
  *
  * The implementation tries to share input vectors if they are implementing {@link RShareable}.
+ *
+ * Results of numeric types with at least {@link FastROptions#ParallelMapThreshold} elements are
+ * computed in chunks on the common fork-join pool if the function is
+ * {@link BinaryMapFunctionNode#isThreadSafe(RType) thread safe}.
  */
 public final class BinaryMapNode extends RBaseNode {
 
@@ -73,6 +82,7 @@ public final class BinaryMapNode extends RBaseNode {
     private final ConditionProfile maxLengthProfile;
     private final ConditionProfile leftIsNAProfile = ConditionProfile.createBinaryProfile();
     private final ConditionProfile rightIsNAProfile = ConditionProfile.createBinaryProfile();
+    private final ConditionProfile parallelProfile = ConditionProfile.createBinaryProfile();
     private final BranchProfile seenEmpty = BranchProfile.create();
     private final ConditionProfile shareLeft;
     private final ConditionProfile shareRight;
@@ -85,6 +95,7 @@ public final class BinaryMapNode extends RBaseNode {
     private final boolean mayFoldConstantTime;
     private final boolean mayShareLeft;
     private final boolean mayShareRight;
+    private final int parallelThreshold;
 
     private BinaryMapNode(BinaryMapFunctionNode function, RAbstractVector left, RAbstractVector right, RType argumentType, RType resultType, boolean copyAttributes) {
         this.function = function;
@@ -101,6 +112,7 @@ public final class BinaryMapNode extends RBaseNode {
         this.argumentType = argumentType;
         this.resultType = resultType;
         this.maxLengthProfile = ConditionProfile.createBinaryProfile();
+        this.parallelThreshold = isNumeric(argumentType) && isNumeric(resultType) && function.isThreadSafe(resultType) ? FastROptions.ParallelMapThreshold.getNonNegativeIntValue() : 0;
 
         // lazily create profiles only if needed to avoid unnecessary allocations
         this.shareLeft = mayShareLeft ? ConditionProfile.createBinaryProfile() : null;
@@ -114,6 +126,10 @@ public final class BinaryMapNode extends RBaseNode {
         return new BinaryMapNode(function, left, right, argumentType, resultType, copyAttributes);
     }
 
+    private static boolean isNumeric(RType type) {
+        return type == RType.Logical || type == RType.Integer || type == RType.Double;
+    }
+
     public boolean isSupported(Object left, Object right) {
         return left.getClass() == leftClass && right.getClass() == rightClass;
     }
@@ -257,9 +273,16 @@ public final class BinaryMapNode extends RBaseNode {
             assert rightCast.getRType() == argumentType;
             assert isStoreCompatible(store, resultType, leftLength, rightLength);
 
-            vectorNode.execute(function, store, leftCast, leftLength, rightCast, rightLength);
+            boolean complete;
+            if (parallelThreshold > 0 && parallelProfile.profile(maxLength >= parallelThreshold)) {
+                BinaryMapFunctionNode[] copies = vectorNode.applyParallel(function, store, leftCast, leftLength, rightCast, rightLength);
+                complete = function.mergeConcurrentCopies(copies);
+            } else {
+                vectorNode.execute(function, store, leftCast, leftLength, rightCast, rightLength);
+                complete = function.isComplete();
+            }
             RNode.reportWork(this, maxLength);
-            target.setComplete(function.isComplete());
+            target.setComplete(complete);
         }
         if (mayContainMetadata) {
             target = copyAttributes.execute(target, left, leftLength, right, rightLength);
@@ -360,6 +383,11 @@ public final class BinaryMapNode extends RBaseNode {
                             result[resultIndex] = arithmetic.applyCharacter(left.getDataAt(leftIndex), right.getDataAt(rightIndex));
                         };
 
+        /**
+         * The minimum number of elements computed by one task of {@link #applyParallel}.
+         */
+        private static final int MIN_PARALLEL_CHUNK = 1 << 15;
+
         private final MapBinaryIndexedAction<Object, RAbstractVector> indexedAction;
 
         @SuppressWarnings("unchecked")
@@ -488,6 +516,80 @@ public final class BinaryMapNode extends RBaseNode {
             }
         }
 
+        /**
+         * Applies the function in chunks of consecutive result elements on the common fork-join
+         * pool, recycling the shorter vector like {@link #doNoMultiples}. Each chunk is computed by
+         * its own {@link BinaryMapFunctionNode#createConcurrentCopy() copy} of the function, the
+         * copies are returned to be merged on the calling thread.
+         */
+        @TruffleBoundary
+        public BinaryMapFunctionNode[] applyParallel(BinaryMapFunctionNode node, Object store, RAbstractVector left, int leftLength, RAbstractVector right, int rightLength) {
+            int max = Math.max(leftLength, rightLength);
+            int chunk = Math.max(MIN_PARALLEL_CHUNK, max / (ForkJoinPool.getCommonPoolParallelism() * 4));
+            BinaryMapFunctionNode[] copies = new BinaryMapFunctionNode[(max + chunk - 1) / chunk];
+            for (int i = 0; i < copies.length; i++) {
+                copies[i] = node.createConcurrentCopy();
+            }
+            ForkJoinPool.commonPool().invoke(new ChunkAction(copies, store, left, leftLength, right, rightLength, 0, copies.length, chunk, max));
+            if (!multiples(leftLength, rightLength)) {
+                RError.warning(this, RError.Message.LENGTH_NOT_MULTI);
+            }
+            return copies;
+        }
+
+        /**
+         * Computes the chunks {@code fromChunk} to {@code toChunk} (exclusive), chunk {@code i}
+         * with {@code copies[i]}.
+         */
+        private final class ChunkAction extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final BinaryMapFunctionNode[] copies;
+            private final Object store;
+            private final RAbstractVector left;
+            private final int leftLength;
+            private final RAbstractVector right;
+            private final int rightLength;
+            private final int fromChunk;
+            private final int toChunk;
+            private final int chunk;
+            private final int length;
+
+            ChunkAction(BinaryMapFunctionNode[] copies, Object store, RAbstractVector left, int leftLength, RAbstractVector right, int rightLength, int fromChunk, int toChunk, int chunk,
+                            int length) {
+                this.copies = copies;
+                this.store = store;
+                this.left = left;
+                this.leftLength = leftLength;
+                this.right = right;
+                this.rightLength = rightLength;
+                this.fromChunk = fromChunk;
+                this.toChunk = toChunk;
+                this.chunk = chunk;
+                this.length = length;
+            }
+
+            @Override
+            protected void compute() {
+                if (toChunk - fromChunk > 1) {
+                    int middle = (fromChunk + toChunk) >>> 1;
+                    invokeAll(new ChunkAction(copies, store, left, leftLength, right, rightLength, fromChunk, middle, chunk, length),
+                                    new ChunkAction(copies, store, left, leftLength, right, rightLength, middle, toChunk, chunk, length));
+                } else {
+                    BinaryMapFunctionNode node = copies[fromChunk];
+                    int from = fromChunk * chunk;
+                    int to = Math.min(length, from + chunk);
+                    int j = from % leftLength;
+                    int k = from % rightLength;
+                    for (int i = from; i < to; i++) {
+                        indexedAction.perform(node, store, i, left, j, right, k);
+                        j = Utils.incMod(j, leftLength);
+                        k = Utils.incMod(k, rightLength);
+                    }
+                }
+            }
+        }
+
         protected static boolean multiples(int leftLength, int rightLength) {
             int min;
             int max;
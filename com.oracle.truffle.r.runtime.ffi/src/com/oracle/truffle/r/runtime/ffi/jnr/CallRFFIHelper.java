@@ -984,7 +984,7 @@ public class CallRFFIHelper {
             RFFIUtils.traceUpCall("Rf_createNewEnv", parent, name, hashed, initialSize);
         }
         REnvironment env = RDataFactory.createNewEnv(name, hashed, initialSize);
-        RArguments.initializeEnclosingFrame(env.getFrame(), parent.getFrame());
+        RArguments.initializeEnclosingFrame(env.getArgumentsFrame(), parent.getFrame());
         return env;
     }
 
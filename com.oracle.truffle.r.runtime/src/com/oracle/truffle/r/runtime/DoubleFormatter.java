@@ -0,0 +1,391 @@
+/*
+ * This material is distributed under the GNU General Public License
+ * Version 2. You may review the terms of this license at
+ * http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Copyright (c) 1995, 1996  Robert Gentleman and Ross Ihaka
+ * Copyright (c) 1997-2013,  The R Core Team
+ * Copyright (c) 2016, Oracle and/or its affiliates
+ *
+ * All rights reserved.
+ */
+package com.oracle.truffle.r.runtime;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+//Transcribed from GnuR, src/main/format.c
+
+/**
+ * Converts doubles to decimal strings like GnuR's {@code formatReal}/{@code encodeReal} and the C
+ * library's {@code %e} and {@code %f} conversions, appending the result to a {@link StringBuilder}
+ * instead of creating format strings or {@link java.text.DecimalFormat} instances.
+ *
+ * The digits are computed by scaling the value with an exact power of ten and rounding it to a
+ * {@code long}. This is exact unless the scaled value is too close to a rounding tie to decide, in
+ * which case (as for very large or small exponents) the conversion falls back to
+ * {@link BigDecimal}. All methods expect finite values, the callers deal with NA, NaN and
+ * infinities.
+ */
+public final class DoubleFormatter {
+
+    public static final int DBL_DIG = 15;
+
+    private static final double[] tbl = {
+                    1e-1,
+                    1e00, 1e01, 1e02, 1e03, 1e04, 1e05, 1e06, 1e07, 1e08, 1e09,
+                    1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19,
+                    1e20, 1e21, 1e22
+    };
+    private static final int KP_MAX = 22;
+    private static final int R_dec_min_exponent = -308;
+
+    private static final long[] POW10 = {
+                    1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+                    10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+                    1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L
+    };
+
+    /**
+     * Scaled values from this bound on have no fractional digits left to round.
+     */
+    private static final double MAX_EXACT_SCALED = 1L << 52;
+
+    private static final char[] ZEROS = "00000000000000000000000".toCharArray();
+
+    private DoubleFormatter() {
+        // only static methods
+    }
+
+    public static final class ScientificDouble {
+        public final int sgn;
+        public final int kpower;
+        public final int nsig;
+        public final boolean roundingwidens;
+
+        ScientificDouble(int sgn, int kpower, int nsig, boolean roundingwidens) {
+            super();
+            this.sgn = sgn;
+            this.kpower = kpower;
+            this.nsig = nsig;
+            this.roundingwidens = roundingwidens;
+        }
+    }
+
+    public static ScientificDouble scientific(double x, int digits) {
+        /*
+         * for a number x , determine sgn = 1_{x < 0} {0/1} kpower = Exponent of 10; nsig =
+         * min(R_print.digits, #{significant digits of alpha}) roundingwidens = 1 if rounding causes
+         * x to increase in width, 0 otherwise
+         *
+         * where |x| = alpha * 10^kpower and 1 <= alpha < 10
+         */
+        double alpha;
+        double r;
+        int kp;
+        int j;
+
+        // output arguments
+        int sgn;
+        int kpower;
+        int nsig;
+        boolean roundingwidens;
+
+        if (x == 0.0) {
+            kpower = 0;
+            nsig = 1;
+            sgn = 0;
+            roundingwidens = false;
+            r = 0.0;
+        } else {
+            if (x < 0.0) {
+                sgn = 1;
+                r = -x;
+            } else {
+                sgn = 0;
+                r = x;
+            }
+
+            if (digits >= DBL_DIG + 1) {
+                /*
+                 * Like GnuR's format_via_sprintf: more digits than a double can hold in the
+                 * scaling below, so round the exact decimal value of r as sprintf("%.*e") does.
+                 */
+                BigDecimal rounded = new BigDecimal(r).round(new MathContext(digits, RoundingMode.HALF_EVEN)).stripTrailingZeros();
+                kpower = rounded.precision() - rounded.scale() - 1;
+                nsig = rounded.precision();
+                return new ScientificDouble(sgn, kpower, nsig, false);
+            }
+
+            kp = (int) Math.floor(Math.log10(r)) - digits + 1; // r = |x|;
+                                                               // 10^(kp + digits - 1) <= r
+
+            double rPrec = r;
+            /* use exact scaling factor in double precision, if possible */
+            if (Math.abs(kp) <= 22) {
+                if (kp >= 0) {
+                    rPrec /= tbl[kp + 1];
+                } else {
+                    rPrec *= tbl[-kp + 1];
+                }
+            } else if (kp <= R_dec_min_exponent) {
+                /*
+                 * on IEEE 1e-308 is not representable except by gradual underflow. Shifting by 303
+                 * allows for any potential denormalized numbers x, and makes the reasonable
+                 * assumption that R_dec_min_exponent+303 is in range. Representation of 1e+303 has
+                 * low error.
+                 */
+                rPrec = (rPrec * 1e+303) / Math.pow(10, kp + 303);
+            } else {
+                rPrec /= Math.pow(10, kp);
+            }
+            if (rPrec < tbl[digits]) {
+                rPrec *= 10.0;
+                kp--;
+            }
+            /* round alpha to integer, 10^(digits-1) <= alpha <= 10^digits */
+            /*
+             * accuracy limited by double rounding problem, alpha already rounded to 53 bits
+             */
+            alpha = Math.round(rPrec);
+
+            nsig = digits;
+            for (j = 1; j <= digits; j++) {
+                alpha /= 10.0;
+                if (alpha == Math.floor(alpha)) {
+                    nsig--;
+                } else {
+                    break;
+                }
+            }
+            if (nsig == 0 && digits > 0) {
+                nsig = 1;
+                kp += 1;
+            }
+            kpower = kp + digits - 1;
+
+            /*
+             * Scientific format may do more rounding than fixed format, e.g. 9996 with 3 digits is
+             * 1e+04 in scientific, but 9996 in fixed. This happens when the true value r is less
+             * than 10^(kpower+1) and would not round up to it in fixed format. Here rgt is the
+             * decimal place that will be cut off by rounding
+             */
+
+            int rgt = digits - kpower;
+            /* bound rgt by 0 and KP_MAX */
+            rgt = rgt < 0 ? 0 : rgt > KP_MAX ? KP_MAX : rgt;
+            double fuzz = 0.5 / tbl[1 + rgt];
+            // kpower can be bigger than the table.
+            roundingwidens = kpower > 0 && kpower <= KP_MAX && r < tbl[kpower + 1] - fuzz;
+
+        }
+
+        return new ScientificDouble(sgn, kpower, nsig, roundingwidens);
+    }
+
+    /**
+     * Appends {@code x} with at most {@code digits} significant digits in fixed or scientific
+     * notation, whichever is shorter, like {@code formatReal} followed by {@code encodeReal} for a
+     * single value with {@code R_print.scipen} 0. This is how {@code as.character} and
+     * {@code write.table} convert doubles (with {@link #DBL_DIG} digits).
+     */
+    public static void append(StringBuilder sb, double x, int digits) {
+        assert RRuntime.isFinite(x) && digits > 0 && digits <= DBL_DIG;
+        double v = RRuntime.normalizeZero(x);
+        double abs = Math.abs(v);
+        /*
+         * Unlike scientific(), which rounds in double precision, determine the significant digits
+         * from the correctly rounded value, so that no spurious trailing digits are printed.
+         */
+        long significand = 0;
+        int kpower = 0;
+        if (abs != 0) {
+            kpower = (int) Math.floor(Math.log10(abs));
+            significand = -1;
+            for (int attempt = 0; attempt < 2 && significand < 0; attempt++) {
+                int shift = digits - 1 - kpower;
+                if (Math.abs(shift) > KP_MAX) {
+                    break;
+                }
+                double scaled = shift >= 0 ? abs * tbl[shift + 1] : abs / tbl[-shift + 1];
+                // log10 may be off by one close to powers of ten
+                if (scaled >= POW10[digits]) {
+                    kpower++;
+                } else if (scaled < POW10[digits - 1]) {
+                    kpower--;
+                } else {
+                    significand = roundScaled(scaled);
+                    break;
+                }
+            }
+            if (significand < 0) {
+                BigDecimal rounded = new BigDecimal(abs).round(new MathContext(digits, RoundingMode.HALF_EVEN));
+                significand = rounded.unscaledValue().longValue();
+                kpower = rounded.precision() - rounded.scale() - 1;
+            } else if (significand == POW10[digits]) {
+                significand = POW10[digits - 1];
+                kpower++;
+            }
+        }
+        int nsig = digits;
+        while (nsig > 1 && significand % 10 == 0) {
+            significand /= 10;
+            nsig--;
+        }
+        while (significand >= POW10[nsig]) {
+            // BigDecimal does not pad to the requested precision
+            significand /= 10;
+        }
+        int sgn = v < 0 ? 1 : 0;
+        /* see scientific() */
+        int rgtCut = digits - kpower;
+        rgtCut = rgtCut < 0 ? 0 : rgtCut > KP_MAX ? KP_MAX : rgtCut;
+        boolean roundingwidens = kpower > 0 && kpower <= KP_MAX && abs < tbl[kpower + 1] - 0.5 / tbl[1 + rgtCut];
+
+        int left = kpower + 1;
+        if (roundingwidens) {
+            left--;
+        }
+        int rgt = Math.max(nsig - left, 0);
+        int mxsl = left < 0 ? 1 + sgn : sgn + (left <= 0 ? 1 : left);
+        int widthF = mxsl + rgt + (rgt != 0 ? 1 : 0);
+        int e = (left > 100 || left <= -99) ? 2 : 1;
+        int d = nsig - 1;
+        int widthE = sgn + (d > 0 ? 1 : 0) + d + 4 + e;
+        if (widthF <= widthE) {
+            if (roundingwidens || rgt != nsig - 1 - kpower) {
+                // the digits left of the significant ones must be computed
+                appendFixed(sb, v, rgt);
+                return;
+            }
+            if (sgn != 0) {
+                sb.append('-');
+            }
+            appendDigits(sb, significand, rgt);
+        } else {
+            if (sgn != 0) {
+                sb.append('-');
+            }
+            appendDigits(sb, significand, d);
+            appendExponent(sb, kpower);
+        }
+    }
+
+    public static String toString(double x, int digits) {
+        StringBuilder sb = new StringBuilder(24);
+        append(sb, x, digits);
+        return sb.toString();
+    }
+
+    /**
+     * Appends {@code x} with {@code d} digits after the decimal point, like {@code %.df}.
+     */
+    public static void appendFixed(StringBuilder sb, double x, int d) {
+        assert RRuntime.isFinite(x) && d >= 0;
+        double abs = Math.abs(x);
+        if (x < 0 || (x == 0 && 1 / x < 0)) {
+            sb.append('-');
+        }
+        long scaled = d <= KP_MAX ? roundScaled(abs * tbl[d + 1]) : -1;
+        if (scaled >= 0) {
+            appendDigits(sb, scaled, d);
+        } else {
+            sb.append(new BigDecimal(abs).setScale(d, RoundingMode.HALF_EVEN).toPlainString());
+        }
+    }
+
+    /**
+     * Appends {@code x} in scientific notation with {@code d} digits after the decimal point, like
+     * {@code %.de}.
+     */
+    public static void appendScientific(StringBuilder sb, double x, int d) {
+        assert RRuntime.isFinite(x) && d >= 0;
+        double abs = Math.abs(x);
+        if (x < 0 || (x == 0 && 1 / x < 0)) {
+            sb.append('-');
+        }
+        int exponent = abs == 0 ? 0 : (int) Math.floor(Math.log10(abs));
+        long mantissa = abs == 0 ? 0 : -1;
+        for (int attempt = 0; attempt < 2 && mantissa < 0 && d + 1 < POW10.length; attempt++) {
+            int shift = d - exponent;
+            if (Math.abs(shift) > KP_MAX) {
+                break;
+            }
+            double scaled = shift >= 0 ? abs * tbl[shift + 1] : abs / tbl[-shift + 1];
+            // log10 may be off by one close to powers of ten
+            if (scaled >= POW10[d + 1]) {
+                exponent++;
+            } else if (scaled < POW10[d]) {
+                exponent--;
+            } else {
+                mantissa = roundScaled(scaled);
+                if (mantissa == POW10[d + 1]) {
+                    // rounded up to the next power of ten
+                    mantissa = POW10[d];
+                    exponent++;
+                }
+                break;
+            }
+        }
+        if (mantissa < 0) {
+            BigDecimal rounded = new BigDecimal(abs).round(new MathContext(d + 1, RoundingMode.HALF_EVEN));
+            String unscaled = rounded.unscaledValue().toString();
+            exponent = unscaled.length() - rounded.scale() - 1;
+            sb.append(unscaled.charAt(0));
+            if (d > 0) {
+                sb.append('.');
+                sb.append(unscaled, 1, Math.min(unscaled.length(), d + 1));
+                for (int i = unscaled.length(); i <= d; i++) {
+                    sb.append('0');
+                }
+            }
+        } else {
+            // 10^d <= mantissa < 10^(d+1)
+            appendDigits(sb, mantissa, d);
+        }
+        appendExponent(sb, exponent);
+    }
+
+    /**
+     * Appends {@code value / 10^d} with exactly {@code d} digits after the decimal point.
+     */
+    private static void appendDigits(StringBuilder sb, long value, int d) {
+        assert value >= 0;
+        int start = sb.length();
+        sb.append(value);
+        int length = sb.length() - start;
+        if (length <= d) {
+            // leading zeros including the one before the decimal point
+            sb.insert(start, ZEROS, 0, d + 1 - length);
+        }
+        if (d > 0) {
+            sb.insert(sb.length() - d, '.');
+        }
+    }
+
+    private static void appendExponent(StringBuilder sb, int exponent) {
+        sb.append('e');
+        sb.append(exponent < 0 ? '-' : '+');
+        int abs = Math.abs(exponent);
+        if (abs < 10) {
+            sb.append('0');
+        }
+        sb.append(abs);
+    }
+
+    /**
+     * Rounds a non-negative scaled value half-even, or returns {@code -1} if the result cannot be
+     * guaranteed to be the correctly rounded exact value. The scaled value was computed with one
+     * rounding, so its error is at most half an ulp.
+     */
+    private static long roundScaled(double scaled) {
+        if (scaled >= MAX_EXACT_SCALED) {
+            return -1;
+        }
+        if (Math.abs(scaled - Math.floor(scaled) - 0.5) <= Math.ulp(scaled)) {
+            return -1;
+        }
+        return (long) Math.rint(scaled);
+    }
+}
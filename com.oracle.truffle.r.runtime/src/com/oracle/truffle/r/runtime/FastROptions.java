@@ -45,6 +45,9 @@ public enum FastROptions {
     TraceNativeCalls("Trace all native function calls (performed via .Call, .External, etc.)", false),
     PerfStats("PerfStats=p1,p2,...; Collect performance stats identified by p1, etc.", null, true),
     PerfStatsFile("PerfStatsFile=file; Send performance stats to 'file', default stdout", null, true),
+    PerfStatsJMX("Expose the enabled performance stats handlers as JMX MBeans", false),
+    PerfStatsDumpFile("PerfStatsDumpFile=file; Periodically append the performance stats to 'file' as JSON lines", null, true),
+    PerfStatsDumpInterval("Interval in seconds between dumps to PerfStatsDumpFile", "10", true),
     Rdebug("Rdebug=f1,f2.,,,; list of R function to call debug on (implies +Instrument)", null, true),
     PerformanceWarnings("Print FastR performance warning", false),
     LoadBase("Load base package", true),
@@ -54,6 +57,17 @@ public enum FastROptions {
     InvisibleArgs("Argument writes do not trigger state transitions", true),
     RefCountIncrementOnly("Disable reference count decrements for experimental state transition implementation", false),
     UseInternalGraphics("Whether the internal (Java) graphics subsystem should be used", false),
+    MMapFileConnections("Memory-map files opened by binary read-mode file connections", false),
+    WriteTableThreads("Number of threads used to format the output of write.table", "1", true),
+    HashedEnvironments("Keep the bindings of new.env(hash = TRUE) environments in a hash map until the environment is used for evaluation", true),
+    GZipThreads("Number of threads used to compress the output of gzfile connections", "1", true),
+    ContextPoolSize("Number of idle contexts per kind kept for reuse by .fastr.context.spawn/eval, 0 disables the pool", "0", true),
+    ParallelApplyContexts("Number of contexts lapply/sapply/vapply may use to apply side-effect free closures in parallel, 0 disables; the contexts are reused only with ContextPoolSize", "0", true),
+    ParseCacheSize("Number of parse results cached process-wide for reuse by source(), parse() and context startup, 0 disables the cache", "1024", true),
+    BaseSnapshot("BaseSnapshot=dir; Restore the base environment from a snapshot in 'dir' instead of evaluating the base package, the snapshot is (re)written if missing or outdated", null, true),
+    TraceStartup("TraceStartup=file; Append the time and allocation of the startup phases, namespace loads, lazy-load fetches and DLL loads to 'file' as JSON lines", null, true),
+    ParallelMapThreshold("Minimum length of a numeric arithmetic or comparison result that is computed in parallel on the common fork-join pool, 0 disables", "0", true),
+    FuseArithmetic("Evaluate nested +, -, *, / and comparisons on variables and double constants in a single loop without intermediate vectors", true),
 
     // Promises optimizations
     EagerEval("If enabled, overrides all other EagerEval switches (see EagerEvalHelper)", false),
@@ -121,6 +135,17 @@ public enum FastROptions {
 
     }
 
+    /**
+     * Changes the value of this option at runtime and returns the previous value, e.g. to run tests
+     * with a non-default value. Nodes and contexts that already read the option keep the value
+     * they read.
+     */
+    public Object setRuntimeValue(Object newValue) {
+        Object previous = value;
+        value = newValue;
+        return previous;
+    }
+
     private static FastROptions[] VALUES = values();
 
     static void setValue(String name, Object value) {
@@ -0,0 +1,367 @@
+/*
+ * This material is distributed under the GNU General Public License
+ * Version 2. You may review the terms of this license at
+ * http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Copyright (c) 1995, 1996  Robert Gentleman and Ross Ihaka
+ * Copyright (c) 1997-2013,  The R Core Team
+ * Copyright (c) 2016, Oracle and/or its affiliates
+ *
+ * All rights reserved.
+ */
+package com.oracle.truffle.r.runtime;
+
+//Transcribed from GnuR, src/main/arithmetic.c (R_strtod) and src/main/coerce.c (String2Integer)
+
+/**
+ * Parses numbers from a range of a {@link CharSequence} like GnuR's {@code R_strtod}, i.e.,
+ * decimal numbers with a configurable decimal mark, hexadecimal numbers with an optional binary
+ * exponent, {@code NA}, {@code NaN}, {@code Inf} and {@code infinity}. Leading and trailing white
+ * space is ignored. Instead of throwing an exception, the methods return the respective NA value if
+ * the range does not contain a number.
+ *
+ * Decimal numbers whose significant digits fit into 53 bits and whose decimal exponent is at most
+ * 22 are computed by a single multiplication or division of two exactly representable values,
+ * which is correctly rounded and does not allocate. Other numbers are passed to
+ * {@link Double#parseDouble(String)} after validating them. Hexadecimal mantissas are accumulated
+ * as integers and rounded once when they are scaled by the binary exponent.
+ */
+public final class NumberParser {
+
+    private static final double[] POW10 = {
+                    1e00, 1e01, 1e02, 1e03, 1e04, 1e05, 1e06, 1e07, 1e08, 1e09,
+                    1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19,
+                    1e20, 1e21, 1e22
+    };
+
+    /**
+     * Mantissas up to this bound are exactly representable as doubles.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private static final int MAX_MANTISSA_DIGITS = 18;
+
+    /**
+     * Hexadecimal digits beyond this many significant digits (60 bits) only matter for rounding.
+     */
+    private static final int MAX_HEX_DIGITS = 15;
+
+    private static final int DOUBLE_PRECISION = 53;
+
+    /**
+     * The binary exponent of the least significant bit of the smallest subnormal double.
+     */
+    private static final int MIN_BINARY_EXPONENT = -1074;
+
+    /**
+     * Larger exponents overflow (or underflow) in any case, this keeps the exponent from wrapping.
+     */
+    private static final int MAX_EXPONENT = 99999;
+
+    private NumberParser() {
+        // only static methods
+    }
+
+    public static double parseDouble(CharSequence s) {
+        return parseDouble(s, 0, s.length(), '.');
+    }
+
+    /**
+     * Parses the characters from {@code start} (inclusive) to {@code end} (exclusive) of {@code s}
+     * as a double, using {@code dec} as the decimal mark. Returns {@link RRuntime#DOUBLE_NA} if the
+     * range is {@code NA}, blank or not a number.
+     */
+    public static double parseDouble(CharSequence s, int start, int end, char dec) {
+        int pos = skipWhitespace(s, start, end);
+        int last = trimWhitespace(s, pos, end);
+        if (pos == last || matches(s, pos, last, "NA", false)) {
+            return RRuntime.DOUBLE_NA;
+        }
+        boolean negative = false;
+        char c = s.charAt(pos);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            pos++;
+            if (pos == last) {
+                return RRuntime.DOUBLE_NA;
+            }
+            c = s.charAt(pos);
+        }
+        double value;
+        if (last - pos > 2 && c == '0' && (s.charAt(pos + 1) == 'x' || s.charAt(pos + 1) == 'X')) {
+            value = parseHex(s, pos + 2, last, dec);
+        } else if (isDigit(c) || c == dec) {
+            value = parseDecimal(s, pos, last, dec);
+        } else if (matches(s, pos, last, "NaN", false)) {
+            value = Double.NaN;
+        } else if (matches(s, pos, last, "Inf", true) || matches(s, pos, last, "infinity", true)) {
+            value = Double.POSITIVE_INFINITY;
+        } else {
+            return RRuntime.DOUBLE_NA;
+        }
+        return negative && !RRuntime.isNA(value) ? -value : value;
+    }
+
+    public static int parseInt(CharSequence s) {
+        return parseInt(s, 0, s.length());
+    }
+
+    /**
+     * Parses the characters from {@code start} (inclusive) to {@code end} (exclusive) of {@code s}
+     * as a decimal integer literal, i.e., digits with an optional sign and surrounding white space,
+     * like {@code Strtoi} in GnuR. Returns {@link RRuntime#INT_NA} if the range is not an integer
+     * or is out of the range of R integers.
+     */
+    public static int parseInt(CharSequence s, int start, int end) {
+        int pos = skipWhitespace(s, start, end);
+        int last = trimWhitespace(s, pos, end);
+        boolean negative = false;
+        if (pos < last && (s.charAt(pos) == '-' || s.charAt(pos) == '+')) {
+            negative = s.charAt(pos) == '-';
+            pos++;
+        }
+        if (pos == last || last - pos > 10) {
+            return RRuntime.INT_NA;
+        }
+        long value = 0;
+        for (; pos < last; pos++) {
+            char c = s.charAt(pos);
+            if (!isDigit(c)) {
+                return RRuntime.INT_NA;
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (value > Integer.MAX_VALUE) {
+            return RRuntime.INT_NA;
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    public static int coerceInt(CharSequence s) {
+        return coerceInt(s, 0, s.length(), '.');
+    }
+
+    /**
+     * Converts the characters from {@code start} (inclusive) to {@code end} (exclusive) of
+     * {@code s} to an integer like {@code as.integer}, i.e., any number accepted by
+     * {@link #parseDouble(CharSequence, int, int, char)} is truncated towards zero. Returns
+     * {@link RRuntime#INT_NA} if the range is not a number or the number is out of the range of R
+     * integers.
+     */
+    public static int coerceInt(CharSequence s, int start, int end, char dec) {
+        int result = parseInt(s, start, end);
+        if (result != RRuntime.INT_NA) {
+            return result;
+        }
+        double value = parseDouble(s, start, end, dec);
+        if (Double.isNaN(value) || value >= Integer.MAX_VALUE + 1.0 || value <= Integer.MIN_VALUE) {
+            return RRuntime.INT_NA;
+        }
+        return (int) value;
+    }
+
+    private static double parseDecimal(CharSequence s, int start, int end, char dec) {
+        long mantissa = 0;
+        int significant = 0;
+        int scale = 0;
+        boolean anyDigits = false;
+        int pos = start;
+        for (; pos < end && isDigit(s.charAt(pos)); pos++) {
+            char c = s.charAt(pos);
+            anyDigits = true;
+            if (significant > 0 || c != '0') {
+                significant++;
+                mantissa = mantissa * 10 + (c - '0');
+            }
+        }
+        if (pos < end && s.charAt(pos) == dec) {
+            for (pos++; pos < end && isDigit(s.charAt(pos)); pos++) {
+                char c = s.charAt(pos);
+                anyDigits = true;
+                scale--;
+                if (significant > 0 || c != '0') {
+                    significant++;
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+            }
+        }
+        if (!anyDigits) {
+            return RRuntime.DOUBLE_NA;
+        }
+        int mantissaEnd = pos;
+        int exponent = 0;
+        if (pos < end && (s.charAt(pos) == 'e' || s.charAt(pos) == 'E')) {
+            // as in GnuR, the exponent digits may be missing
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < end && (s.charAt(pos) == '-' || s.charAt(pos) == '+')) {
+                negativeExponent = s.charAt(pos) == '-';
+                pos++;
+            }
+            for (; pos < end && isDigit(s.charAt(pos)); pos++) {
+                if (exponent < MAX_EXPONENT) {
+                    exponent = exponent * 10 + (s.charAt(pos) - '0');
+                }
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        if (pos != end) {
+            return RRuntime.DOUBLE_NA;
+        }
+        if (significant == 0) {
+            return 0.0;
+        }
+        int exp10 = scale + exponent;
+        if (significant <= MAX_MANTISSA_DIGITS && mantissa <= MAX_EXACT_MANTISSA && exp10 >= -22 && exp10 <= 22) {
+            return exp10 < 0 ? mantissa / POW10[-exp10] : mantissa * POW10[exp10];
+        }
+        return parseSlow(s, start, mantissaEnd, dec, exponent);
+    }
+
+    /**
+     * Converts a validated decimal number that cannot be computed exactly from its mantissa.
+     */
+    private static double parseSlow(CharSequence s, int start, int mantissaEnd, char dec, int exponent) {
+        StringBuilder str = new StringBuilder(mantissaEnd - start + 8);
+        for (int i = start; i < mantissaEnd; i++) {
+            char c = s.charAt(i);
+            str.append(c == dec ? '.' : c);
+        }
+        str.append('e').append(exponent);
+        return Double.parseDouble(str.toString());
+    }
+
+    private static double parseHex(CharSequence s, int start, int end, char dec) {
+        long mantissa = 0;
+        int significant = 0;
+        // whether any of the digits that did not fit into the mantissa is non-zero
+        boolean sticky = false;
+        int binaryExponent = 0;
+        boolean anyDigits = false;
+        int pos = start;
+        for (int digit; pos < end && (digit = hexDigit(s.charAt(pos))) >= 0; pos++) {
+            anyDigits = true;
+            if (significant < MAX_HEX_DIGITS) {
+                if (significant > 0 || digit != 0) {
+                    significant++;
+                    mantissa = (mantissa << 4) | digit;
+                }
+            } else {
+                binaryExponent += 4;
+                sticky |= digit != 0;
+            }
+        }
+        if (pos < end && s.charAt(pos) == dec) {
+            for (int digit; ++pos < end && (digit = hexDigit(s.charAt(pos))) >= 0;) {
+                anyDigits = true;
+                if (significant < MAX_HEX_DIGITS) {
+                    if (significant > 0 || digit != 0) {
+                        significant++;
+                        mantissa = (mantissa << 4) | digit;
+                    }
+                    binaryExponent -= 4;
+                } else {
+                    sticky |= digit != 0;
+                }
+            }
+        }
+        if (!anyDigits) {
+            return RRuntime.DOUBLE_NA;
+        }
+        if (pos < end && (s.charAt(pos) == 'p' || s.charAt(pos) == 'P')) {
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < end && (s.charAt(pos) == '-' || s.charAt(pos) == '+')) {
+                negativeExponent = s.charAt(pos) == '-';
+                pos++;
+            }
+            int exponent = 0;
+            for (; pos < end && isDigit(s.charAt(pos)); pos++) {
+                if (exponent < MAX_EXPONENT) {
+                    exponent = exponent * 10 + (s.charAt(pos) - '0');
+                }
+            }
+            binaryExponent += negativeExponent ? -exponent : exponent;
+        }
+        if (pos != end) {
+            return RRuntime.DOUBLE_NA;
+        }
+        return scaleBinary(mantissa, sticky, binaryExponent);
+    }
+
+    /**
+     * Computes {@code mantissa * 2^binaryExponent} rounded to nearest even, where {@code sticky}
+     * tells whether there were non-zero bits below the mantissa. The mantissa is rounded to the
+     * number of bits the result can hold (fewer than 53 for subnormals), so that the final scaling
+     * is exact and the result is rounded only once.
+     */
+    private static double scaleBinary(long mantissa, boolean sticky, int binaryExponent) {
+        if (mantissa == 0) {
+            return 0.0;
+        }
+        int bits = Long.SIZE - Long.numberOfLeadingZeros(mantissa);
+        int shift = Math.max(bits - DOUBLE_PRECISION, MIN_BINARY_EXPONENT - binaryExponent);
+        if (shift <= 0) {
+            // there are no dropped digits (sticky) if the mantissa has fewer than 53 bits
+            return Math.scalb((double) mantissa, binaryExponent);
+        }
+        if (shift > bits) {
+            // less than half of the smallest subnormal
+            return 0.0;
+        }
+        long rounded = mantissa >>> shift;
+        long rest = mantissa & ((1L << shift) - 1);
+        long half = 1L << (shift - 1);
+        if (rest > half || (rest == half && (sticky || (rounded & 1) != 0))) {
+            rounded++;
+        }
+        return Math.scalb((double) rounded, binaryExponent + shift);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static boolean matches(CharSequence s, int start, int end, String word, boolean ignoreCase) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char c = s.charAt(start + i);
+            char w = word.charAt(i);
+            if (c != w && !(ignoreCase && Character.toLowerCase(c) == Character.toLowerCase(w))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipWhitespace(CharSequence s, int start, int end) {
+        int pos = start;
+        while (pos < end && Character.isWhitespace(s.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int trimWhitespace(CharSequence s, int start, int end) {
+        int last = end;
+        while (last > start && Character.isWhitespace(s.charAt(last - 1))) {
+            last--;
+        }
+        return last;
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.oracle.truffle.api.RootCallTarget;
+import com.oracle.truffle.api.source.Source;
+import com.oracle.truffle.api.source.SourceSection;
+import com.oracle.truffle.r.runtime.context.Engine.ParseException;
+import com.oracle.truffle.r.runtime.nodes.RCodeBuilder;
+import com.oracle.truffle.r.runtime.nodes.RCodeBuilder.Argument;
+
+/**
+ * A process-wide cache of parse results, shared by all contexts. Running the parser dominates the
+ * cost of {@code source()} and of loading the base package and the profiles in every new context,
+ * and the same code is parsed over and over again.
+ *
+ * The parser is run with a builder that records the builder calls as a tree of immutable elements,
+ * which is then replayed into the actual builder of each parse. The elements reference the
+ * {@link SourceSection source sections} of the first parse, which is why the entries are keyed by
+ * the name and path of the source in addition to its content. At most
+ * {@link FastROptions#ParseCacheSize} entries are kept, the least recently used ones are evicted.
+ */
+public final class ParseCache {
+
+    private static final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > FastROptions.ParseCacheSize.getNonNegativeIntValue();
+        }
+    };
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder parseNanos = new LongAdder();
+    private static final LongAdder savedNanos = new LongAdder();
+
+    private ParseCache() {
+        // only static methods
+    }
+
+    private static boolean isEnabled() {
+        return FastROptions.ParseCacheSize.getNonNegativeIntValue() > 0;
+    }
+
+    /**
+     * Parses {@code source} like {@link RParserFactory.Parser#script}.
+     */
+    public static <T> List<T> script(Source source, RCodeBuilder<T> builder) throws ParseException {
+        if (!isEnabled()) {
+            return RParserFactory.<T> getParser().script(source, builder);
+        }
+        Entry entry = lookup(new Key(source, false));
+        if (entry == null) {
+            Recorder recorder = new Recorder();
+            long start = System.nanoTime();
+            List<Element> statements = RParserFactory.<Element> getParser().script(source, recorder);
+            entry = put(new Key(source, false), new Entry(statements, null, System.nanoTime() - start));
+        }
+        List<T> result = new ArrayList<>(entry.statements.size());
+        for (Element statement : entry.statements) {
+            result.add(statement.replay(builder));
+        }
+        return result;
+    }
+
+    /**
+     * Parses {@code source} like {@link RParserFactory.Parser#rootFunction}.
+     */
+    public static <T> RootCallTarget rootFunction(Source source, String name, RCodeBuilder<T> builder) throws ParseException {
+        if (!isEnabled()) {
+            return RParserFactory.<T> getParser().rootFunction(source, name, builder);
+        }
+        Entry entry = lookup(new Key(source, true));
+        if (entry == null) {
+            Recorder recorder = new Recorder();
+            long start = System.nanoTime();
+            RParserFactory.<Element> getParser().rootFunction(source, name, recorder);
+            entry = put(new Key(source, true), new Entry(null, recorder.rootFunction, System.nanoTime() - start));
+        }
+        Function function = entry.rootFunction;
+        return builder.rootFunction(function.source, replay(function.arguments, builder), function.body.replay(builder), name);
+    }
+
+    private static Entry lookup(Key key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            hits.increment();
+            savedNanos.add(entry.parseNanos);
+        }
+        return entry;
+    }
+
+    private static Entry put(Key key, Entry entry) {
+        misses.increment();
+        parseNanos.add(entry.parseNanos);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private static final class Key {
+        private final String name;
+        private final String path;
+        private final String code;
+        private final boolean function;
+        private final int hash;
+
+        Key(Source source, boolean function) {
+            this.name = source.getName();
+            this.path = source.getPath();
+            this.code = source.getCode();
+            this.function = function;
+            this.hash = code.hashCode() * 31 + (name == null ? 0 : name.hashCode()) + (function ? 1 : 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && function == other.function && code.equals(other.code) && equals(name, other.name) && equals(path, other.path);
+        }
+
+        private static boolean equals(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    private static final class Entry {
+        private final List<Element> statements;
+        private final Function rootFunction;
+        private final long parseNanos;
+
+        Entry(List<Element> statements, Function rootFunction, long parseNanos) {
+            this.statements = statements;
+            this.rootFunction = rootFunction;
+            this.parseNanos = parseNanos;
+        }
+    }
+
+    /**
+     * A recorded builder call, which creates the same result when replayed into another builder.
+     */
+    private abstract static class Element {
+        protected final SourceSection source;
+
+        protected Element(SourceSection source) {
+            this.source = source;
+        }
+
+        protected abstract <T> T replay(RCodeBuilder<T> builder);
+    }
+
+    private static final class Call extends Element {
+        private final Element lhs;
+        private final List<Argument<Element>> arguments;
+
+        Call(SourceSection source, Element lhs, List<Argument<Element>> arguments) {
+            super(source);
+            this.lhs = lhs;
+            this.arguments = arguments;
+        }
+
+        @Override
+        protected <T> T replay(RCodeBuilder<T> builder) {
+            return builder.call(source, lhs.replay(builder), ParseCache.replay(arguments, builder));
+        }
+    }
+
+    private static final class Constant extends Element {
+        private final Object value;
+
+        Constant(SourceSection source, Object value) {
+            super(source);
+            this.value = value;
+        }
+
+        @Override
+        protected <T> T replay(RCodeBuilder<T> builder) {
+            return builder.constant(source, value);
+        }
+    }
+
+    private static final class Lookup extends Element {
+        private final String symbol;
+        private final boolean functionLookup;
+
+        Lookup(SourceSection source, String symbol, boolean functionLookup) {
+            super(source);
+            this.symbol = symbol;
+            this.functionLookup = functionLookup;
+        }
+
+        @Override
+        protected <T> T replay(RCodeBuilder<T> builder) {
+            return builder.lookup(source, symbol, functionLookup);
+        }
+    }
+
+    private static final class Function extends Element {
+        private final List<Argument<Element>> arguments;
+        private final Element body;
+        private final Object assignedTo;
+
+        Function(SourceSection source, List<Argument<Element>> arguments, Element body, Object assignedTo) {
+            super(source);
+            this.arguments = arguments;
+            this.body = body;
+            this.assignedTo = assignedTo;
+        }
+
+        @Override
+        protected <T> T replay(RCodeBuilder<T> builder) {
+            return builder.function(source, ParseCache.replay(arguments, builder), body.replay(builder), assignedTo);
+        }
+    }
+
+    private static <T> List<Argument<T>> replay(List<Argument<Element>> arguments, RCodeBuilder<T> builder) {
+        List<Argument<T>> result = new ArrayList<>(arguments.size());
+        for (Argument<Element> argument : arguments) {
+            result.add(RCodeBuilder.argument(argument.source, argument.name, argument.value == null ? null : argument.value.replay(builder)));
+        }
+        return result;
+    }
+
+    /**
+     * Records the builder calls of the parser. The function that a function literal is assigned
+     * to is only used for its name, so it is recorded as the name if it is a lookup.
+     */
+    private static final class Recorder implements RCodeBuilder<Element> {
+        private Function rootFunction;
+
+        @Override
+        public Element call(SourceSection source, Element lhs, List<Argument<Element>> arguments) {
+            return new Call(source, lhs, new ArrayList<>(arguments));
+        }
+
+        @Override
+        public Element constant(SourceSection source, Object value) {
+            return new Constant(source, value);
+        }
+
+        @Override
+        public Element lookup(SourceSection source, String symbol, boolean functionLookup) {
+            return new Lookup(source, symbol, functionLookup);
+        }
+
+        @Override
+        public Element function(SourceSection source, List<Argument<Element>> arguments, Element body, Object assignedTo) {
+            return new Function(source, new ArrayList<>(arguments), body, assignedTo instanceof Lookup ? ((Lookup) assignedTo).symbol : null);
+        }
+
+        @Override
+        public RootCallTarget rootFunction(SourceSection source, List<Argument<Element>> arguments, Element body, String name) {
+            rootFunction = new Function(source, new ArrayList<>(arguments), body, name);
+            return null;
+        }
+    }
+
+    static {
+        RPerfStats.register(new PerfHandler());
+    }
+
+    /**
+     * Reports how often the parser was run and the time the cache saved.
+     */
+    private static class PerfHandler implements RPerfStats.Handler {
+        @Override
+        public void initialize(String optionText) {
+            // the counters are always maintained
+        }
+
+        @Override
+        public String getName() {
+            return "parsecache";
+        }
+
+        @Override
+        public void report() {
+            RPerfStats.out().printf("Parse cache: %d hits, %d misses, %d ms parsing, %d ms saved%n", hits.sum(), misses.sum(), parseNanos.sum() / 1000000, savedNanos.sum() / 1000000);
+            RPerfStats.out().println();
+        }
+
+        @Override
+        public Map<String, Object> getMetrics() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("hits", hits.sum());
+            result.put("misses", misses.sum());
+            result.put("parse.ms", parseNanos.sum() / 1000000);
+            result.put("saved.ms", savedNanos.sum() / 1000000);
+            return result;
+        }
+    }
+}
@@ -23,14 +23,18 @@
 package com.oracle.truffle.r.runtime;
 
 import java.io.IOException;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.r.runtime.conn.RConnection;
 import com.oracle.truffle.r.runtime.data.RAttributable;
 import com.oracle.truffle.r.runtime.data.RAttributes;
 import com.oracle.truffle.r.runtime.data.RAttributes.RAttribute;
+import com.oracle.truffle.r.runtime.data.RDataFactory;
 import com.oracle.truffle.r.runtime.data.RFunction;
 import com.oracle.truffle.r.runtime.data.RLanguage;
 import com.oracle.truffle.r.runtime.data.RList;
@@ -42,6 +46,16 @@ import com.oracle.truffle.r.runtime.env.REnvironment;
 /**
  * Implementation of a channel abstraction used for communication between parallel contexts in
  * shared memory space.
+ *
+ * A channel consists of two queues, one for each direction. The master (the creator of the
+ * channel) sends to and receives from the channel using the positive id, while clients (all
+ * contexts that {@link #getChannel(int) get} the channel) use the negative one. Any number of
+ * clients can send to the same channel concurrently, so a channel can also serve as a
+ * many-to-one work queue. The capacity of the queues determines how many messages can be sent
+ * before the sender blocks, i.e., the amount of backpressure.
+ *
+ * Senders notify a shared monitor when there are contexts waiting in {@link #select}, so that
+ * waiting for messages on multiple channels does not have to poll.
  */
 public class RChannel {
 
@@ -49,7 +63,7 @@ public class RChannel {
 
     private static final int INITIAL_CHANNEL_NUM = 4;
     private static final int CHANNEL_NUM_GROW_FACTOR = 2;
-    private static final int QUEUE_CAPACITY = 1;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1;
 
     private static int[] keys = new int[INITIAL_CHANNEL_NUM];
     private static RChannel[] channels = new RChannel[INITIAL_CHANNEL_NUM];
@@ -61,13 +75,37 @@ public class RChannel {
      */
     private static final Semaphore create = new Semaphore(1, true);
 
-    private final ArrayBlockingQueue<Object> masterToClient = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
-    private final ArrayBlockingQueue<Object> clientToMaster = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    /*
+     * Used to wake up contexts waiting in select when a message is sent to any channel. The
+     * number of sent messages is used to detect messages sent between polling the channels and
+     * starting to wait.
+     */
+    private static final Object selectMonitor = new Object();
+    private static final AtomicLong sentMessages = new AtomicLong();
+    private static final AtomicInteger selectWaiters = new AtomicInteger();
+
+    private final LinkedBlockingQueue<Object> masterToClient;
+    private final LinkedBlockingQueue<Object> clientToMaster;
+
+    private RChannel(int capacity) {
+        masterToClient = new LinkedBlockingQueue<>(capacity);
+        clientToMaster = new LinkedBlockingQueue<>(capacity);
+    }
 
     public static int createChannel(int key) {
+        return createChannel(key, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates a channel whose queues hold up to {@code capacity} messages in each direction.
+     */
+    public static int createChannel(int key, int capacity) {
         if (key <= 0) {
             throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "channel's key must be positive");
         }
+        if (capacity <= 0) {
+            throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "channel's capacity must be positive");
+        }
         try {
             create.acquire();
             while (true) {
@@ -85,7 +123,7 @@ public class RChannel {
                 }
                 if (freeSlot != -1) {
                     keys[freeSlot] = key;
-                    channels[freeSlot] = new RChannel();
+                    channels[freeSlot] = new RChannel(capacity);
                     return freeSlot;
                 } else {
                     int[] keysTmp = new int[keys.length * CHANNEL_NUM_GROW_FACTOR];
@@ -316,6 +354,12 @@ public class RChannel {
         } catch (InterruptedException x) {
             throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "error sending through the channel");
         }
+        sentMessages.incrementAndGet();
+        if (selectWaiters.get() > 0) {
+            synchronized (selectMonitor) {
+                selectMonitor.notifyAll();
+            }
+        }
     }
 
     private static Object unserializeObject(Object el) throws IOException {
@@ -393,6 +437,20 @@ public class RChannel {
         }
     }
 
+    /**
+     * Receives a message from the channel, waiting at most {@code timeout} seconds for it to
+     * arrive. Returns {@code null} if there is no message.
+     */
+    public static Object receive(int id, double timeout) {
+        RChannel channel = getChannelFromId(id);
+        try {
+            Object msg = (id < 0 ? channel.masterToClient : channel.clientToMaster).poll(toNanos(timeout), TimeUnit.NANOSECONDS);
+            return msg == null ? null : processedReceivedMessage(msg);
+        } catch (InterruptedException x) {
+            throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "error receiving from the channel");
+        }
+    }
+
     public static Object poll(int id) {
         RChannel channel = getChannelFromId(id);
         Object msg = (id < 0 ? channel.masterToClient : channel.clientToMaster).poll();
@@ -401,4 +459,47 @@ public class RChannel {
         }
         return null;
     }
+
+    /**
+     * Waits at most {@code timeout} seconds for a message on any of the channels {@code ids}, which
+     * are checked in order. Returns a list of the id of the channel and the message, or
+     * {@code null} if no message arrived in time.
+     */
+    public static RList select(int[] ids, double timeout) {
+        RChannel[] selected = new RChannel[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            selected[i] = getChannelFromId(ids[i]);
+        }
+        long deadline = System.nanoTime() + toNanos(timeout);
+        selectWaiters.incrementAndGet();
+        try {
+            while (true) {
+                long sent = sentMessages.get();
+                for (int i = 0; i < ids.length; i++) {
+                    Object msg = (ids[i] < 0 ? selected[i].masterToClient : selected[i].clientToMaster).poll();
+                    if (msg != null) {
+                        return RDataFactory.createList(new Object[]{ids[i], processedReceivedMessage(msg)});
+                    }
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                synchronized (selectMonitor) {
+                    if (sentMessages.get() == sent) {
+                        TimeUnit.NANOSECONDS.timedWait(selectMonitor, remaining);
+                    }
+                }
+            }
+        } catch (InterruptedException x) {
+            throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "error receiving from the channel");
+        } finally {
+            selectWaiters.decrementAndGet();
+        }
+    }
+
+    private static long toNanos(double timeout) {
+        // avoid overflowing the deadline
+        return timeout >= Long.MAX_VALUE / 2 / 1e9 ? Long.MAX_VALUE / 2 : (long) (timeout * 1e9);
+    }
 }
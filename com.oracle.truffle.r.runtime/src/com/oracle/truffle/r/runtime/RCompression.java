@@ -22,17 +22,31 @@
  */
 package com.oracle.truffle.r.runtime;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.lang.ProcessBuilder.Redirect;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.tukaani.xz.FinishableWrapperOutputStream;
+import org.tukaani.xz.LZMA2InputStream;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.UnsupportedOptionsException;
+import org.tukaani.xz.XZInputStream;
+import org.tukaani.xz.XZOutputStream;
 
 import com.oracle.truffle.r.runtime.conn.GZIPConnections.GZIPRConnection;
 import com.oracle.truffle.r.runtime.ffi.RFFIFactory;
 
 /**
- * Abstracts the implementation of the various forms of compression used in R. Since the C API for
- * LZMA is very complex (as used by GnuR), we use an 'xz' subprocess to do the work.
+ * Abstracts the implementation of the various forms of compression used in R. {@code gzip} uses
+ * zlib through the FFI, {@code bzip2} and {@code xz/lzma} are implemented in Java by the Apache
+ * Commons Compress and XZ for Java libraries, respectively, so that no external processes are
+ * needed.
  */
 public class RCompression {
     public enum Type {
@@ -64,21 +78,28 @@ public class RCompression {
                 return RCompression.Type.BZIP2;
             } else if (buf[0] == (byte) 0xFD && buf[1] == '7' && buf[2] == 'z' && buf[3] == 'X' && buf[4] == 'Z') {
                 return RCompression.Type.LZMA;
+            } else if (buf[0] == (byte) GZIPInputStream.GZIP_MAGIC && buf[1] == (byte) (GZIPInputStream.GZIP_MAGIC >> 8)) {
+                return RCompression.Type.GZIP;
             } else {
                 return RCompression.Type.NONE;
             }
         }
     }
 
+    /**
+     * The {@code xz} preset used for in-memory compression (that of the {@code xz} command).
+     */
+    private static final int LZMA_PRESET = 6;
+
     public static boolean uncompress(Type type, byte[] udata, byte[] cdata) {
         switch (type) {
             case NONE:
-                System.arraycopy(cdata, 0, udata, 0, cdata.length);
+                System.arraycopy(cdata, 0, udata, 0, udata.length);
                 return true;
             case GZIP:
                 return gzipUncompress(udata, cdata);
             case BZIP2:
-                throw RInternalError.unimplemented("BZIP2 compression");
+                return bzipUncompress(udata, cdata);
             case LZMA:
                 return lzmaUncompress(udata, cdata);
             default:
@@ -87,28 +108,100 @@ public class RCompression {
         }
     }
 
-    public static boolean compress(Type type, byte[] udata, byte[] cdata) {
+    /**
+     * Compresses {@code udata} into {@code cdata}.
+     *
+     * @return the length of the compressed data, or {@code -1} if compression failed, in
+     *         particular if the result does not fit into {@code cdata}
+     */
+    public static int compress(Type type, byte[] udata, byte[] cdata) {
         switch (type) {
             case NONE:
+                if (udata.length > cdata.length) {
+                    return -1;
+                }
                 System.arraycopy(udata, 0, cdata, 0, udata.length);
-                return true;
+                return udata.length;
             case GZIP:
                 return gzipCompress(udata, cdata);
             case BZIP2:
-                throw RInternalError.unimplemented("BZIP2 compression");
+                return bzipCompress(udata, cdata);
             case LZMA:
                 return lzmaCompress(udata, cdata);
             default:
                 assert false;
-                return false;
+                return -1;
+        }
+    }
+
+    /**
+     * Returns a stream that decompresses the contents of a file in the given format, as used by
+     * {@link GZIPRConnection}. Unlike the in-memory {@link Type#LZMA} format, {@code xz} files use
+     * the {@code .xz} container format.
+     */
+    public static InputStream getDecompressingInputStream(Type type, InputStream in, int bufferSize) throws IOException {
+        switch (type) {
+            case NONE:
+                return in;
+            case GZIP:
+                return new GZIPInputStream(in, bufferSize);
+            case BZIP2:
+                return new BZip2CompressorInputStream(in, true);
+            case LZMA:
+                return new XZInputStream(in);
+            default:
+                throw RInternalError.shouldNotReachHere();
+        }
+    }
+
+    /**
+     * Returns a stream that compresses into the file format read by
+     * {@link #getDecompressingInputStream}, as used by {@code bzfile} and {@code xzfile}
+     * connections. {@code level} is the {@code compression} argument of those functions; negative
+     * values (the "extreme" {@code xz} presets) are treated like their absolute value.
+     */
+    public static OutputStream getCompressingFileOutputStream(Type type, OutputStream out, int level) throws IOException {
+        int preset = Math.min(9, Math.abs(level));
+        switch (type) {
+            case NONE:
+                return out;
+            case GZIP:
+                return new GZIPOutputStream(out);
+            case BZIP2:
+                return new BZip2CompressorOutputStream(out, Math.max(BZip2CompressorOutputStream.MIN_BLOCKSIZE, preset));
+            case LZMA:
+                return new XZOutputStream(out, new LZMA2Options(preset));
+            default:
+                throw RInternalError.shouldNotReachHere();
+        }
+    }
+
+    /**
+     * Returns a stream that compresses into the same format as {@link #compress}, i.e., a zlib
+     * stream for {@link Type#GZIP} and a raw LZMA2 stream for {@link Type#LZMA}, so that the
+     * result can be read by {@link #uncompress}. Closing the returned stream finishes the
+     * compressed data and closes {@code out}.
+     */
+    public static OutputStream getCompressingOutputStream(Type type, OutputStream out) throws IOException {
+        switch (type) {
+            case NONE:
+                return out;
+            case GZIP:
+                return new DeflaterOutputStream(out);
+            case BZIP2:
+                return new BZip2CompressorOutputStream(out, BZip2CompressorOutputStream.MAX_BLOCKSIZE);
+            case LZMA:
+                return lzmaOptions(Long.MAX_VALUE).getOutputStream(new FinishableWrapperOutputStream(out));
+            default:
+                throw RInternalError.shouldNotReachHere();
         }
     }
 
-    private static boolean gzipCompress(byte[] udata, byte[] cdata) {
+    private static int gzipCompress(byte[] udata, byte[] cdata) {
         long[] cdatalen = new long[1];
         cdatalen[0] = cdata.length;
         int rc = RFFIFactory.getRFFI().getZipRFFI().compress(cdata, cdatalen, udata);
-        return rc == 0;
+        return rc == 0 ? (int) cdatalen[0] : -1;
     }
 
     private static boolean gzipUncompress(byte[] udata, byte[] data) {
@@ -118,92 +211,102 @@ public class RCompression {
         return rc == 0;
     }
 
-    private static boolean lzmaCompress(byte[] udata, byte[] cdata) {
-        int rc;
-        ProcessBuilder pb = new ProcessBuilder("xz", "--compress", "--format=raw", "--lzma2", "--stdout");
-        pb.redirectError(Redirect.INHERIT);
-        try {
-            Process p = pb.start();
-            OutputStream os = p.getOutputStream();
-            InputStream is = p.getInputStream();
-            ProcessOutputManager.OutputThread readThread = new ProcessOutputManager.OutputThreadFixed("xz", is, cdata);
-            readThread.start();
-            os.write(udata);
-            os.close();
-            rc = p.waitFor();
-            if (rc == 0) {
-                readThread.join();
-                return true;
-            }
-        } catch (InterruptedException | IOException ex) {
-            return false;
+    private static int bzipCompress(byte[] udata, byte[] cdata) {
+        ArrayOutputStream out = new ArrayOutputStream(cdata);
+        try (OutputStream bzip = getCompressingOutputStream(Type.BZIP2, out)) {
+            bzip.write(udata);
+        } catch (IOException ex) {
+            return -1;
         }
-        return rc == 0;
-
+        return out.length;
     }
 
-    private static boolean lzmaUncompress(byte[] udata, byte[] data) {
-        int rc;
-        ProcessBuilder pb = new ProcessBuilder("xz", "--decompress", "--format=raw", "--lzma2", "--stdout");
-        pb.redirectError(Redirect.INHERIT);
-        try {
-            Process p = pb.start();
-            OutputStream os = p.getOutputStream();
-            InputStream is = p.getInputStream();
-            ProcessOutputManager.OutputThread readThread = new ProcessOutputManager.OutputThreadFixed("xz", is, udata);
-            readThread.start();
-            os.write(data);
-            os.close();
-            rc = p.waitFor();
-            if (rc == 0) {
-                readThread.join();
-                if (readThread.totalRead != udata.length) {
-                    return false;
-                }
-            }
-        } catch (InterruptedException | IOException ex) {
+    private static boolean bzipUncompress(byte[] udata, byte[] cdata) {
+        try (InputStream in = new BZip2CompressorInputStream(new ByteArrayInputStream(cdata))) {
+            return readFully(in, udata);
+        } catch (IOException ex) {
             return false;
         }
-        return rc == 0;
     }
 
     /**
-     * This is used by {@link GZIPRConnection}.
+     * Compresses into a raw LZMA2 stream (no {@code .xz} container), as GnuR does for
+     * {@code type = 'Z'}.
      */
-    public static byte[] lzmaUncompressFromFile(String path) {
-        return genericUncompressFromFile(new String[]{"xz", "--decompress", "--lzma2", "--stdout", path});
+    private static int lzmaCompress(byte[] udata, byte[] cdata) {
+        ArrayOutputStream out = new ArrayOutputStream(cdata);
+        try (OutputStream lzma = lzmaOptions(udata.length).getOutputStream(new FinishableWrapperOutputStream(out))) {
+            lzma.write(udata);
+        } catch (IOException ex) {
+            return -1;
+        }
+        return out.length;
     }
 
-    public static byte[] bzipUncompressFromFile(String path) {
-        return genericUncompressFromFile(new String[]{"bzip2", "-dc", path});
+    private static LZMA2Options lzmaOptions(long size) {
+        try {
+            LZMA2Options options = new LZMA2Options(LZMA_PRESET);
+            // a larger dictionary than the data cannot improve the compression
+            options.setDictSize((int) Math.max(LZMA2Options.DICT_SIZE_MIN, Math.min(options.getDictSize(), size)));
+            return options;
+        } catch (UnsupportedOptionsException ex) {
+            throw RInternalError.shouldNotReachHere(ex);
+        }
     }
 
-    private static byte[] genericUncompressFromFile(String[] command) {
-        int rc;
-        ProcessBuilder pb = new ProcessBuilder(command);
-        pb.redirectError(Redirect.INHERIT);
-        try {
-            Process p = pb.start();
-            InputStream is = p.getInputStream();
-            ProcessOutputManager.OutputThreadVariable readThread = new ProcessOutputManager.OutputThreadVariable(command[0], is);
-            readThread.start();
-            rc = p.waitFor();
-            if (rc == 0) {
-                readThread.join();
-                return readThread.getData();
+    private static boolean lzmaUncompress(byte[] udata, byte[] cdata) {
+        /*
+         * The raw format does not record the dictionary size of the encoder, but since matches
+         * never reach before the start of the data, a dictionary as large as the uncompressed data
+         * is sufficient. This avoids allocating the 64MB dictionary of GnuR's preset.
+         */
+        int dictSize = Math.max(LZMA2Options.DICT_SIZE_MIN, udata.length);
+        try (InputStream in = new LZMA2InputStream(new ByteArrayInputStream(cdata), dictSize)) {
+            return readFully(in, udata);
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private static boolean readFully(InputStream in, byte[] udata) throws IOException {
+        int totalRead = 0;
+        while (totalRead < udata.length) {
+            int n = in.read(udata, totalRead, udata.length - totalRead);
+            if (n < 0) {
+                return false;
             }
-        } catch (InterruptedException | IOException ex) {
-            // fall through
+            totalRead += n;
         }
-        throw RInternalError.shouldNotReachHere(join(command));
+        return true;
     }
 
-    private static String join(String[] args) {
-        StringBuilder sb = new StringBuilder();
-        for (String s : args) {
-            sb.append(s);
-            sb.append(' ');
+    /**
+     * An {@link OutputStream} writing into a fixed size array, which fails with an
+     * {@link IOException} when the array is full.
+     */
+    private static final class ArrayOutputStream extends OutputStream {
+        private final byte[] data;
+        private int length;
+
+        ArrayOutputStream(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (length == data.length) {
+                throw new IOException("compressed data exceeds buffer");
+            }
+            data[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (length + len > data.length) {
+                throw new IOException("compressed data exceeds buffer");
+            }
+            System.arraycopy(b, off, data, length, len);
+            length += len;
         }
-        return sb.toString();
     }
 }
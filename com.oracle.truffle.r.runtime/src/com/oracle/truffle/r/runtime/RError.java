@@ -372,6 +372,7 @@ public final class RError extends RuntimeException {
         ENVIR_NOT_LENGTH_ONE("numeric 'envir' arg not of length one"),
         FMT_NOT_CHARACTER("'fmt' is not a character vector"),
         UNSUPPORTED_TYPE("unsupported type"),
+        UNSUPPORTED_ENCODING_CONVERSION("unsupported conversion from '%s' to '%s'"),
         AT_MOST_ONE_ASTERISK("at most one asterisk '*' is supported in each conversion specification"),
         TOO_FEW_ARGUMENTS("too few arguments"),
         ARGUMENT_STAR_NUMBER("argument for '*' conversion specification must be a number"),
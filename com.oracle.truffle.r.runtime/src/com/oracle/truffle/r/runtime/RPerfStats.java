@@ -25,7 +25,23 @@ package com.oracle.truffle.r.runtime;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
 
 /**
  * Manage the creation/activation of handlers or performance analysis. Enabled by the
@@ -35,6 +51,11 @@ import java.util.ArrayList;
  * are enabled selectively at runtime based on the command line option. An enabled handler gets a
  * call to its {@link Handler#initialize(String)} method so that it can enable its perf-mode
  * behavior.
+ *
+ * Besides the report at exit, the values returned by {@link Handler#getMetrics()} can be observed
+ * while FastR is running, as attributes of a JMX MBean per enabled handler (option
+ * {@code PerfStatsJMX}) and as JSON lines periodically appended to a file (options
+ * {@code PerfStatsDumpFile} and {@code PerfStatsDumpInterval}).
  */
 public class RPerfStats {
 
@@ -49,6 +70,15 @@ public class RPerfStats {
         String getName();
 
         void report();
+
+        /**
+         * Returns a snapshot of the statistics collected so far, keyed by metric name. The values
+         * are {@link Number}s or, for histograms, {@code long[]}. This may be called from a thread
+         * other than the one collecting the statistics.
+         */
+        default Map<String, Object> getMetrics() {
+            return Collections.emptyMap();
+        }
     }
 
     public static class Histogram {
@@ -86,6 +116,13 @@ public class RPerfStats {
             }
         }
 
+        /**
+         * Returns a copy of the counts per bucket, the last bucket counting all larger sizes.
+         */
+        public long[] getCounts() {
+            return hist.clone();
+        }
+
         public long getTotalCount() {
             long totalCount = 0;
             for (int i = 0; i < hist.length; i++) {
@@ -143,6 +180,7 @@ public class RPerfStats {
             String optionText = getOptionText(handler.getName());
             if (optionText != null) {
                 handler.initialize(optionText);
+                registerMBean(handler);
             }
         }
     }
@@ -155,9 +193,14 @@ public class RPerfStats {
             String optionText = getOptionText(handler.getName());
             if (optionText != null) {
                 handler.initialize(optionText);
+                registerMBean(handler);
             }
         }
         initialized = true;
+        String dumpFile = FastROptions.PerfStatsDumpFile.getStringValue();
+        if (dumpFile != null && dumper == null) {
+            startDumper(dumpFile, FastROptions.PerfStatsDumpInterval.getNonNegativeIntValue());
+        }
     }
 
     private static String getOptionText(String name) {
@@ -178,6 +221,158 @@ public class RPerfStats {
         return getPerfStatsOption(name) != null;
     }
 
+    // Live export
+
+    private static final String MBEAN_DOMAIN = "com.oracle.truffle.r";
+
+    private static void registerMBean(Handler handler) {
+        if (!FastROptions.PerfStatsJMX.getBooleanValue()) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(MBEAN_DOMAIN + ":type=PerfStats,name=" + ObjectName.quote(handler.getName()));
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new HandlerMBean(handler), name);
+            }
+        } catch (JMException ex) {
+            Utils.warn("PerfStats: can't register MBean for " + handler.getName() + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Exposes the {@link Handler#getMetrics() metrics} of a handler as read-only attributes. The
+     * set of attributes grows as the handler encounters new kinds of events.
+     */
+    private static final class HandlerMBean implements DynamicMBean {
+        private final Handler handler;
+
+        HandlerMBean(Handler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object value = handler.getMetrics().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Object> metrics = handler.getMetrics();
+            AttributeList result = new AttributeList();
+            for (String attribute : attributes) {
+                Object value = metrics.get(attribute);
+                if (value != null) {
+                    result.add(new Attribute(attribute, value));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            Map<String, Object> metrics = handler.getMetrics();
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[metrics.size()];
+            int i = 0;
+            for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+                attributes[i++] = new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(), entry.getKey(), true, false, false);
+            }
+            return new MBeanInfo(HandlerMBean.class.getName(), "FastR PerfStats handler " + handler.getName(), attributes, null, null, null);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+    }
+
+    private static ScheduledExecutorService dumper;
+    private static PrintStream dumpOut;
+
+    private static void startDumper(String file, int intervalSeconds) {
+        try {
+            dumpOut = new PrintStream(new FileOutputStream(file, true));
+        } catch (IOException ex) {
+            System.err.println("PerfStats: can't open " + file + " for dumping");
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "FastR PerfStats dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, intervalSeconds);
+        dumper.scheduleAtFixedRate(RPerfStats::dump, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes the metrics of all enabled handlers as one line of JSON, e.g.
+     * <code>{"time":1475000000000,"vectorcopies":{"count":42}}</code>.
+     */
+    private static synchronized void dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"time\":").append(System.currentTimeMillis());
+        for (Handler handler : handlers.toArray(new Handler[0])) {
+            if (enabled(handler.getName())) {
+                sb.append(',');
+                appendJsonString(sb, handler.getName());
+                sb.append(":{");
+                boolean first = true;
+                for (Map.Entry<String, Object> entry : handler.getMetrics().entrySet()) {
+                    if (!first) {
+                        sb.append(',');
+                    }
+                    first = false;
+                    appendJsonString(sb, entry.getKey());
+                    sb.append(':');
+                    Object value = entry.getValue();
+                    if (value instanceof long[]) {
+                        long[] values = (long[]) value;
+                        sb.append('[');
+                        for (int i = 0; i < values.length; i++) {
+                            sb.append(i == 0 ? "" : ",").append(values[i]);
+                        }
+                        sb.append(']');
+                    } else {
+                        sb.append(value);
+                    }
+                }
+                sb.append('}');
+            }
+        }
+        sb.append('}');
+        dumpOut.println(sb);
+        dumpOut.flush();
+    }
+
+    static void appendJsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
     private static boolean reporting;
 
     /**
@@ -189,12 +384,16 @@ public class RPerfStats {
             return;
         }
         reporting = true;
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dump();
+        }
         String file = FastROptions.PerfStatsFile.getStringValue();
         if (file != null) {
             try {
                 out = new PrintStream(new FileOutputStream(file));
             } catch (IOException ex) {
-                System.err.print("PerfStats: can't open " + file + " for output, using stdout");
+                System.err.println("PerfStats: can't open " + file + " for output, using stdout");
             }
         }
         boolean headerOutput = false;
@@ -11,9 +11,6 @@
  */
 package com.oracle.truffle.r.runtime;
 
-import java.text.DecimalFormat;
-import java.util.Locale;
-
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.Truffle;
@@ -338,15 +335,11 @@ public class RRuntime {
 
     @TruffleBoundary
     public static int string2intNoCheck(String s, boolean exceptionOnFail) {
-        // FIXME use R rules
-        try {
-            return Integer.decode(s);  // decode supports hex constants
-        } catch (NumberFormatException e) {
-            if (exceptionOnFail) {
-                throw e;
-            }
+        int result = NumberParser.coerceInt(s);
+        if (exceptionOnFail && isNA(result)) {
+            throw new NumberFormatException("For input string: \"" + s + "\"");
         }
-        return INT_NA;
+        return result;
     }
 
     @TruffleBoundary
@@ -361,28 +354,11 @@ public class RRuntime {
 
     @TruffleBoundary
     public static double string2doubleNoCheck(String v, boolean exceptionOnFail) {
-        // FIXME use R rules
-        if ("Inf".equals(v)) {
-            return Double.POSITIVE_INFINITY;
-        } else if ("NaN".equals(v)) {
-            return Double.NaN;
-        } else if ("NA_real_".equals(v)) {
-            return DOUBLE_NA;
-        }
-        try {
-            return Double.parseDouble(v);
-        } catch (NumberFormatException e) {
-            if (v.startsWith("0x")) {
-                try {
-                    return int2double(Integer.decode(v));
-                } catch (NumberFormatException ein) {
-                }
-            }
-            if (exceptionOnFail) {
-                throw e;
-            }
+        double result = NumberParser.parseDouble(v);
+        if (exceptionOnFail && isNA(result) && !"NA".equals(v.trim())) {
+            throw new NumberFormatException("For input string: \"" + v + "\"");
         }
-        return DOUBLE_NA;
+        return result;
     }
 
     @TruffleBoundary
@@ -564,31 +540,27 @@ public class RRuntime {
             return STRING_NaN;
         }
 
-        /*
-         * DecimalFormat format = new DecimalFormat(); format.setMaximumIntegerDigits(12);
-         * format.setMaximumFractionDigits(12); format.setGroupingUsed(false); return
-         * format.format(operand);
-         */
         if (operand < 1000000000000L && ((long) operand) == operand) {
             return Long.toString((long) operand);
         }
-        if (operand > 1000000000000L) {
-            return String.format((Locale) null, "%.6e", operand);
-        }
-        // if (true || operand < 0.0001) {
-        // // not quite correct but better than nothing for now...
-        // return String.format((Locale) null, "%.22e", new BigDecimal(operand));
-        // }
+        StringBuilder sb = new StringBuilder(24);
         if (digitsBehindDot == -1) {
-            return Double.toString(operand);
+            DoubleFormatter.append(sb, operand, DoubleFormatter.DBL_DIG);
         } else {
-            StringBuilder sb = new StringBuilder("#.");
-            for (int i = 0; i < digitsBehindDot; i++) {
-                sb.append('#');
+            // at most digitsBehindDot digits, without trailing zeros
+            DoubleFormatter.appendFixed(sb, operand, digitsBehindDot);
+            if (digitsBehindDot > 0) {
+                int end = sb.length();
+                while (sb.charAt(end - 1) == '0') {
+                    end--;
+                }
+                if (sb.charAt(end - 1) == '.') {
+                    end--;
+                }
+                sb.setLength(end);
             }
-            DecimalFormat df = new DecimalFormat(sb.toString());
-            return df.format(operand);
         }
+        return sb.toString();
     }
 
     public static String doubleToStringNoCheck(double operand) {
@@ -2188,22 +2188,28 @@ public class RSerialize {
         }
     }
 
-    /**
-     * For {@code lazyLoadDBinsertValue}.
-     */
     @TruffleBoundary
     public static byte[] serialize(Object obj, int type, int version, Object refhook) {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         try {
-            Output output = new Output(out, type, version, (CallHook) refhook);
-            State state = new PLState(output);
-            output.serialize(state, obj);
+            serialize(out, obj, type, version, refhook);
             return out.toByteArray();
         } catch (IOException ex) {
             throw RInternalError.shouldNotReachHere();
         }
     }
 
+    /**
+     * For {@code lazyLoadDBinsertValue}, which serializes directly into a compressing stream. The
+     * stream is flushed, but not closed.
+     */
+    @TruffleBoundary
+    public static void serialize(OutputStream os, Object obj, int type, int version, Object refhook) throws IOException {
+        Output output = new Output(os, type, version, (CallHook) refhook);
+        State state = new PLState(output);
+        output.serialize(state, obj);
+    }
+
     @TruffleBoundary
     public static void serialize(RConnection conn, Object obj, int type, int version, Object refhook) throws IOException {
         Output output = new Output(conn, type, version, (CallHook) refhook);
@@ -61,6 +61,7 @@ public class RSource {
         EVAL_WRAPPER("<eval wrapper>"),
         NO_SOURCE("<no source>"),
         CONTEXT_EVAL("<context_eval>"),
+        CONTEXT_RESET("<context_reset>"),
         RF_FINDFUN("<Rf_findfun>"),
         BROWSER_INPUT("<browser_input>"),
         CLEAR_WARNINGS("<clear_warnings>"),
@@ -73,6 +74,7 @@ public class RSource {
         PACKAGE("<package:%s deparse>"),
         DEPARSE_ERROR("<package_deparse_error>"),
         LAPPLY("<lapply>"),
+        BASE_SNAPSHOT("<base snapshot>"),
         R_PARSEVECTOR("<R_ParseVector>"),
         PAIRLIST_DEPARSE("<pairlist deparse>");
 
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Locale;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * An opt-in tracer of the work done during startup, enabled with option
+ * {@link FastROptions#TraceStartup}. It records the wall-clock time and the bytes allocated by the
+ * current thread for each {@link Span}, and appends one line of JSON per span to the file given by
+ * the option, e.g.
+ *
+ * <pre>
+ * {"kind":"namespace","name":"stats","thread":"main","depth":1,"start":812.42,"ms":153.21,"bytes":48213344}
+ * </pre>
+ *
+ * {@code start} is the time in milliseconds since the tracer was initialized and {@code depth} is
+ * the number of enclosing spans on the same thread. A span is written when it ends, so nested spans
+ * precede their parent. {@code bytes} is {@code -1} if the VM does not report allocations.
+ */
+public final class StartupTracer {
+
+    public enum Kind {
+        /**
+         * A phase of the context startup.
+         */
+        PHASE("phase"),
+        /**
+         * A {@code loadNamespace} call.
+         */
+        NAMESPACE("namespace"),
+        /**
+         * A {@code lazyLoadDBfetch} call, named {@code package::variable}.
+         */
+        LAZYLOAD("lazyload"),
+        /**
+         * Loading and initializing the DLL of a package.
+         */
+        DLL("dll");
+
+        private final String name;
+
+        Kind(String name) {
+            this.name = name;
+        }
+    }
+
+    public static final class Span {
+        private final Kind kind;
+        private final String name;
+        private final int depth;
+        private final long startNanos;
+        private final long startBytes;
+
+        private Span(Kind kind, String name, int depth) {
+            this.kind = kind;
+            this.name = name;
+            this.depth = depth;
+            this.startBytes = allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+    }
+
+    private static final PrintStream out = open(FastROptions.TraceStartup.getStringValue());
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean() instanceof ThreadMXBean ? (ThreadMXBean) ManagementFactory.getThreadMXBean() : null;
+    private static final long origin = System.nanoTime();
+    private static final ThreadLocal<ArrayDeque<Span>> openSpans = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private StartupTracer() {
+        // only static methods
+    }
+
+    private static PrintStream open(String file) {
+        if (file == null || file.isEmpty()) {
+            return null;
+        }
+        try {
+            return new PrintStream(new FileOutputStream(file, true), false);
+        } catch (IOException ex) {
+            System.err.println("TraceStartup: can't open " + file);
+            return null;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return out != null;
+    }
+
+    /**
+     * Starts a span on the current thread, returns {@code null} if tracing is not enabled.
+     */
+    public static Span begin(Kind kind, String name) {
+        if (out == null) {
+            return null;
+        }
+        ArrayDeque<Span> spans = openSpans.get();
+        Span span = new Span(kind, name, spans.size());
+        spans.push(span);
+        return span;
+    }
+
+    /**
+     * Ends {@code span}, and any span started within it that was not ended, and writes it. Does
+     * nothing if {@code span} is {@code null}.
+     */
+    public static void end(Span span) {
+        if (span == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - span.startNanos;
+        long bytes = threadBean == null ? -1 : allocatedBytes() - span.startBytes;
+        ArrayDeque<Span> spans = openSpans.get();
+        if (spans.contains(span)) {
+            while (spans.pop() != span) {
+                // discard the spans that were not ended
+            }
+        }
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"kind\":\"").append(span.kind.name).append("\",\"name\":");
+        RPerfStats.appendJsonString(sb, span.name);
+        sb.append(",\"thread\":");
+        RPerfStats.appendJsonString(sb, Thread.currentThread().getName());
+        sb.append(",\"depth\":").append(span.depth);
+        sb.append(",\"start\":").append(String.format(Locale.ROOT, "%.2f", (span.startNanos - origin) / 1e6));
+        sb.append(",\"ms\":").append(String.format(Locale.ROOT, "%.2f", nanos / 1e6));
+        sb.append(",\"bytes\":").append(bytes).append('}');
+        synchronized (out) {
+            out.println(sb);
+            out.flush();
+        }
+    }
+
+    /**
+     * Ends the innermost open span of {@code kind} on the current thread, for spans that are
+     * started and ended in different places.
+     */
+    public static void end(Kind kind) {
+        if (out == null) {
+            return;
+        }
+        for (Iterator<Span> iter = openSpans.get().iterator(); iter.hasNext();) {
+            Span span = iter.next();
+            if (span.kind == kind) {
+                end(span);
+                return;
+            }
+        }
+    }
+
+    private static long allocatedBytes() {
+        return threadBean == null ? 0 : threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.conn;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * An {@link InputStream} with a large internal buffer that can split its input into lines by
+ * scanning the buffer in bulk, rather than fetching one byte at a time. Since the same stream
+ * serves the byte-oriented operations on a connection ({@code getc}, {@code readChar} etc.), text
+ * and binary operations can still be freely mixed.
+ *
+ * The input is either a {@link FileChannel}, read directly into the buffer, or an arbitrary
+ * {@link InputStream}, e.g. a {@link java.util.zip.GZIPInputStream}.
+ *
+ * Splitting the bytes at {@code LF} and {@code CR} is only valid for charsets that encode these
+ * characters as single bytes that do not occur within other characters. Lines in other charsets,
+ * e.g. UTF-16, are read through a {@link BufferedReader} on this stream, which reads ahead, so
+ * binary reads after such a {@code readLines} do not continue right after the last line.
+ */
+final class BufferedLineInputStream extends InputStream {
+    static final int BUFFER_SIZE = 256 * 1024;
+
+    private final FileChannel channel;
+    private final InputStream in;
+    private final byte[] buffer;
+    private final ByteBuffer channelBuffer;
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    /**
+     * Holds the part of a line that spans buffer refills, or that had {@code NUL}s removed.
+     */
+    private byte[] lineBuffer = new byte[256];
+    private boolean incompleteLine;
+
+    private BufferedReader reader;
+    private Charset readerCharset;
+
+    BufferedLineInputStream(FileChannel channel) {
+        this.channel = channel;
+        this.in = null;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.channelBuffer = ByteBuffer.wrap(buffer);
+    }
+
+    BufferedLineInputStream(InputStream in) {
+        this.channel = null;
+        this.in = in;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.channelBuffer = null;
+    }
+
+    /**
+     * Refills the (fully consumed) buffer. Returns {@code false} at the end of the input.
+     */
+    private boolean fill() throws IOException {
+        assert pos == limit;
+        pos = 0;
+        limit = 0;
+        if (eof) {
+            return false;
+        }
+        int n;
+        if (channel != null) {
+            channelBuffer.clear();
+            n = channel.read(channelBuffer);
+        } else {
+            n = in.read(buffer, 0, buffer.length);
+        }
+        if (n <= 0) {
+            // a blocking source only returns 0 for a zero-length request
+            eof = true;
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    /**
+     * Reads the next line, decoding it with {@code charset}. The line terminator ({@code LF},
+     * {@code CR} or {@code CRLF}) is not included. Returns {@code null} at the end of the input;
+     * a final line without terminator is returned and recorded, see {@link #isIncompleteLine()}.
+     */
+    String readLine(Charset charset, boolean skipNul) throws IOException {
+        incompleteLine = false;
+        if (!splitsBytes(charset)) {
+            return readDecodedLine(charset);
+        }
+        int lineLength = 0;
+        while (true) {
+            if (pos == limit && !fill()) {
+                if (lineLength > 0) {
+                    incompleteLine = true;
+                    return new String(lineBuffer, 0, lineLength, charset);
+                }
+                return null;
+            }
+            int start = pos;
+            int end = start;
+            while (end < limit && buffer[end] != '\n' && buffer[end] != '\r') {
+                end++;
+            }
+            if (end < limit && lineLength == 0 && !(skipNul && containsNul(start, end))) {
+                // common case: the complete line is in the buffer
+                pos = end;
+                String result = new String(buffer, start, end - start, charset);
+                skipTerminator();
+                return result;
+            }
+            lineLength = appendToLine(lineLength, start, end, skipNul);
+            pos = end;
+            if (end < limit) {
+                skipTerminator();
+                return new String(lineBuffer, 0, lineLength, charset);
+            }
+        }
+    }
+
+    private static boolean splitsBytes(Charset charset) {
+        return charset.canEncode() && Arrays.equals("\r\n".getBytes(charset), new byte[]{'\r', '\n'});
+    }
+
+    private String readDecodedLine(Charset charset) throws IOException {
+        if (reader == null || !charset.equals(readerCharset)) {
+            reader = new BufferedReader(new InputStreamReader(this, charset));
+            readerCharset = charset;
+        }
+        return reader.readLine();
+    }
+
+    /**
+     * Skips a UTF-8 byte order mark at the start of the input; must be called before anything is
+     * read.
+     */
+    void skipUTF8BOM() throws IOException {
+        if ((pos < limit || fill()) && limit - pos >= 3 && buffer[pos] == (byte) 0xEF && buffer[pos + 1] == (byte) 0xBB && buffer[pos + 2] == (byte) 0xBF) {
+            pos += 3;
+        }
+    }
+
+    /**
+     * Whether the last line returned by {@link #readLine} was not terminated.
+     */
+    boolean isIncompleteLine() {
+        return incompleteLine;
+    }
+
+    private boolean containsNul(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int appendToLine(int lineLength, int start, int end, boolean skipNul) {
+        int length = lineLength;
+        if (lineBuffer.length < length + (end - start)) {
+            lineBuffer = Arrays.copyOf(lineBuffer, Math.max(lineBuffer.length * 2, length + (end - start)));
+        }
+        if (skipNul) {
+            for (int i = start; i < end; i++) {
+                if (buffer[i] != 0) {
+                    lineBuffer[length++] = buffer[i];
+                }
+            }
+        } else {
+            System.arraycopy(buffer, start, lineBuffer, length, end - start);
+            length += end - start;
+        }
+        return length;
+    }
+
+    /**
+     * Consumes the terminator at {@link #pos}, treating {@code CRLF} as a single terminator even
+     * if it spans a refill.
+     */
+    private void skipTerminator() throws IOException {
+        byte terminator = buffer[pos++];
+        if (terminator == '\r' && (pos < limit || fill()) && buffer[pos] == '\n') {
+            pos++;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos == limit) {
+            if (len >= buffer.length && channel == null && !eof) {
+                // large reads bypass the buffer
+                int n = in.read(b, off, len);
+                if (n < 0) {
+                    eof = true;
+                }
+                return n;
+            }
+            if (!fill()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(buffer, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        if (pos == limit && !fill()) {
+            return 0;
+        }
+        int skipped = (int) Math.min(n, limit - pos);
+        pos += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        int buffered = limit - pos;
+        if (buffered > 0 || eof) {
+            return buffered;
+        }
+        return channel != null ? (int) Math.min(Integer.MAX_VALUE, channel.size() - channel.position()) : in.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        } else {
+            in.close();
+        }
+    }
+}
@@ -30,6 +30,8 @@ import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
 import java.util.ArrayList;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
@@ -306,6 +308,8 @@ public class ConnectionSupport {
         Terminal("terminal"),
         File("file"),
         GZFile("gzfile"),
+        BZFile("bzfile"),
+        XZFile("xzfile"),
         Socket("sockconn"),
         Text("textConnection"),
         URL("url"),
@@ -521,6 +525,18 @@ public class ConnectionSupport {
          */
         private int descriptor;
 
+        /**
+         * The encoding declared when the connection was created, used to decode the text read from
+         * it.
+         */
+        private Charset encoding = Charset.defaultCharset();
+
+        /**
+         * Whether a UTF-8 byte order mark at the start of the input is skipped, i.e., the encoding
+         * was declared as {@code "UTF-8-BOM"}.
+         */
+        private boolean skipBOM;
+
         /**
          * The constructor for every connection class except {@link StdConnections}.
          *
@@ -557,6 +573,43 @@ public class ConnectionSupport {
             getAttributes().put("conn_id", RDataFactory.createExternalPtr(0, RDataFactory.createSymbol("connection")));
         }
 
+        /**
+         * Returns the charset for the {@code encoding} argument of the builtin that creates a
+         * connection. {@code null}, {@code ""} and {@code "native.enc"} denote the default
+         * encoding. This must be called before the connection is constructed, so that an
+         * unsupported encoding does not leave an entry in the connection table.
+         */
+        public static Charset lookupEncoding(String encodingName) {
+            if (encodingName == null || encodingName.isEmpty() || encodingName.equals("native.enc")) {
+                return Charset.defaultCharset();
+            }
+            String name = encodingName.equals("latin1") ? "ISO-8859-1" : encodingName.equals("UTF-8-BOM") ? "UTF-8" : encodingName;
+            try {
+                if (Charset.isSupported(name)) {
+                    return Charset.forName(name);
+                }
+            } catch (IllegalCharsetNameException ex) {
+                // fall through
+            }
+            throw RError.error(RError.SHOW_CALLER2, RError.Message.UNSUPPORTED_ENCODING_CONVERSION, encodingName, Charset.defaultCharset().name());
+        }
+
+        /**
+         * Sets the declared encoding of the connection, see {@link #lookupEncoding(String)}.
+         */
+        protected void setEncoding(String encodingName, Charset charset) {
+            this.encoding = charset;
+            this.skipBOM = "UTF-8-BOM".equals(encodingName);
+        }
+
+        public Charset getEncoding() {
+            return encoding;
+        }
+
+        public boolean skipsBOM() {
+            return skipBOM;
+        }
+
         protected void openNonLazyConnection() throws IOException {
             if (openMode.abstractOpenMode != AbstractOpenMode.Lazy) {
                 createDelegateConnection();
@@ -803,6 +856,16 @@ public class ConnectionSupport {
          * @param skipNul TODO
          */
         default String[] readLinesHelper(InputStream in, int n, boolean warn, boolean skipNul) throws IOException {
+            return readLinesHelper(in, n, warn, skipNul, Charset.defaultCharset());
+        }
+
+        /**
+         * {@code readLines} from an {@link InputStream}, decoding the lines using {@code charset}.
+         */
+        default String[] readLinesHelper(InputStream in, int n, boolean warn, boolean skipNul, Charset charset) throws IOException {
+            if (in instanceof BufferedLineInputStream) {
+                return readBufferedLines((BufferedLineInputStream) in, n, warn, skipNul, charset);
+            }
             ArrayList<String> lines = new ArrayList<>();
             int totalRead = 0;
             byte[] buffer = new byte[64];
@@ -824,7 +887,7 @@ public class ConnectionSupport {
                          * the data. Some refactoring is needed to be able to reliably access the
                          * "name" for the warning.
                          */
-                        lines.add(new String(buffer, 0, totalRead));
+                        lines.add(new String(buffer, 0, totalRead, charset));
                         if (warn) {
                             RError.warning(RError.SHOW_CALLER2, RError.Message.INCOMPLETE_FINAL_LINE, "TODO: connection path");
                         }
@@ -843,7 +906,7 @@ public class ConnectionSupport {
                     }
                 }
                 if (lineEnd) {
-                    lines.add(new String(buffer, 0, totalRead));
+                    lines.add(new String(buffer, 0, totalRead, charset));
                     if (n > 0 && lines.size() == n) {
                         break;
                     }
@@ -858,6 +921,27 @@ public class ConnectionSupport {
             return result;
         }
 
+        /**
+         * {@code readLines} from a {@link BufferedLineInputStream}, which splits lines in bulk and
+         * decodes them using {@code charset}.
+         */
+        default String[] readBufferedLines(BufferedLineInputStream in, int n, boolean warn, boolean skipNul, Charset charset) throws IOException {
+            ArrayList<String> lines = new ArrayList<>();
+            while (n <= 0 || lines.size() < n) {
+                String line = in.readLine(charset, skipNul);
+                if (line == null) {
+                    break;
+                }
+                lines.add(line);
+                if (in.isIncompleteLine() && warn) {
+                    RError.warning(RError.SHOW_CALLER2, RError.Message.INCOMPLETE_FINAL_LINE, "TODO: connection path");
+                }
+            }
+            String[] result = new String[lines.size()];
+            lines.toArray(result);
+            return result;
+        }
+
         default void writeLinesHelper(OutputStream out, RAbstractStringVector lines, String sep) throws IOException {
             for (int i = 0; i < lines.getLength(); i++) {
                 out.write(lines.getDataAt(i).getBytes());
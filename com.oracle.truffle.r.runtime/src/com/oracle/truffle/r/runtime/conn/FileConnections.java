@@ -22,7 +22,6 @@
  */
 package com.oracle.truffle.r.runtime.conn;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -31,9 +30,16 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.zip.GZIPInputStream;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.r.runtime.FastROptions;
 import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.TempPathName;
@@ -55,7 +61,17 @@ public class FileConnections {
     public static class FileRConnection extends BasePathRConnection {
 
         public FileRConnection(String path, String modeString) throws IOException {
+            this(path, modeString, null, Charset.defaultCharset());
+        }
+
+        /**
+         * Creates the connection, {@code charset} is the result of
+         * {@link ConnectionSupport.BaseRConnection#lookupEncoding(String)
+         * lookupEncoding(encoding)}.
+         */
+        public FileRConnection(String path, String modeString, String encoding, Charset charset) throws IOException {
             super(checkTemp(path), ConnectionClass.File, modeString);
+            setEncoding(encoding, charset);
             openNonLazyConnection();
         }
 
@@ -81,7 +97,11 @@ public class FileConnections {
                     delegate = new FileWriteTextRConnection(this, true);
                     break;
                 case ReadBinary:
-                    delegate = new FileReadBinaryRConnection(this);
+                    if (FastROptions.MMapFileConnections.getBooleanValue()) {
+                        delegate = new FileReadMappedRConnection(this);
+                    } else {
+                        delegate = new FileReadBinaryRConnection(this);
+                    }
                     break;
                 case WriteBinary:
                     delegate = new FileWriteBinaryConnection(this, false);
@@ -98,28 +118,23 @@ public class FileConnections {
     }
 
     static class FileReadTextRConnection extends DelegateReadRConnection implements ReadWriteHelper {
-        private InputStream inputStream;
+        private BufferedLineInputStream inputStream;
 
         FileReadTextRConnection(BasePathRConnection base) throws IOException {
             super(base);
-            inputStream = new BufferedInputStream(new FileInputStream(base.path));
             // can be compressed - check for it
-            inputStream.mark(2);
-            int byte1 = inputStream.read();
-            if (byte1 == -1) {
-                inputStream.reset();
+            FileInputStream fileInputStream = new FileInputStream(base.path);
+            byte[] magic = new byte[2];
+            if (fileInputStream.read(magic) == 2 && magic[0] == (byte) GZIPInputStream.GZIP_MAGIC && magic[1] == (byte) (GZIPInputStream.GZIP_MAGIC >> 8)) {
+                fileInputStream.close();
+                inputStream = new BufferedLineInputStream(new GZIPInputStream(new FileInputStream(base.path), GZIPConnections.GZIP_BUFFER_SIZE));
             } else {
-                int byte2 = inputStream.read();
-                if (byte2 == -1) {
-                    inputStream.reset();
-                } else {
-                    if (byte1 == (GZIPInputStream.GZIP_MAGIC & 0x000000FF) && byte2 == (GZIPInputStream.GZIP_MAGIC >> 8)) {
-                        inputStream.close();
-                        inputStream = new GZIPInputStream(new FileInputStream(base.path), GZIPConnections.GZIP_BUFFER_SIZE);
-                    } else {
-                        inputStream.reset();
-                    }
-                }
+                FileChannel channel = fileInputStream.getChannel();
+                channel.position(0);
+                inputStream = new BufferedLineInputStream(channel);
+            }
+            if (base.skipsBOM()) {
+                inputStream.skipUTF8BOM();
             }
         }
 
@@ -136,7 +151,7 @@ public class FileConnections {
         @TruffleBoundary
         @Override
         public String[] readLinesInternal(int n, boolean warn, boolean skipNul) throws IOException {
-            return readLinesHelper(inputStream, n, warn, skipNul);
+            return readLinesHelper(inputStream, n, warn, skipNul, base.getEncoding());
         }
 
         @Override
@@ -246,6 +261,37 @@ public class FileConnections {
             return inputStream;
         }
 
+        @Override
+        public boolean isSeekable() {
+            return true;
+        }
+
+        @Override
+        public long seek(long offset, SeekMode seekMode, SeekRWMode seekRWMode) throws IOException {
+            // the stream is not buffered, so the channel position is the read position
+            FileChannel channel = inputStream.getChannel();
+            long result = channel.position();
+            long newPosition;
+            switch (seekMode) {
+                case START:
+                    newPosition = offset;
+                    break;
+                case CURRENT:
+                    newPosition = result + offset;
+                    break;
+                case END:
+                    newPosition = channel.size() + offset;
+                    break;
+                default:
+                    throw RInternalError.shouldNotReachHere();
+            }
+            if (newPosition < 0) {
+                throw new IOException("invalid seek position");
+            }
+            channel.position(newPosition);
+            return result;
+        }
+
         @Override
         public void closeAndDestroy() throws IOException {
             base.closed = true;
@@ -258,6 +304,166 @@ public class FileConnections {
         }
     }
 
+    /**
+     * A binary read connection that memory-maps the file, so that {@code readBin} is a bulk copy
+     * out of the mapping and {@code seek} just moves the position. Files larger than
+     * {@link #REGION_SIZE} are mapped as a sequence of regions. Closing the connection drops the
+     * references to the regions, so that the mapping can be released by the next collection.
+     */
+    private static class FileReadMappedRConnection extends DelegateReadRConnection implements ReadWriteHelper {
+        private static final long REGION_SIZE = 1 << 30;
+
+        private MappedByteBuffer[] regions;
+        private final long size;
+        private long position;
+        private final MappedInputStream inputStream = new MappedInputStream();
+
+        /**
+         * Allows the mapping to appear to be an {@link InputStream}, for the operations that are
+         * not implemented directly on the mapping.
+         */
+        private class MappedInputStream extends InputStream {
+            @Override
+            public int read() throws IOException {
+                if (position >= size) {
+                    return -1;
+                }
+                int value = getRegions()[(int) (position / REGION_SIZE)].get((int) (position % REGION_SIZE)) & 0xFF;
+                position++;
+                return value;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                if (position >= size) {
+                    return -1;
+                }
+                return copy(ByteBuffer.wrap(b, off, len));
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = Math.max(0, Math.min(n, size - position));
+                position += skipped;
+                return skipped;
+            }
+
+            @Override
+            public int available() throws IOException {
+                return (int) Math.min(Integer.MAX_VALUE, size - position);
+            }
+        }
+
+        FileReadMappedRConnection(FileRConnection base) throws IOException {
+            super(base);
+            try (FileChannel channel = FileChannel.open(Paths.get(base.path), StandardOpenOption.READ)) {
+                size = channel.size();
+                regions = new MappedByteBuffer[(int) ((size + REGION_SIZE - 1) / REGION_SIZE)];
+                for (int i = 0; i < regions.length; i++) {
+                    long start = i * REGION_SIZE;
+                    regions[i] = channel.map(MapMode.READ_ONLY, start, Math.min(REGION_SIZE, size - start));
+                }
+            }
+        }
+
+        private MappedByteBuffer[] getRegions() throws IOException {
+            if (regions == null) {
+                throw new IOException("connection is closed");
+            }
+            return regions;
+        }
+
+        /**
+         * Copies as much as fits into {@code buffer} from the current position onwards.
+         */
+        private int copy(ByteBuffer buffer) throws IOException {
+            MappedByteBuffer[] mapped = getRegions();
+            int total = 0;
+            while (buffer.hasRemaining() && position < size) {
+                MappedByteBuffer region = mapped[(int) (position / REGION_SIZE)];
+                int offset = (int) (position % REGION_SIZE);
+                int n = Math.min(buffer.remaining(), region.limit() - offset);
+                ByteBuffer source = region.duplicate();
+                source.position(offset).limit(offset + n);
+                buffer.put(source);
+                position += n;
+                total += n;
+            }
+            return total;
+        }
+
+        @Override
+        public int readBin(ByteBuffer buffer) throws IOException {
+            return copy(buffer);
+        }
+
+        @Override
+        public byte[] readBinChars() throws IOException {
+            return readBinCharsHelper(inputStream);
+        }
+
+        @Override
+        public String readChar(int nchars, boolean useBytes) throws IOException {
+            return readCharHelper(nchars, inputStream, useBytes);
+        }
+
+        @TruffleBoundary
+        @Override
+        public String[] readLinesInternal(int n, boolean warn, boolean skipNul) throws IOException {
+            return readLinesHelper(inputStream, n, warn, skipNul);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return inputStream;
+        }
+
+        @Override
+        public boolean isSeekable() {
+            return true;
+        }
+
+        @Override
+        public long seek(long offset, SeekMode seekMode, SeekRWMode seekRWMode) throws IOException {
+            long result = position;
+            long newPosition;
+            switch (seekMode) {
+                case START:
+                    newPosition = offset;
+                    break;
+                case CURRENT:
+                    newPosition = position + offset;
+                    break;
+                case END:
+                    newPosition = size + offset;
+                    break;
+                default:
+                    throw RInternalError.shouldNotReachHere();
+            }
+            // like lseek, positioning beyond the end is allowed (and reads then return nothing)
+            if (newPosition < 0) {
+                throw new IOException("invalid seek position");
+            }
+            position = newPosition;
+            return result;
+        }
+
+        @Override
+        public void closeAndDestroy() throws IOException {
+            base.closed = true;
+            close();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // the mapping itself is unmapped when the buffers are collected
+            regions = null;
+        }
+    }
+
     private static class FileWriteBinaryConnection extends DelegateWriteRConnection implements ReadWriteHelper {
         private FileOutputStream outputStream;
 
@@ -372,23 +578,25 @@ public class FileConnections {
         @Override
         public long seek(long offset, SeekMode seekMode, SeekRWMode seekRWMode) throws IOException {
             long result = raf.getFilePointer();
-            if (seekMode != SeekMode.START) {
-                throw RError.nyi(null, "seek mode");
-            }
-            switch (seekRWMode) {
-                case LAST:
-                    if (lastMode == SeekRWMode.READ) {
-                        readOffset = offset;
-                    } else {
-                        writeOffset = offset;
-                    }
+            boolean read = seekRWMode == SeekRWMode.READ || (seekRWMode == SeekRWMode.LAST && lastMode == SeekRWMode.READ);
+            long newOffset;
+            switch (seekMode) {
+                case START:
+                    newOffset = offset;
                     break;
-                case READ:
-                    readOffset = offset;
+                case CURRENT:
+                    newOffset = (read ? readOffset : writeOffset) + offset;
                     break;
-                case WRITE:
-                    writeOffset = offset;
+                case END:
+                    newOffset = raf.length() + offset;
                     break;
+                default:
+                    throw RInternalError.shouldNotReachHere();
+            }
+            if (read) {
+                readOffset = newOffset;
+            } else {
+                writeOffset = newOffset;
             }
             return result;
         }
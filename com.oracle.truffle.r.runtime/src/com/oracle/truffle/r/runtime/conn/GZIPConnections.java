@@ -22,18 +22,21 @@
  */
 package com.oracle.truffle.r.runtime.conn;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
+import com.oracle.truffle.r.runtime.FastROptions;
 import com.oracle.truffle.r.runtime.RCompression;
 import com.oracle.truffle.r.runtime.RError;
+import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.conn.ConnectionSupport.AbstractOpenMode;
 import com.oracle.truffle.r.runtime.conn.ConnectionSupport.BasePathRConnection;
 import com.oracle.truffle.r.runtime.conn.ConnectionSupport.ConnectionClass;
@@ -47,16 +50,50 @@ public class GZIPConnections {
     public static final int GZIP_BUFFER_SIZE = (2 << 20);
 
     /**
-     * Base class for all modes of gzfile connections. N.B. gzfile is defined to be able to read
-     * gzip, bzip, lzma and uncompressed files, which has to be implemented by reading the first few
-     * bytes of the file and detecting the type of the file.
+     * Base class for all modes of gzfile, bzfile and xzfile connections. N.B. gzfile is defined to
+     * be able to read gzip, bzip, lzma and uncompressed files, which has to be implemented by
+     * reading the first few bytes of the file and detecting the type of the file. The three
+     * connection classes only differ in the format that they write.
      */
     public static class GZIPRConnection extends BasePathRConnection {
+        private final RCompression.Type writeType;
+        private final int level;
+
         public GZIPRConnection(String path, String modeString) throws IOException {
-            super(path, ConnectionClass.GZFile, modeString, AbstractOpenMode.ReadBinary);
+            this(path, modeString, RCompression.Type.GZIP, 6, null, Charset.defaultCharset());
+        }
+
+        /**
+         * Creates the connection, {@code charset} is the result of
+         * {@link ConnectionSupport.BaseRConnection#lookupEncoding(String)
+         * lookupEncoding(encoding)}.
+         *
+         * @param writeType {@link RCompression.Type#GZIP} for {@code gzfile},
+         *            {@link RCompression.Type#BZIP2} for {@code bzfile} and
+         *            {@link RCompression.Type#LZMA} for {@code xzfile}
+         * @param level the compression level used when writing
+         */
+        public GZIPRConnection(String path, String modeString, RCompression.Type writeType, int level, String encoding, Charset charset) throws IOException {
+            super(path, connectionClass(writeType), modeString, AbstractOpenMode.ReadBinary);
+            this.writeType = writeType;
+            this.level = level;
+            setEncoding(encoding, charset);
             openNonLazyConnection();
         }
 
+        private static ConnectionClass connectionClass(RCompression.Type writeType) {
+            switch (writeType) {
+                case GZIP:
+                    return ConnectionClass.GZFile;
+                case BZIP2:
+                    return ConnectionClass.BZFile;
+                case LZMA:
+                    return ConnectionClass.XZFile;
+                default:
+                    throw RInternalError.shouldNotReachHere();
+            }
+        }
+
         @Override
         protected void createDelegateConnection() throws IOException {
             DelegateRConnection delegate = null;
@@ -79,22 +116,14 @@ public class GZIPConnections {
                             delegate = new GZIPInputRConnection(this);
                             break;
                         case LZMA:
-                            /*
-                             * no lzma support in Java. For now we use RCompression to a byte array
-                             * and return a ByteArrayInputStream on that.
-                             */
-                            byte[] lzmaUdata = RCompression.lzmaUncompressFromFile(path);
-                            delegate = new ByteGZipInputRConnection(this, new ByteArrayInputStream(lzmaUdata));
-                            break;
                         case BZIP2:
-                            // ditto
-                            byte[] bzipUdata = RCompression.bzipUncompressFromFile(path);
-                            delegate = new ByteGZipInputRConnection(this, new ByteArrayInputStream(bzipUdata));
+                            delegate = new GZIPInputRConnection(this, cType);
+                            break;
                     }
                     break;
                 case Write:
                 case WriteBinary:
-                    delegate = new GZIPOutputRConnection(this);
+                    delegate = new GZIPOutputRConnection(this, writeType, level);
                     break;
                 default:
                     throw RError.nyi(RError.SHOW_CALLER2, "open mode: " + getOpenMode());
@@ -115,13 +144,16 @@ public class GZIPConnections {
         private InputStream inputStream;
 
         GZIPInputRConnection(GZIPRConnection base) throws IOException {
-            super(base);
-            inputStream = new GZIPInputStream(new FileInputStream(base.path), GZIP_BUFFER_SIZE);
+            this(base, RCompression.Type.GZIP);
         }
 
-        protected GZIPInputRConnection(GZIPRConnection base, InputStream is) {
+        GZIPInputRConnection(GZIPRConnection base, RCompression.Type cType) throws IOException {
             super(base);
-            this.inputStream = is;
+            BufferedLineInputStream lineInputStream = new BufferedLineInputStream(RCompression.getDecompressingInputStream(cType, new FileInputStream(base.path), GZIP_BUFFER_SIZE));
+            if (base.skipsBOM()) {
+                lineInputStream.skipUTF8BOM();
+            }
+            inputStream = lineInputStream;
         }
 
         @Override
@@ -141,7 +173,7 @@ public class GZIPConnections {
 
         @Override
         public String[] readLinesInternal(int n, boolean warn, boolean skipNul) throws IOException {
-            return readLinesHelper(inputStream, n, warn, skipNul);
+            return readLinesHelper(inputStream, n, warn, skipNul, base.getEncoding());
         }
 
         @Override
@@ -161,18 +193,19 @@ public class GZIPConnections {
         }
     }
 
-    private static class ByteGZipInputRConnection extends GZIPInputRConnection {
-        ByteGZipInputRConnection(GZIPRConnection base, ByteArrayInputStream is) {
-            super(base, is);
-        }
-    }
-
     private static class GZIPOutputRConnection extends DelegateWriteRConnection implements ReadWriteHelper {
-        private GZIPOutputStream outputStream;
+        private OutputStream outputStream;
 
-        GZIPOutputRConnection(GZIPRConnection base) throws IOException {
+        GZIPOutputRConnection(GZIPRConnection base, RCompression.Type cType, int level) throws IOException {
             super(base);
-            outputStream = new GZIPOutputStream(new FileOutputStream(base.path), GZIP_BUFFER_SIZE);
+            int threads = FastROptions.GZipThreads.getNonNegativeIntValue();
+            if (cType != RCompression.Type.GZIP) {
+                outputStream = RCompression.getCompressingFileOutputStream(cType, new BufferedOutputStream(new FileOutputStream(base.path), GZIP_BUFFER_SIZE), level);
+            } else if (threads > 1) {
+                outputStream = new ParallelGZIPOutputStream(new BufferedOutputStream(new FileOutputStream(base.path), GZIP_BUFFER_SIZE), threads);
+            } else {
+                outputStream = new GZIPOutputStream(new FileOutputStream(base.path), GZIP_BUFFER_SIZE);
+            }
         }
 
         @Override
@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.context;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.oracle.truffle.api.source.Source;
+import com.oracle.truffle.api.vm.PolyglotEngine;
+import com.oracle.truffle.r.runtime.FastROptions;
+import com.oracle.truffle.r.runtime.RInternalError;
+import com.oracle.truffle.r.runtime.RPerfStats;
+import com.oracle.truffle.r.runtime.RSource;
+import com.oracle.truffle.r.runtime.context.RContext.ContextKind;
+import com.oracle.truffle.r.runtime.context.RContext.EvalThread;
+import com.oracle.truffle.r.runtime.data.RList;
+
+/**
+ * A pool of initialized contexts for {@code .fastr.context.spawn} and {@code .fastr.context.eval}.
+ * Creating a context means creating a {@link PolyglotEngine} and initializing the base packages
+ * and profiles, which dominates the cost of short evaluations. Instead of disposing a context after
+ * the evaluation, it is reset and kept for the next evaluation with the same parent, kind and
+ * arguments. At most {@link FastROptions#ContextPoolSize} idle contexts are kept per such key.
+ *
+ * A {@link PolyglotEngine} must be used by the thread that created it, so each pooled context is
+ * owned by a {@link Worker} thread that evaluates the {@link Task tasks} handed to it.
+ *
+ * The reset removes all variables from the global environment, including {@code .Random.seed},
+ * detaches everything that was attached to the search path by the evaluation, and restores the
+ * options, the kind of random number generator and the working directory that the context had after
+ * its initialization. Namespaces loaded by the evaluation remain loaded.
+ * Contexts of kind {@link ContextKind#SHARE_PARENT_RW} are not pooled, as there can only be one
+ * such child per parent.
+ */
+public final class ContextPool {
+
+    /**
+     * Evaluates to the function that resets a context to the state it has when this is evaluated.
+     */
+    private static final Source RESET = RSource.fromTextInternal("local({\n" +
+                    "    searchPath <- search()\n" +
+                    "    opts <- options()\n" +
+                    "    rngKind <- RNGkind()\n" +
+                    "    wd <- getwd()\n" +
+                    "    function() {\n" +
+                    "        RNGkind(rngKind[1L], rngKind[2L])\n" +
+                    "        rm(list = ls(globalenv(), all.names = TRUE), envir = globalenv())\n" +
+                    "        for (p in setdiff(search(), searchPath)) detach(p, character.only = TRUE)\n" +
+                    "        added <- setdiff(names(options()), names(opts))\n" +
+                    "        options(c(opts, structure(vector(\"list\", length(added)), names = added)))\n" +
+                    "        setwd(wd)\n" +
+                    "        invisible(NULL)\n" +
+                    "    }\n" +
+                    "})", RSource.Internal.CONTEXT_RESET);
+
+    /**
+     * The idle workers by parent context and key, guarded by the map itself.
+     */
+    private static final Map<RContext, Map<String, ArrayDeque<Worker>>> idleWorkers = new HashMap<>();
+
+    /**
+     * The tasks that have not completed yet, for {@link #getTask}.
+     */
+    private static final Map<Integer, Task> activeTasks = new ConcurrentHashMap<>();
+
+    private static final LongAdder created = new LongAdder();
+    private static final LongAdder reused = new LongAdder();
+    private static final LongAdder retired = new LongAdder();
+
+    private ContextPool() {
+        // only static methods
+    }
+
+    public static boolean isEnabled(ContextKind kind) {
+        return kind != ContextKind.SHARE_PARENT_RW && FastROptions.ContextPoolSize.getNonNegativeIntValue() > 0;
+    }
+
+    /**
+     * An evaluation of a source in a pooled context. Its id is the id of the {@link ContextInfo} it
+     * was submitted with, so that {@code .fastr.context.join} can treat it like a thread.
+     */
+    public static final class Task {
+        private final int id;
+        private final Source source;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile RList result;
+
+        private Task(int id, Source source) {
+            this.id = id;
+            this.source = source;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public void join() throws InterruptedException {
+            done.await();
+        }
+
+        /**
+         * Waits for the task and returns its result, see {@link EvalThread#createEvalResult}.
+         */
+        public RList getResult() throws InterruptedException {
+            join();
+            return result;
+        }
+
+        private void complete(RList taskResult) {
+            result = taskResult;
+            activeTasks.remove(id);
+            done.countDown();
+        }
+    }
+
+    /**
+     * Evaluates {@code source} in a context described by {@code info} and {@code args}, which are
+     * the command line arguments used to create {@code info}. An idle context with the same parent,
+     * kind and arguments is used if available, otherwise a new one is created from {@code info}.
+     */
+    public static Task submit(ContextInfo info, String[] args, Source source) {
+        Task task = new Task(info.getId(), source);
+        activeTasks.put(task.id, task);
+        String key = info.getKind().name() + Arrays.toString(args);
+        Worker worker = null;
+        synchronized (idleWorkers) {
+            Map<String, ArrayDeque<Worker>> parentWorkers = idleWorkers.computeIfAbsent(info.getParent(), p -> new HashMap<>());
+            ArrayDeque<Worker> workers = parentWorkers.get(key);
+            if (workers != null) {
+                worker = workers.poll();
+            }
+        }
+        if (worker == null) {
+            created.increment();
+            worker = new Worker(info, key);
+            worker.setDaemon(true);
+            worker.start();
+        } else {
+            reused.increment();
+        }
+        worker.submit(task);
+        return task;
+    }
+
+    /**
+     * Returns how many evaluations were run in a reset context rather than a new one.
+     */
+    public static long getReusedCount() {
+        return reused.sum();
+    }
+
+    /**
+     * Returns the task with the given id if it is still running, {@code null} otherwise.
+     */
+    public static Task getTask(int id) {
+        return activeTasks.get(id);
+    }
+
+    /**
+     * Disposes the idle contexts of {@code parent}; busy ones are disposed when they finish.
+     */
+    public static void shutdown(RContext parent) {
+        Map<String, ArrayDeque<Worker>> parentWorkers;
+        synchronized (idleWorkers) {
+            parentWorkers = idleWorkers.remove(parent);
+        }
+        if (parentWorkers != null) {
+            for (ArrayDeque<Worker> workers : parentWorkers.values()) {
+                for (Worker worker : workers) {
+                    worker.submit(Worker.SHUTDOWN);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns {@code worker} to the pool, or {@code false} if it should be disposed.
+     */
+    private static boolean release(Worker worker) {
+        synchronized (idleWorkers) {
+            Map<String, ArrayDeque<Worker>> parentWorkers = idleWorkers.get(worker.info.getParent());
+            if (parentWorkers == null) {
+                // parent was destroyed
+                return false;
+            }
+            ArrayDeque<Worker> workers = parentWorkers.computeIfAbsent(worker.key, k -> new ArrayDeque<>());
+            if (workers.size() >= FastROptions.ContextPoolSize.getNonNegativeIntValue()) {
+                return false;
+            }
+            workers.add(worker);
+            return true;
+        }
+    }
+
+    private static final class Worker extends RContext.ContextThread {
+        private static final Task SHUTDOWN = new Task(0, null);
+
+        private final ContextInfo info;
+        private final String key;
+        private final LinkedBlockingQueue<Task> tasks = new LinkedBlockingQueue<>();
+        /**
+         * The reason why the context could not be initialized, guarded by {@link #tasks}.
+         */
+        private Exception failure;
+
+        Worker(ContextInfo info, String key) {
+            super(null);
+            this.info = info;
+            this.key = key;
+            setName("FastR pooled context " + info.getId());
+        }
+
+        @Override
+        public void run() {
+            PolyglotEngine vm = info.createVM();
+            try {
+                PolyglotEngine.Value reset;
+                try {
+                    setContext(vm.eval(EvalThread.GET_CONTEXT).as(RContext.class));
+                    reset = vm.eval(RESET);
+                } catch (Exception e) {
+                    failPending(e);
+                    throw new RInternalError(e, "error while initializing pooled context");
+                }
+                while (true) {
+                    Task task = tasks.take();
+                    if (task == SHUTDOWN) {
+                        break;
+                    }
+                    task.complete(EvalThread.evaluate(vm, task.source, info));
+                    if (!reset(reset) || !release(this)) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                // disposed below
+            } finally {
+                retired.increment();
+                vm.dispose();
+            }
+        }
+
+        /**
+         * Hands {@code task} to this worker, or completes it with an error if the worker's context
+         * could not be initialized.
+         */
+        private void submit(Task task) {
+            synchronized (tasks) {
+                if (failure == null) {
+                    tasks.add(task);
+                    return;
+                }
+            }
+            if (task != SHUTDOWN) {
+                task.complete(EvalThread.createErrorResult(failure.getClass().getSimpleName()));
+            }
+        }
+
+        /**
+         * Completes the pending tasks with an error, and makes sure that no further tasks are
+         * accepted, neither directly nor through the pool.
+         */
+        private void failPending(Exception e) {
+            synchronized (idleWorkers) {
+                Map<String, ArrayDeque<Worker>> parentWorkers = idleWorkers.get(info.getParent());
+                if (parentWorkers != null && parentWorkers.containsKey(key)) {
+                    parentWorkers.get(key).remove(this);
+                }
+            }
+            ArrayList<Task> pending = new ArrayList<>();
+            synchronized (tasks) {
+                failure = e;
+                tasks.drainTo(pending);
+            }
+            for (Task task : pending) {
+                if (task != SHUTDOWN) {
+                    task.complete(EvalThread.createErrorResult(e.getClass().getSimpleName()));
+                }
+            }
+        }
+
+        private static boolean reset(PolyglotEngine.Value reset) {
+            try {
+                reset.execute();
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+    }
+
+    static {
+        RPerfStats.register(new PerfHandler());
+    }
+
+    /**
+     * Reports how often pooled contexts were reused rather than created.
+     */
+    private static class PerfHandler implements RPerfStats.Handler {
+        @Override
+        public void initialize(String optionText) {
+            // the counters are always maintained
+        }
+
+        @Override
+        public String getName() {
+            return "contextpool";
+        }
+
+        @Override
+        public void report() {
+            RPerfStats.out().printf("Context pool: %d created, %d reused, %d disposed%n", created.sum(), reused.sum(), retired.sum());
+            RPerfStats.out().println();
+        }
+
+        @Override
+        public Map<String, Object> getMetrics() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("created", created.sum());
+            result.put("reused", reused.sum());
+            result.put("disposed", retired.sum());
+            return result;
+        }
+    }
+}
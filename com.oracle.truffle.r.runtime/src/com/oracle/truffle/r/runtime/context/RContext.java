@@ -175,7 +175,7 @@ public final class RContext extends ExecutionContext implements TruffleObject {
      */
     public static class EvalThread extends ContextThread {
 
-        private static final Source GET_CONTEXT = RSource.fromTextInternal("invisible(.fastr.context.get())", RSource.Internal.GET_CONTEXT);
+        static final Source GET_CONTEXT = RSource.fromTextInternal("invisible(.fastr.context.get())", RSource.Internal.GET_CONTEXT);
 
         private final Source source;
         private final ContextInfo info;
@@ -199,30 +199,38 @@ public final class RContext extends ExecutionContext implements TruffleObject {
                 throw new RInternalError(e1, "error while initializing eval thread");
             }
             try {
-                try {
-                    PolyglotEngine.Value resultValue = vm.eval(source);
-                    evalResult = createEvalResult(resultValue);
-                } catch (ParseException e) {
-                    e.report(info.getConsoleHandler());
-                    evalResult = createErrorResult(e.getMessage());
-                } catch (IOException e) {
-                    Throwable cause = e.getCause();
-                    if (cause instanceof ExitException) {
-                        // termination, treat this as "success"
-                        ExitException exitException = (ExitException) cause;
-                        evalResult = RDataFactory.createList(new Object[]{exitException.getStatus()});
-                    } else {
-                        // some internal error
-                        RInternalError.reportErrorAndConsoleLog(cause, info.getConsoleHandler(), info.getId());
-                        evalResult = createErrorResult(cause.getClass().getSimpleName());
-                    }
-                }
+                evalResult = evaluate(vm, source, info);
             } finally {
                 vm.dispose();
                 threads.remove(info.getId());
             }
         }
 
+        /**
+         * Evaluates {@code source} in {@code vm}, which was created from {@code info}, and returns
+         * the result as described in {@link #createEvalResult}.
+         */
+        public static RList evaluate(PolyglotEngine vm, Source source, ContextInfo info) {
+            try {
+                PolyglotEngine.Value resultValue = vm.eval(source);
+                return createEvalResult(resultValue);
+            } catch (ParseException e) {
+                e.report(info.getConsoleHandler());
+                return createErrorResult(e.getMessage());
+            } catch (IOException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof ExitException) {
+                    // termination, treat this as "success"
+                    ExitException exitException = (ExitException) cause;
+                    return RDataFactory.createList(new Object[]{exitException.getStatus()});
+                } else {
+                    // some internal error
+                    RInternalError.reportErrorAndConsoleLog(cause, info.getConsoleHandler(), info.getId());
+                    return createErrorResult(cause.getClass().getSimpleName());
+                }
+            }
+        }
+
         /**
          * The result is an {@link RList} contain the value, plus an "error" attribute if the
          * evaluation resulted in an error.
@@ -518,6 +526,8 @@ public final class RContext extends ExecutionContext implements TruffleObject {
      * Destroy this context.
      */
     public void destroy() {
+        // pooled children must not be reused, nor kept in the pool, once the parent goes away
+        ContextPool.shutdown(this);
         for (ContextState state : contextStates()) {
             state.beforeDestroy(this);
         }
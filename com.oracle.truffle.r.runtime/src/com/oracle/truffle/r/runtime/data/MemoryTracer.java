@@ -23,8 +23,18 @@
 
 package com.oracle.truffle.r.runtime.data;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
 import com.oracle.truffle.api.Assumption;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.Truffle;
+import com.oracle.truffle.api.profiles.ConditionProfile;
+import com.oracle.truffle.r.runtime.RPerfStats;
+import com.oracle.truffle.r.runtime.RType;
 import com.oracle.truffle.r.runtime.context.RContext;
 import com.oracle.truffle.r.runtime.data.model.RAbstractVector;
 
@@ -37,6 +47,13 @@ public final class MemoryTracer {
     private static Listener listener;
     private static final Assumption noMemoryTracingAssumption = Truffle.getRuntime().createAssumption();
 
+    /**
+     * Listener for allocations, e.g., an allocation profiler. Unlike {@link #listener}, it does not
+     * depend on the {@code tracingState} and also receives the copy events.
+     */
+    private static Listener allocationListener;
+    private static final Assumption noAllocationTracingAssumption = Truffle.getRuntime().createAssumption();
+
     private MemoryTracer() {
         // only static methods
     }
@@ -57,18 +74,132 @@ public final class MemoryTracer {
         noMemoryTracingAssumption.invalidate();
     }
 
+    /**
+     * Sets the listener of allocation events, or removes it if {@code newListener} is {@code null}.
+     * The first installation invalidates a global assumption.
+     */
+    public static void setAllocationListener(Listener newListener) {
+        allocationListener = newListener;
+        if (newListener != null) {
+            noAllocationTracingAssumption.invalidate();
+        }
+    }
+
+    /**
+     * Reports the creation of {@code data} to the allocation listener, if any. Only vectors are
+     * reported.
+     */
+    public static void reportAllocation(Object data) {
+        if (!noAllocationTracingAssumption.isValid() && allocationListener != null && data instanceof RAbstractVector) {
+            allocationListener.reportAllocation((RAbstractVector) data);
+        }
+    }
+
     /**
      * Reports copy event to the listener. If there are no traced objects, this should turn into
      * no-op. TODO might be worth interposing on a change in {@code tracingState} to turn off the
      * collection.
      */
     public static void reportCopying(RAbstractVector source, RAbstractVector dest) {
+        if (statsProfile.profile(stats != null)) {
+            stats.record(source, dest);
+        }
         if (!noMemoryTracingAssumption.isValid() && listener != null && RContext.getInstance().stateInstrumentation.getTracingState()) {
             listener.reportCopying(source, dest);
         }
+        if (!noAllocationTracingAssumption.isValid() && allocationListener != null) {
+            allocationListener.reportCopying(source, dest);
+        }
     }
 
     public interface Listener {
         void reportCopying(RAbstractVector source, RAbstractVector dest);
+
+        default void reportAllocation(@SuppressWarnings("unused") RAbstractVector data) {
+            // only interesting for allocation listeners
+        }
+    }
+
+    /**
+     * Estimates the size of the data of {@code vector} in bytes, not counting headers and
+     * attributes. References, e.g., the elements of character vectors and lists, count as 8 bytes.
+     */
+    public static long estimateSize(RAbstractVector vector) {
+        return (long) vector.getLength() * elementSize(vector.getRType());
+    }
+
+    private static int elementSize(RType type) {
+        switch (type) {
+            case Logical:
+            case Raw:
+                return 1;
+            case Integer:
+                return 4;
+            case Double:
+                return 8;
+            case Complex:
+                return 16;
+            default:
+                // references, e.g. for character vectors and lists
+                return 8;
+        }
+    }
+
+    // Performance analysis
+
+    private static final ConditionProfile statsProfile = ConditionProfile.createBinaryProfile();
+
+    @CompilationFinal private static PerfHandler stats;
+
+    static {
+        RPerfStats.register(new PerfHandler());
+    }
+
+    /**
+     * Counts the copies reported by {@link #reportCopying}, and the number of elements copied, by
+     * vector type. Unlike {@code tracemem}, this does not depend on the copied vectors being
+     * traced.
+     */
+    private static class PerfHandler implements RPerfStats.Handler {
+        private final Map<RType, LongAdder> counts = new ConcurrentHashMap<>();
+        private final Map<RType, LongAdder> elements = new ConcurrentHashMap<>();
+
+        @TruffleBoundary
+        void record(RAbstractVector source, RAbstractVector dest) {
+            RType type = source.getRType();
+            counts.computeIfAbsent(type, t -> new LongAdder()).increment();
+            elements.computeIfAbsent(type, t -> new LongAdder()).add(dest.getLength());
+        }
+
+        @Override
+        public void initialize(String optionText) {
+            stats = this;
+        }
+
+        @Override
+        public String getName() {
+            return "cowcopies";
+        }
+
+        @Override
+        public void report() {
+            RPerfStats.out().println("Vector copies");
+            for (Map.Entry<RType, LongAdder> entry : counts.entrySet()) {
+                RPerfStats.out().printf("%s: %d, %d elements%n", entry.getKey().getName(), entry.getValue().sum(), elements.get(entry.getKey()).sum());
+            }
+            RPerfStats.out().println();
+        }
+
+        @Override
+        public Map<String, Object> getMetrics() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (Map.Entry<RType, LongAdder> entry : counts.entrySet()) {
+                String name = entry.getKey().getName();
+                result.put(name + ".count", entry.getValue().sum());
+                LongAdder typeElements = elements.get(entry.getKey());
+                result.put(name + ".elements", typeElements == null ? 0L : typeElements.sum());
+            }
+            return result;
+        }
     }
 }
@@ -24,6 +24,8 @@ package com.oracle.truffle.r.runtime.data;
 
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 import com.oracle.truffle.api.CompilerAsserts;
@@ -313,6 +315,15 @@ public final class RAttributes implements Iterable<RAttributes.RAttribute> {
             RPerfStats.out().printf("RAttributes: %d, max size %d%n", hist.getTotalCount(), hist.getMaxSize());
             hist.report();
         }
+
+        @Override
+        public Map<String, Object> getMetrics() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("count", hist.getTotalCount());
+            result.put("maxSize", hist.getMaxSize());
+            result.put("sizes", hist.getCounts());
+            return result;
+        }
     }
 
     public void setSize(int size) {
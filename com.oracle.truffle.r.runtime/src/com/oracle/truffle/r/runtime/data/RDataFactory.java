@@ -23,9 +23,11 @@
 package com.oracle.truffle.r.runtime.data;
 
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.oracle.truffle.api.Assumption;
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
@@ -38,6 +40,7 @@ import com.oracle.truffle.r.runtime.RCaller;
 import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.RPerfStats;
 import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.RType;
 import com.oracle.truffle.r.runtime.builtins.RBuiltinDescriptor;
 import com.oracle.truffle.r.runtime.data.RPromise.Closure;
 import com.oracle.truffle.r.runtime.data.RPromise.EagerFeedback;
@@ -53,6 +56,7 @@ public final class RDataFactory {
      * Profile for creation tracing; must precede following declarations.
      */
     private static final ConditionProfile statsProfile = ConditionProfile.createBinaryProfile();
+    private static final ConditionProfile allocStatsProfile = ConditionProfile.createBinaryProfile();
 
     public static final boolean INCOMPLETE_VECTOR = false;
     public static final boolean COMPLETE_VECTOR = true;
@@ -480,10 +484,7 @@ public final class RDataFactory {
     }
 
     public static REnvironment createNewEnv(String name, boolean hashed, int initialSize) {
-        REnvironment.NewEnv env = new REnvironment.NewEnv(RRuntime.createNonFunctionFrame("<new-env-" + environmentCount.incrementAndGet() + ">"), name);
-        env.setHashed(hashed);
-        env.setInitialSize(initialSize);
-        return traceDataCreated(env);
+        return traceDataCreated(new REnvironment.NewEnv(RRuntime.createNonFunctionFrame("<new-env-" + environmentCount.incrementAndGet() + ">"), name, hashed, initialSize));
     }
 
     public static RS4Object createS4Object() {
@@ -499,16 +500,22 @@ public final class RDataFactory {
     }
 
     @CompilationFinal private static PerfHandler stats;
+    @CompilationFinal private static AllocationPerfHandler allocStats;
 
     private static <T> T traceDataCreated(T data) {
         if (statsProfile.profile(stats != null)) {
             stats.record(data);
         }
+        if (allocStatsProfile.profile(allocStats != null)) {
+            allocStats.record(data);
+        }
+        MemoryTracer.reportAllocation(data);
         return data;
     }
 
     static {
         RPerfStats.register(new PerfHandler());
+        RPerfStats.register(new AllocationPerfHandler());
     }
 
     private static class PerfHandler implements RPerfStats.Handler {
@@ -530,7 +537,7 @@ public final class RDataFactory {
         @Override
         public void initialize(String optionData) {
             stats = this;
-            histMap = new HashMap<>();
+            histMap = new ConcurrentHashMap<>();
         }
 
         @Override
@@ -558,5 +565,69 @@ public final class RDataFactory {
             }
             RPerfStats.out().println();
         }
+
+        @Override
+        public Map<String, Object> getMetrics() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (Map.Entry<Class<?>, RPerfStats.Histogram> entry : histMap.entrySet()) {
+                RPerfStats.Histogram hist = entry.getValue();
+                String name = entry.getKey().getSimpleName();
+                result.put(name + ".count", hist.getTotalCount());
+                if (hist.numBuckets() > 1) {
+                    result.put(name + ".sizes", hist.getCounts());
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Collects the number of vectors created and an estimate of the bytes allocated for their
+     * data, by vector type.
+     */
+    private static class AllocationPerfHandler implements RPerfStats.Handler {
+        private final Map<RType, LongAdder> counts = new ConcurrentHashMap<>();
+        private final Map<RType, LongAdder> bytes = new ConcurrentHashMap<>();
+
+        @TruffleBoundary
+        void record(Object data) {
+            if (data instanceof RAbstractVector) {
+                RAbstractVector vector = (RAbstractVector) data;
+                RType type = vector.getRType();
+                counts.computeIfAbsent(type, t -> new LongAdder()).increment();
+                bytes.computeIfAbsent(type, t -> new LongAdder()).add(MemoryTracer.estimateSize(vector));
+            }
+        }
+
+        @Override
+        public void initialize(String optionData) {
+            allocStats = this;
+        }
+
+        @Override
+        public String getName() {
+            return "allocbytes";
+        }
+
+        @Override
+        public void report() {
+            RPerfStats.out().println("Vector allocations");
+            for (Map.Entry<RType, LongAdder> entry : counts.entrySet()) {
+                RPerfStats.out().printf("%s: %d, %d bytes%n", entry.getKey().getName(), entry.getValue().sum(), bytes.get(entry.getKey()).sum());
+            }
+            RPerfStats.out().println();
+        }
+
+        @Override
+        public Map<String, Object> getMetrics() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (Map.Entry<RType, LongAdder> entry : counts.entrySet()) {
+                String name = entry.getKey().getName();
+                result.put(name + ".count", entry.getValue().sum());
+                LongAdder typeBytes = bytes.get(entry.getKey());
+                result.put(name + ".bytes", typeBytes == null ? 0L : typeBytes.sum());
+            }
+            return result;
+        }
     }
 }
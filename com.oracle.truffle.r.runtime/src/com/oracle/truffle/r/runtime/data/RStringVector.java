@@ -23,7 +23,9 @@
 package com.oracle.truffle.r.runtime.data;
 
 import java.util.Arrays;
+import java.util.HashMap;
 
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.profiles.ConditionProfile;
 import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.RRuntime;
@@ -38,8 +40,19 @@ public final class RStringVector extends RVector implements RAbstractStringVecto
 
     public static final RStringVector implicitClassHeader = RDataFactory.createStringVectorFromScalar(RType.Character.getClazz());
 
+    /**
+     * Searches by name in vectors with at least this many elements may use {@link #getIndexOf}.
+     */
+    public static final int INDEX_MIN_LENGTH = 64;
+
     private final String[] data;
 
+    /**
+     * Maps the non-NA strings to the position of their first occurrence, built lazily by
+     * {@link #getIndexOf} and dropped by all updates and whenever the store is handed out.
+     */
+    private HashMap<String, Integer> index;
+
     RStringVector(String[] data, boolean complete, int[] dims, RStringVector names) {
         super(complete, data.length, dims, names);
         this.data = data;
@@ -62,21 +75,26 @@ public final class RStringVector extends RVector implements RAbstractStringVecto
         }
     }
 
+    /**
+     * The store may be written directly, so this drops the index.
+     */
     @Override
     public String[] getInternalStore() {
+        index = null;
         return data;
     }
 
     @Override
-    public void setDataAt(Object store, int index, String value) {
+    public void setDataAt(Object store, int i, String value) {
         assert data == store;
-        ((String[]) store)[index] = value;
+        ((String[]) store)[i] = value;
+        index = null;
     }
 
     @Override
-    public String getDataAt(Object store, int index) {
+    public String getDataAt(Object store, int i) {
         assert data == store;
-        return ((String[]) store)[index];
+        return ((String[]) store)[i];
     }
 
     @Override
@@ -100,6 +118,8 @@ public final class RStringVector extends RVector implements RAbstractStringVecto
      * this method rather than {@link #getDataCopy()}.
      */
     public String[] getDataWithoutCopying() {
+        // the result may be written directly
+        index = null;
         return data;
     }
 
@@ -156,6 +176,7 @@ public final class RStringVector extends RVector implements RAbstractStringVecto
             throw RInternalError.shouldNotReachHere("update shared vector");
         }
         data[i] = right;
+        index = null;
         if (rightNACheck.check(right)) {
             setComplete(false);
         }
@@ -208,6 +229,7 @@ public final class RStringVector extends RVector implements RAbstractStringVecto
     public void transferElementSameType(int toIndex, RAbstractVector fromVector, int fromIndex) {
         RAbstractStringVector other = (RAbstractStringVector) fromVector;
         data[toIndex] = other.getDataAt(fromIndex);
+        index = null;
     }
 
     @Override
@@ -233,5 +255,48 @@ public final class RStringVector extends RVector implements RAbstractStringVecto
     @Override
     public void setElement(int i, Object value) {
         data[i] = (String) value;
+        index = null;
+    }
+
+    /**
+     * Determines whether {@link #getIndexOf} can answer searches without building an index first.
+     */
+    public boolean isIndexed() {
+        return index != null;
+    }
+
+    /**
+     * Returns the position of the first occurrence of {@code value} (which must not be NA), or
+     * {@code -1}. The first call builds a hash index of the vector, so that looking up many names
+     * in long names vectors is not quadratic.
+     */
+    @TruffleBoundary
+    public int getIndexOf(String value) {
+        HashMap<String, Integer> currentIndex = index;
+        if (currentIndex == null) {
+            currentIndex = new HashMap<>(data.length + data.length / 2);
+            for (int i = 0; i < data.length; i++) {
+                if (data[i] != RRuntime.STRING_NA) {
+                    currentIndex.putIfAbsent(data[i], i);
+                }
+            }
+            index = currentIndex;
+        }
+        Integer result = currentIndex.get(value);
+        if (result == null) {
+            return -1;
+        }
+        int i = result;
+        if (!value.equals(data[i])) {
+            // the store was modified directly after it was handed out, fall back to a scan
+            index = null;
+            for (int j = 0; j < data.length; j++) {
+                if (value.equals(data[j])) {
+                    return j;
+                }
+            }
+            return -1;
+        }
+        return i;
     }
 }
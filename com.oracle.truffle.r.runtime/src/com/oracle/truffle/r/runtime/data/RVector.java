@@ -22,6 +22,8 @@
  */
 package com.oracle.truffle.r.runtime.data;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.function.Function;
 
 import com.oracle.truffle.api.CompilerAsserts;
@@ -879,6 +881,11 @@ public abstract class RVector extends RSharingAttributeStorage implements RShare
         public void report() {
             RPerfStats.out().printf("NUMBER OF VECTOR COPIES: %d\n", count);
         }
+
+        @Override
+        public Map<String, Object> getMetrics() {
+            return Collections.<String, Object> singletonMap("count", (long) count);
+        }
     }
 
     private static final int MAX_TOSTRING_LENGTH = 100;
@@ -31,6 +31,7 @@ import com.oracle.truffle.api.frame.Frame;
 import com.oracle.truffle.api.frame.MaterializedFrame;
 import com.oracle.truffle.api.profiles.ValueProfile;
 import com.oracle.truffle.r.runtime.AnonymousFrameVariable;
+import com.oracle.truffle.r.runtime.FastROptions;
 import com.oracle.truffle.r.runtime.RArguments;
 import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RError.RErrorException;
@@ -50,6 +51,7 @@ import com.oracle.truffle.r.runtime.data.RStringVector;
 import com.oracle.truffle.r.runtime.env.frame.NSBaseMaterializedFrame;
 import com.oracle.truffle.r.runtime.env.frame.REnvEmptyFrameAccess;
 import com.oracle.truffle.r.runtime.env.frame.REnvFrameAccess;
+import com.oracle.truffle.r.runtime.env.frame.REnvHashFrameAccess;
 import com.oracle.truffle.r.runtime.env.frame.REnvTruffleFrameAccess;
 
 /**
@@ -740,14 +742,18 @@ public abstract class REnvironment extends RAttributeStorage {
      * An environment associated with an already materialized frame.
      */
     private REnvironment(String name, MaterializedFrame frame) {
-        this(name, new REnvTruffleFrameAccess(frame));
+        this(name, frame, new REnvTruffleFrameAccess(frame));
+    }
+
+    private REnvironment(String name, MaterializedFrame frame, REnvFrameAccess frameAccess) {
+        this(name, frameAccess);
 
         // Associate frame with the environment
         RArguments.setEnvironment(frame, this);
     }
 
     public REnvironment getParent() {
-        MaterializedFrame enclosingFrame = RArguments.getEnclosingFrame(getFrame());
+        MaterializedFrame enclosingFrame = RArguments.getEnclosingFrame(getArgumentsFrame());
         return enclosingFrame == null ? emptyEnv : frameToEnvironment(enclosingFrame);
     }
 
@@ -757,7 +763,7 @@ public abstract class REnvironment extends RAttributeStorage {
      */
     public void setParent(REnvironment env) {
         if (getParent() != env) {
-            RArguments.setEnclosingFrame(getFrame(), env.getFrame());
+            RArguments.setEnclosingFrame(getArgumentsFrame(), env.getFrame());
         }
     }
 
@@ -817,6 +823,15 @@ public abstract class REnvironment extends RAttributeStorage {
         return frameAccessProfile.profile(frameAccess).getFrame();
     }
 
+    /**
+     * Return the {@link MaterializedFrame} associated with this environment for access to its
+     * {@link RArguments} only, e.g., to set the enclosing frame. Unlike {@link #getFrame()}, this
+     * does not force a {@link REnvHashFrameAccess} to move its bindings into the frame.
+     */
+    public MaterializedFrame getArgumentsFrame() {
+        return frameAccess.getArgumentsFrame();
+    }
+
     public void lock(boolean bindings) {
         locked = true;
         if (bindings) {
@@ -990,9 +1005,10 @@ public abstract class REnvironment extends RAttributeStorage {
     /**
      * An environment explicitly created with, typically, {@code new.env}, but also used internally.
      * Such environments are always {@link #UNNAMED} but can later be given a name as an attribute.
-     * This is the class used by the {@code new.env} function. We record but do not interpret the
-     * {@code hash} input, as we always use a hashmap, for possible use by the serialization code
-     * (GnuR generates different output format for hash environments).
+     * This is the class used by the {@code new.env} function. The bindings of environments created
+     * with {@code hash = TRUE} are held by a {@link REnvHashFrameAccess} until the frame is needed.
+     * The {@code hash} input is also recorded for possible use by the serialization code (GnuR
+     * generates different output format for hash environments).
      *
      */
     public static final class NewEnv extends REnvironment {
@@ -1006,6 +1022,15 @@ public abstract class REnvironment extends RAttributeStorage {
             }
         }
 
+        public NewEnv(MaterializedFrame frame, String name, boolean hashed, int initialSize) {
+            super(UNNAMED, frame, hashed && FastROptions.HashedEnvironments.getBooleanValue() ? new REnvHashFrameAccess(frame, initialSize) : new REnvTruffleFrameAccess(frame));
+            if (name != null) {
+                setAttr(NAME_ATTR_KEY, name);
+            }
+            this.hashed = hashed;
+            this.initialSize = initialSize;
+        }
+
         public boolean isHashed() {
             return hashed;
         }
@@ -77,4 +77,13 @@ public abstract class REnvFrameAccess {
 
     public abstract MaterializedFrame getFrame();
 
+    /**
+     * Return the frame for access to its {@link com.oracle.truffle.r.runtime.RArguments}, e.g., the
+     * enclosing frame. Unlike {@link #getFrame()}, this does not require the frame to hold the
+     * bindings of the environment.
+     */
+    public MaterializedFrame getArgumentsFrame() {
+        return getFrame();
+    }
+
 }
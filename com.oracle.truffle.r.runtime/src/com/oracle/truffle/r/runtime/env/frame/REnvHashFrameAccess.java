@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.env.frame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.frame.MaterializedFrame;
+import com.oracle.truffle.r.runtime.RError;
+import com.oracle.truffle.r.runtime.RInternalError;
+import com.oracle.truffle.r.runtime.data.RDataFactory;
+import com.oracle.truffle.r.runtime.data.RStringVector;
+import com.oracle.truffle.r.runtime.env.REnvironment;
+import com.oracle.truffle.r.runtime.env.REnvironment.PutException;
+
+/**
+ * Variant of {@link REnvFrameAccess} for environments created by {@code new.env(hash = TRUE)},
+ * which are often used as hash maps with a large number of keys. As long as the environment is
+ * only accessed through the {@link REnvironment} API ({@code assign}, {@code get}, {@code exists},
+ * {@code rm}, {@code ls}, {@code mget} etc.), the bindings are kept in a {@link HashMap}, which
+ * avoids growing the {@link com.oracle.truffle.api.frame.FrameDescriptor} and creating the
+ * assumptions of {@link FrameSlotChangeMonitor} for every key.
+ *
+ * As soon as the frame itself is requested, e.g., to evaluate code in the environment or to use
+ * it as the enclosing frame of a function or another environment, the bindings are moved into the
+ * frame and all further operations are delegated to a {@link REnvTruffleFrameAccess}. Both states
+ * are represented by a single {@code volatile} delegate, which is replaced in one step, so that a
+ * concurrent reader never sees a half-moved environment.
+ */
+public final class REnvHashFrameAccess extends REnvFrameAccess {
+
+    private final MaterializedFrame frame;
+    /**
+     * A {@link HashBindings} until the bindings have been moved to {@link #frame}, then a
+     * {@link REnvTruffleFrameAccess}.
+     */
+    private volatile REnvFrameAccess delegate;
+
+    public REnvHashFrameAccess(MaterializedFrame frame, int initialSize) {
+        this.frame = frame;
+        this.delegate = new HashBindings(initialSize);
+    }
+
+    @Override
+    public MaterializedFrame getFrame() {
+        if (delegate instanceof HashBindings) {
+            CompilerDirectives.transferToInterpreter();
+            materialize();
+        }
+        return frame;
+    }
+
+    @Override
+    public MaterializedFrame getArgumentsFrame() {
+        return frame;
+    }
+
+    @TruffleBoundary
+    private synchronized void materialize() {
+        REnvFrameAccess current = delegate;
+        if (!(current instanceof HashBindings)) {
+            return;
+        }
+        HashBindings hash = (HashBindings) current;
+        REnvTruffleFrameAccess access = new REnvTruffleFrameAccess(frame);
+        try {
+            for (Map.Entry<String, Object> entry : hash.bindings.entrySet()) {
+                access.put(entry.getKey(), entry.getValue());
+            }
+        } catch (PutException ex) {
+            throw RInternalError.shouldNotReachHere(ex);
+        }
+        if (hash.lockedBindings != null) {
+            for (String key : hash.lockedBindings) {
+                access.lockBinding(key);
+            }
+        }
+        delegate = access;
+    }
+
+    @Override
+    public Object get(String key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public void put(String key, Object value) throws PutException {
+        delegate.put(key, value);
+    }
+
+    @Override
+    public void rm(String key) throws PutException {
+        delegate.rm(key);
+    }
+
+    @Override
+    public RStringVector ls(boolean allNames, Pattern pattern, boolean sorted) {
+        return delegate.ls(allNames, pattern, sorted);
+    }
+
+    @Override
+    public boolean bindingIsLocked(String key) {
+        return delegate.bindingIsLocked(key);
+    }
+
+    @Override
+    public void lockBindings() {
+        delegate.lockBindings();
+    }
+
+    @Override
+    public void lockBinding(String key) {
+        delegate.lockBinding(key);
+    }
+
+    @Override
+    public void unlockBinding(String key) {
+        delegate.unlockBinding(key);
+    }
+
+    /**
+     * The bindings before they are moved to the frame.
+     */
+    private static final class HashBindings extends REnvFrameAccess {
+        private final HashMap<String, Object> bindings;
+        /**
+         * Records which bindings are locked, allocated lazily.
+         */
+        private Set<String> lockedBindings;
+
+        HashBindings(int initialSize) {
+            this.bindings = new HashMap<>(Math.max(initialSize, 16));
+        }
+
+        @Override
+        public MaterializedFrame getFrame() {
+            throw RInternalError.shouldNotReachHere();
+        }
+
+        @Override
+        @TruffleBoundary
+        public Object get(String key) {
+            return bindings.get(key);
+        }
+
+        @Override
+        @TruffleBoundary
+        public void put(String key, Object value) throws PutException {
+            assert key != null;
+            assert value != null;
+            if (lockedBindings != null && lockedBindings.contains(key)) {
+                throw new PutException(RError.Message.ENV_CHANGE_BINDING, key);
+            }
+            bindings.put(key, value);
+        }
+
+        @Override
+        @TruffleBoundary
+        public void rm(String key) throws PutException {
+            assert key != null;
+            if (lockedBindings != null) {
+                lockedBindings.remove(key);
+            }
+            if (bindings.remove(key) == null) {
+                throw new PutException(RError.Message.UNKNOWN_OBJECT, key);
+            }
+        }
+
+        @Override
+        @TruffleBoundary
+        public RStringVector ls(boolean allNames, Pattern pattern, boolean sorted) {
+            ArrayList<String> matchedNamesList = new ArrayList<>(bindings.size());
+            for (String name : bindings.keySet()) {
+                if (REnvironment.includeName(name, allNames, pattern)) {
+                    matchedNamesList.add(name);
+                }
+            }
+            String[] data = matchedNamesList.toArray(new String[matchedNamesList.size()]);
+            if (sorted) {
+                Arrays.sort(data);
+            }
+            return RDataFactory.createStringVector(data, RDataFactory.COMPLETE_VECTOR);
+        }
+
+        @Override
+        @TruffleBoundary
+        public boolean bindingIsLocked(String key) {
+            return lockedBindings != null && lockedBindings.contains(key);
+        }
+
+        @Override
+        @TruffleBoundary
+        public void lockBindings() {
+            for (String key : bindings.keySet()) {
+                lockBinding(key);
+            }
+        }
+
+        @Override
+        @TruffleBoundary
+        public void lockBinding(String key) {
+            if (lockedBindings == null) {
+                lockedBindings = new HashSet<>();
+            }
+            lockedBindings.add(key);
+        }
+
+        @Override
+        @TruffleBoundary
+        public void unlockBinding(String key) {
+            if (lockedBindings != null) {
+                lockedBindings.remove(key);
+            }
+        }
+    }
+}
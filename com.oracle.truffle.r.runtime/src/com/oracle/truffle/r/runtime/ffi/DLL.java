@@ -23,6 +23,7 @@ import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RError.RErrorException;
 import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.ReturnException;
+import com.oracle.truffle.r.runtime.StartupTracer;
 import com.oracle.truffle.r.runtime.Utils;
 import com.oracle.truffle.r.runtime.context.RContext;
 import com.oracle.truffle.r.runtime.data.RDataFactory;
@@ -313,6 +314,15 @@ public class DLL {
 
     @TruffleBoundary
     public static DLLInfo loadPackageDLL(String path, boolean local, boolean now) throws DLLException {
+        StartupTracer.Span span = StartupTracer.begin(StartupTracer.Kind.DLL, path);
+        try {
+            return doLoadPackageDLL(path, local, now);
+        } finally {
+            StartupTracer.end(span);
+        }
+    }
+
+    private static DLLInfo doLoadPackageDLL(String path, boolean local, boolean now) throws DLLException {
         DLLInfo dllInfo = load(path, local, now);
         // Search for init method
         String pkgInit = R_INIT_PREFIX + dllInfo.name;
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.instrument;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.Truffle;
+import com.oracle.truffle.api.frame.Frame;
+import com.oracle.truffle.api.frame.FrameInstance.FrameAccess;
+import com.oracle.truffle.api.source.SourceSection;
+import com.oracle.truffle.r.runtime.RArguments;
+import com.oracle.truffle.r.runtime.RCaller;
+import com.oracle.truffle.r.runtime.RSource;
+import com.oracle.truffle.r.runtime.data.MemoryTracer;
+import com.oracle.truffle.r.runtime.data.RFunction;
+import com.oracle.truffle.r.runtime.data.model.RAbstractVector;
+
+/**
+ * Attributes the vector allocations reported to {@link MemoryTracer} to the R function calls on the
+ * stack. As in GnuR's {@code Rprofmem}, the attribution is by call rather than by function
+ * definition: a function that is called from two places has an entry for each call site. Walking
+ * the stack for every allocation would be prohibitively expensive, so the allocations are sampled:
+ * every allocation of at least {@code samplingInterval} bytes is recorded, smaller ones are
+ * recorded whenever the number of bytes allocated since the last sample exceeds
+ * {@code samplingInterval} and count for that many bytes. The totals are always exact.
+ *
+ * If an output stream is given, each recorded allocation is also written to it in the format of
+ * GnuR's {@code Rprofmem}, i.e., the size followed by the stack of function names.
+ *
+ * There can only be one active profiler at a time, see {@link #start} and {@link #stop}.
+ */
+public final class AllocationProfiler implements MemoryTracer.Listener {
+
+    public static final String TOP_LEVEL = "<top level>";
+
+    /**
+     * The aggregated samples of the calls of one function from one call site.
+     */
+    public static final class Entry {
+        private final String function;
+        private final String location;
+        private long samples;
+        private long selfBytes;
+        private long totalBytes;
+
+        private Entry(String function, String location) {
+            this.function = function;
+            this.location = location;
+        }
+
+        public String getFunction() {
+            return function;
+        }
+
+        /**
+         * The source location of the call site as {@code file#line}, or {@code null}.
+         */
+        public String getLocation() {
+            return location;
+        }
+
+        /**
+         * The number of samples taken while the call was the innermost one on the stack.
+         */
+        public long getSamples() {
+            return samples;
+        }
+
+        /**
+         * The (estimated) number of bytes allocated directly in the called function.
+         */
+        public long getSelfBytes() {
+            return selfBytes;
+        }
+
+        /**
+         * The (estimated) number of bytes allocated in the called function or any function it
+         * called.
+         */
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+    }
+
+    private static AllocationProfiler profiler;
+    private static boolean active;
+
+    private final long samplingInterval;
+    private final long threshold;
+    private final int maxDepth;
+    private final PrintWriter out;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long bytesUntilSample;
+    private long count;
+    private long bytes;
+    private long copies;
+    private long copiedBytes;
+
+    /**
+     * @param samplingInterval the sampling interval in bytes, {@code 0} records every allocation
+     * @param threshold allocations smaller than this (in bytes) are ignored altogether
+     * @param maxDepth the maximum number of functions recorded per sample
+     * @param out if not {@code null}, each sample is written to this stream
+     */
+    public AllocationProfiler(long samplingInterval, long threshold, int maxDepth, PrintWriter out) {
+        this.samplingInterval = samplingInterval;
+        this.threshold = threshold;
+        this.maxDepth = maxDepth;
+        this.out = out;
+        this.bytesUntilSample = samplingInterval;
+    }
+
+    /**
+     * Starts {@code newProfiler}, stopping the currently active one, if any.
+     */
+    public static synchronized void start(AllocationProfiler newProfiler) {
+        stop();
+        profiler = newProfiler;
+        active = true;
+        MemoryTracer.setAllocationListener(newProfiler);
+    }
+
+    /**
+     * Stops the active profiler, if any. Its results remain available from {@link #getProfiler()}.
+     */
+    public static synchronized void stop() {
+        if (active) {
+            MemoryTracer.setAllocationListener(null);
+            active = false;
+            if (profiler.out != null) {
+                profiler.out.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the active or the last stopped profiler, {@code null} if there was none.
+     */
+    public static synchronized AllocationProfiler getProfiler() {
+        return profiler;
+    }
+
+    public static synchronized boolean isActive() {
+        return active;
+    }
+
+    @Override
+    @TruffleBoundary
+    public void reportAllocation(RAbstractVector data) {
+        record(data);
+    }
+
+    /**
+     * The copy itself has already been reported by {@link #reportAllocation}, when it was created
+     * by {@link com.oracle.truffle.r.runtime.data.RDataFactory}, so it is only counted as a copy.
+     */
+    @Override
+    @TruffleBoundary
+    public synchronized void reportCopying(RAbstractVector source, RAbstractVector dest) {
+        long size = MemoryTracer.estimateSize(dest);
+        if (size >= threshold) {
+            copies++;
+            copiedBytes += size;
+        }
+    }
+
+    private synchronized void record(RAbstractVector vector) {
+        long size = MemoryTracer.estimateSize(vector);
+        if (size < threshold) {
+            return;
+        }
+        count++;
+        bytes += size;
+        long weight = size;
+        if (size < samplingInterval) {
+            bytesUntilSample -= size;
+            if (bytesUntilSample > 0) {
+                return;
+            }
+            bytesUntilSample += samplingInterval;
+            weight = samplingInterval;
+        }
+        sample(size, weight);
+    }
+
+    private void sample(long size, long weight) {
+        List<Entry> stack = collectStack();
+        Entry innermost = stack.isEmpty() ? getEntry(TOP_LEVEL, null) : stack.get(0);
+        innermost.samples++;
+        innermost.selfBytes += weight;
+        if (stack.isEmpty()) {
+            innermost.totalBytes += weight;
+        }
+        // recursive functions must only count once
+        HashSet<Entry> seen = new HashSet<>();
+        for (Entry entry : stack) {
+            if (seen.add(entry)) {
+                entry.totalBytes += weight;
+            }
+        }
+        if (out != null) {
+            out.print(size);
+            out.print(" :");
+            for (Entry entry : stack) {
+                out.print('"');
+                out.print(entry.function);
+                out.print("\" ");
+            }
+            out.println();
+        }
+    }
+
+    private List<Entry> collectStack() {
+        ArrayList<Entry> stack = new ArrayList<>();
+        Truffle.getRuntime().iterateFrames(frameInstance -> {
+            Frame frame = RArguments.unwrap(frameInstance.getFrame(FrameAccess.READ_ONLY, true));
+            if (RArguments.isRFrame(frame)) {
+                RFunction function = RArguments.getFunction(frame);
+                if (function != null && !function.isBuiltin()) {
+                    RCaller call = RArguments.getCall(frame);
+                    SourceSection callSite = call != null && call.isValidCaller() && !call.isPromise() ? call.getSyntaxNode().getSourceSection() : null;
+                    stack.add(getEntry(function.getRootNode().getName(), getLocation(callSite)));
+                    if (stack.size() == maxDepth) {
+                        return stack;
+                    }
+                }
+            }
+            return null;
+        });
+        return stack;
+    }
+
+    private static String getLocation(SourceSection ss) {
+        if (ss == null || ss.getSource() == null) {
+            return null;
+        }
+        return RSource.getOrigin(ss.getSource()) + "#" + ss.getStartLine();
+    }
+
+    private Entry getEntry(String function, String location) {
+        String key = location == null ? function : function + " (" + location + ")";
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(function, location);
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the sampled calls, ordered by the number of bytes they allocated themselves.
+     */
+    public synchronized List<Entry> getEntries() {
+        ArrayList<Entry> result = new ArrayList<>(entries.values());
+        result.sort((a, b) -> Long.compare(b.selfBytes, a.selfBytes));
+        return result;
+    }
+
+    /**
+     * The exact number of allocations (copies included) of at least {@code threshold} bytes.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized long getCopies() {
+        return copies;
+    }
+
+    public synchronized long getCopiedBytes() {
+        return copiedBytes;
+    }
+
+    public long getSamplingInterval() {
+        return samplingInterval;
+    }
+}
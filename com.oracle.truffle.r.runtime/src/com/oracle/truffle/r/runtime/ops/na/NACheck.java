@@ -126,6 +126,29 @@ public final class NACheck {
         }
     }
 
+    /**
+     * Creates a check that is enabled if this check is enabled, but has not seen any NA or NaN.
+     * Used to check a part of a vector on another thread, see {@link #merge(NACheck)}.
+     */
+    public NACheck copyEnabled() {
+        NACheck copy = new NACheck();
+        copy.state = state == NO_CHECK ? NO_CHECK : CHECK_DEOPT;
+        return copy;
+    }
+
+    /**
+     * Records the NA and NaN values seen by {@code other} in this check.
+     */
+    public void merge(NACheck other) {
+        if (other.state == CHECK) {
+            seenNA();
+        }
+        if (other.seenNaN && !seenNaN) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            seenNaN = true;
+        }
+    }
+
     public boolean check(int value) {
         if (state != NO_CHECK && isNA(value)) {
             if (state == CHECK_DEOPT) {
@@ -96,6 +96,13 @@ public class TestS4 extends TestRBase {
         assertEval("{ setClass(\"foo\"); setClass(\"bar\", representation(j = \"numeric\"), contains = \"foo\"); is.null(getClass(\"foo\")@prototype) }");
     }
 
+    @Test
+    public void testShow() {
+        // print and cat output of a show method must interleave in call order
+        assertEval("{ setClass(\"foo\", representation(j=\"numeric\")); setMethod(\"show\", \"foo\", function(object) { cat(\"<foo>\\n\"); print(object@j); cat(\"</foo>\\n\") }); new(\"foo\", j=42) }");
+        assertEval("{ setClass(\"foo\", representation(j=\"numeric\")); setMethod(\"show\", \"foo\", function(object) { print(object@j); cat(\"end\\n\") }); list(a=new(\"foo\", j=1:3), b=2) }");
+    }
+
     @Test
     public void testMethods() {
         // output slightly different from GNU R even though we use R's "show" method to print it
@@ -37,6 +37,7 @@ import org.junit.Test;
 import org.junit.runner.Description;
 import org.junit.runner.Result;
 
+import com.oracle.truffle.r.runtime.FastROptions;
 import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.RPerfStats;
 import com.oracle.truffle.r.runtime.ResourceHandlerFactory;
@@ -392,11 +393,28 @@ public class TestBase {
         // empty
     }
 
+    /**
+     * Runs {@code tests} with {@code option} set to {@code value}, for functionality that is not
+     * enabled by default.
+     */
+    protected static void withOption(FastROptions option, Object value, Runnable tests) {
+        Object previous = option.setRuntimeValue(value);
+        try {
+            tests.run();
+        } finally {
+            option.setRuntimeValue(previous);
+        }
+    }
+
     // support testing of FastR-only functionality (equivalent GNU R output provided separately)
     protected void assertEvalFastR(String input, String gnuROutput) {
         evalAndCompare(new String[]{"if (length(grep(\"FastR\", R.Version()$version.string)) != 1) { " + gnuROutput + " } else { " + input + " }"});
     }
 
+    protected void assertEvalFastR(TestTrait trait1, String input, String gnuROutput) {
+        evalAndCompare(new String[]{"if (length(grep(\"FastR\", R.Version()$version.string)) != 1) { " + gnuROutput + " } else { " + input + " }"}, trait1);
+    }
+
     /*
      * implementation support methods
      */
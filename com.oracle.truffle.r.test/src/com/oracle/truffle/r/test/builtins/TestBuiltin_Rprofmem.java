@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.oracle.truffle.r.test.builtins;
+
+import org.junit.Test;
+
+import com.oracle.truffle.r.test.TestBase;
+
+/**
+ * Tests Rprofmem, which reports every allocation above the threshold once.
+ */
+public class TestBuiltin_Rprofmem extends TestBase {
+    @Test
+    public void testCopies() {
+        assertEval("{ x <- runif(100000); y <- x; f <- tempfile(); Rprofmem(f, threshold=700000); x[1] <- 2; Rprofmem(NULL); r <- length(readLines(f)); unlink(f); r }");
+        assertEval("{ x <- runif(100000); f <- tempfile(); Rprofmem(f, threshold=700000); x[1] <- 2; Rprofmem(NULL); r <- length(readLines(f)); unlink(f); r }");
+        assertEval("{ g <- function(v) { v[1] <- 2; v }; x <- runif(100000); f <- tempfile(); Rprofmem(f, threshold=700000); g(x); Rprofmem(NULL); r <- length(readLines(f)); unlink(f); r }");
+    }
+}
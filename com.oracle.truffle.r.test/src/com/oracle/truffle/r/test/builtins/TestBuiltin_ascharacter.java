@@ -257,6 +257,7 @@ public class TestBuiltin_ascharacter extends TestBase {
         assertEval("{ as.character(1L) }");
         assertEval("{ as.character(TRUE) }");
         assertEval("{ as.character(1:3) }");
+        assertEval("{ as.character(c(0.1, 1/3, 0.1+0.2, -1234.5678, 1e-4, 1.5e-10, 2^60 + 0.5, 1e300, 123456.7)) }");
         assertEval("{ as.character(NULL) }");
 
         assertEval("{ as.character(list(1,2,3)) }");
@@ -185,5 +185,8 @@ public class TestBuiltin_asdouble extends TestBase {
         assertEval("{ x<-c(a=1.1, b=2.2); dim(x)<-c(1,2); attr(x, \"foo\")<-\"foo\"; y<-as.double(x); attributes(y) }");
         assertEval("{ x<-c(a=1L, b=2L); dim(x)<-c(1,2); attr(x, \"foo\")<-\"foo\"; y<-as.double(x); attributes(y) }");
         assertEval("{ as.double(NULL) }");
+        assertEval("{ as.double(c(\" 1.5 \", \"1e3\", \".5\", \"5.\", \"0x1F\", \"-Inf\", \"NaN\", \"1e-300\", \"123456789012345678901\")) }");
+        assertEval("{ as.double(c(\"nan\", \"NAN\", \"inf\", \"INFINITY\")) }");
+        assertEval("{ x <- as.double(c(\"0x1.8p1\", \"0x1p-1074\", \"0x1p-1075\", \"0x3p-1076\", \"0x123456789ABCDEF01\", \"0x1.00000000000008p0\", \"0x1.000000000000080000001p0\", \"0x1p1024\")); print(x, digits=17); x == c(3, 2^-1074, 0, 2^-1074, 20988295479420645121, 1, 1 + 2^-52, Inf) }");
     }
 }
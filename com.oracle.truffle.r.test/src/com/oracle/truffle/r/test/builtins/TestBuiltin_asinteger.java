@@ -143,5 +143,6 @@ public class TestBuiltin_asinteger extends TestBase {
         assertEval("{ as.integer(\"\") }");
         assertEval("{ as.integer(as.character(NA)) }");
         assertEval("{ as.integer(\"1\", as.character(NA)) }");
+        assertEval("{ as.integer(c(\" 12 \", \"1.9\", \"-1.9\", \"010\", \"0x10\", \"1e3\")) }");
     }
 }
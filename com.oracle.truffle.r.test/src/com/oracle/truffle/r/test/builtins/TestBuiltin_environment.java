@@ -10,8 +10,16 @@
  */
 package com.oracle.truffle.r.test.builtins;
 
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
 import org.junit.Test;
 
+import com.oracle.truffle.r.runtime.FastROptions;
 import com.oracle.truffle.r.test.TestBase;
 
 // Checkstyle: stop line length check
@@ -48,4 +56,29 @@ public class TestBuiltin_environment extends TestBase {
         assertEval("environment(NULL)");
         assertEval("{ f <- y~z; class(f) <- c('myclass', class(f)); environment(f) }");
     }
+
+    @Test
+    public void testBaseEnvironments() {
+        assertEval("{ identical(environment(print), environment(cat)) }");
+    }
+
+    @Test
+    public void testBaseSnapshot() throws IOException {
+        // the first context evaluates the base package and writes the snapshot, the second one
+        // restores its bindings from it; both must see the same bindings and shared environments
+        Path dir = Files.createTempDirectory("fastr-base-snapshot");
+        try {
+            withOption(FastROptions.BaseSnapshot, dir.toString(), () -> {
+                assertEvalFastR(Context.LongTimeout, "{ f <- 'fs <- Filter(function(f) typeof(f) == \"closure\", mget(ls(baseenv(), all.names=TRUE), baseenv())); " +
+                                "es <- Filter(function(e) !identical(e, baseenv()) && !isNamespace(e), lapply(fs, environment)); d <- list(); " +
+                                "for (e in es) if (!any(vapply(d, identical, NA, e))) d <- c(d, e); list(names(fs), length(es), length(d), paste(\"a\", 1:2), deparse(body(nchar)))'; " +
+                                "a <- .fastr.context.eval(f); b <- .fastr.context.eval(f); identical(a, b) && is.null(attr(a[[1]], 'error')) }", "TRUE");
+            });
+            if (!generatingExpected()) {
+                assertTrue("no base snapshot was written", Files.exists(dir.resolve("base.rdx")));
+            }
+        } finally {
+            Files.walk(dir).sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
 }
@@ -10,8 +10,12 @@
  */
 package com.oracle.truffle.r.test.builtins;
 
+import static org.junit.Assert.assertTrue;
+
 import org.junit.Test;
 
+import com.oracle.truffle.r.nodes.builtin.base.ParallelApply;
+import com.oracle.truffle.r.runtime.FastROptions;
 import com.oracle.truffle.r.test.TestBase;
 
 // Checkstyle: stop line length check
@@ -86,4 +90,33 @@ public class TestBuiltin_lapply extends TestBase {
 
         assertEval("{ f <- function(v) { sapply(1:3, function(k) v)}; f(1); f(2) }");
     }
+
+    @Test
+    public void testLapplyParallel() {
+        long chunks = ParallelApply.getParallelChunkCount();
+        withOption(FastROptions.ParallelApplyContexts, "2", () -> {
+            assertEval("{ sum(unlist(lapply(1:1000, function(i) i * 2))) }");
+            assertEval("{ r <- vapply(1:1000, function(i) sqrt(i), 0); c(length(r), r[c(1, 500, 501, 1000)]) }");
+            assertEval("{ r <- sapply(as.double(1:1000), function(x) { y <- x %% 7; if (y == 0) NA else y }); c(sum(is.na(r)), sum(r, na.rm=TRUE)) }");
+            // with pooled contexts, the second call reuses the contexts of the first
+            withOption(FastROptions.ContextPoolSize, "2", () -> {
+                assertEval("{ a <- lapply(1:1000, function(i) i + 1); b <- lapply(1:1000, function(i) i + 1); identical(a, b) }");
+            });
+        });
+        if (!generatingExpected()) {
+            assertTrue("no chunk was evaluated in parallel", ParallelApply.getParallelChunkCount() > chunks);
+        }
+    }
+
+    @Test
+    public void testLapplyLong() {
+        // long enough to be evaluated in parallel with -DR:ParallelApplyContexts
+        assertEval("{ sum(unlist(lapply(1:1000, function(i) i * 2))) }");
+        assertEval("{ sum(vapply(1:1000, function(i) sqrt(i), 0)) }");
+        assertEval("{ f <- function(i) sqrt(i); a <- sum(unlist(lapply(1:1000, f))); sqrt <- function(x) 0; b <- sum(unlist(lapply(1:1000, f))); rm(sqrt); c(a, b) }");
+        assertEval("{ f <- function(i) sqrt(i); attach(list(sqrt=function(x) 0), name=\"shadow\"); r <- sum(unlist(lapply(1:1000, f))); detach(\"shadow\"); r }");
+        assertEval("{ r <- lapply(1:1000, function(i) sqrt(-1)); length(r) }");
+        assertEval("{ n <- 0; r <- withCallingHandlers(lapply(1:1000, function(i) sqrt(-i)), warning=function(w) { n <<- n + 1; invokeRestart(\"muffleWarning\") }); n }");
+        assertEval("{ op <- options(warn=2); r <- tryCatch(lapply(1:1000, function(i) sqrt(-i)), error=function(e) \"error\"); options(op); r }");
+    }
 }
@@ -44,6 +44,12 @@ public class TestBuiltin_parse extends TestBase {
         assertEval("{ parse(text=\"NULL\") }");
     }
 
+    @Test
+    public void testParseRepeated() {
+        assertEval("{ p <- function() parse(text='f <- function(x, y = 2) x + y; f(1)'); identical(p(), p()) }");
+        assertEval("{ for (i in 1:3) { e <- parse(text='g <- function(a = 1) a * 2; g()'); print(eval(e[[1]])); print(eval(e[[2]])) } }");
+    }
+
     @Test
     public void testParseIdentifier() {
         assertEval("parse(text='is.null')");
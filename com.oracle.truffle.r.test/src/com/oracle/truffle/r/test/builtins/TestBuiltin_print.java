@@ -76,4 +76,15 @@ public class TestBuiltin_print extends TestBase {
         assertEval("{ x <- 42; attr(x,'myattr') <- list(k=3); attributes(x) }");
         assertEval("{ val <- 42L; attr(val, 'contrast') <- list(k=1); qr <- list(qr=val); qr }");
     }
+
+    @Test
+    public void testPrintDigits() {
+        // more digits than a double holds
+        assertEval("{ print(pi, digits=16) }");
+        assertEval("{ print(pi, digits=17) }");
+        assertEval("{ print(1/3, digits=22) }");
+        assertEval("{ print(c(0.1, 123456.7, 1e-20/3), digits=18) }");
+        assertEval("{ print(c(2.5, -1e300, 0), digits=20) }");
+        assertEval("{ print(0.1 + 0.2, digits=17) }");
+    }
 }
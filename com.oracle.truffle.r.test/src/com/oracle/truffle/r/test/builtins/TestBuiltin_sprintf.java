@@ -145,5 +145,10 @@ public class TestBuiltin_sprintf extends TestBase {
         assertEval("{ sprintf(c(\"foo %f %d\", \"bar %f %d\"), 7, 42L) }");
         assertEval("{ sprintf(c(\"foo %f %d\", \"bar %f %d\"), c(7,1), c(42L, 2L)) }");
         assertEval("{ sprintf(\"%.3g\", 1.234) }");
+        assertEval("{ sprintf(\"%s_%05d\", c(\"a\", \"b\", \"c\"), 1:3) }");
+        assertEval("{ sprintf(\"%10d|%-10d|\", 1:3, -(1:3)) }");
+        assertEval("{ sprintf(\"%+.2f %e %.3E\", c(1.5, -0.25), 12345.6789, 0.000123) }");
+        assertEval("{ sprintf(\"%5s|%-5s|%.2s\", \"ab\", \"cd\", \"efgh\") }");
+        assertEval("{ sprintf(\"%x %X %08x\", 255L, 255L, 4096L) }");
     }
 }
@@ -292,5 +292,11 @@ public class TestMiscBuiltins extends TestBase {
     @Test
     public void testTypeConvert() {
         assertEval("{ x<-as.character(list(a=\"0\", b=\"0\", c=\"0.3\")); type.convert(x, as.is=FALSE) }");
+        assertEval("{ type.convert(c(NA, \"1\", \"\", \"-7\")) }");
+        assertEval("{ type.convert(c(\"1\", \"2.5\", \"x\"), na.strings=\"x\") }");
+        assertEval("{ type.convert(c(\"T\", \"FALSE\", NA, \"true\")) }");
+        assertEval("{ type.convert(c(\"b\", \"a\", \"-\", \"b\"), na.strings=\"-\") }");
+        assertEval("{ type.convert(c(\"b\", \"a\", \"1\"), as.is=TRUE) }");
+        assertEval("{ type.convert(c(\"1,5\", \"2\", \"-0,25\"), dec=\",\") }");
     }
 }
@@ -71,6 +71,28 @@ public class TestConnections extends TestBase {
         assertEval(TestBase.template("{ con <- file(\"%0\"); readLines(con, 2) }", testDir.subDir("wl2")));
     }
 
+    @Test
+    public void testFileReadLinesEncoding() {
+        assertEval(TestBase.template("{ f <- \"%0\"; writeBin(as.raw(c(0x63, 0x61, 0x66, 0xe9, 0x0a)), f); con <- file(f, encoding=\"latin1\"); x <- readLines(con); close(con); x }",
+                        testDir.subDir("enc1")));
+        assertEval(TestBase.template("{ f <- \"%0\"; writeBin(as.raw(c(0xef, 0xbb, 0xbf, 0x61, 0x62, 0x0a, 0x63, 0x0a)), f); con <- file(f, encoding=\"UTF-8-BOM\"); x <- readLines(con); close(con); x }",
+                        testDir.subDir("enc2")));
+        assertEval(TestBase.template("{ f <- \"%0\"; writeBin(as.raw(c(0xef, 0xbb, 0xbf, 0x61, 0x62, 0x0a, 0x63, 0x0a)), f); con <- file(f, encoding=\"UTF-8\"); x <- readLines(con); close(con); nchar(x) }",
+                        testDir.subDir("enc3")));
+        assertEval(TestBase.template("{ f <- \"%0\"; x <- paste0(\"line\", 1:100000); writeLines(x, f); identical(readLines(f), x) }", testDir.subDir("enc4")));
+        assertEval(Output.IgnoreErrorContext,
+                        TestBase.template("{ n <- nrow(showConnections(all=TRUE)); try(file(\"%0\", encoding=\"no-such-encoding\"), silent=TRUE); nrow(showConnections(all=TRUE)) == n }", testDir.subDir("enc5")));
+    }
+
+    @Test
+    public void testCompressedFiles() {
+        assertEval(TestBase.template("{ f <- \"%0\"; con <- xzfile(f, \"w\"); writeLines(c(\"a\", \"b\"), con); close(con); con <- gzfile(f); x <- readLines(con); close(con); x }", testDir.subDir("xz1")));
+        assertEval(TestBase.template("{ f <- \"%0\"; con <- bzfile(f, \"w\"); writeLines(c(\"a\", \"b\"), con); close(con); con <- bzfile(f); x <- readLines(con); close(con); x }", testDir.subDir("bz1")));
+        assertEval(TestBase.template("{ f <- \"%0\"; saveRDS(list(1:10, letters), f, compress=\"xz\"); readRDS(f) }", testDir.subDir("xz2")));
+        assertEval(TestBase.template("{ f <- \"%0\"; saveRDS(list(1:10, letters), f, compress=\"bzip2\"); readRDS(f) }", testDir.subDir("bz2")));
+        assertEval(TestBase.template("{ f <- \"%0\"; x <- 1:10; y <- \"a\"; save(x, y, file=f, compress=\"xz\"); rm(x, y); load(f); list(x, y) }", testDir.subDir("xz3")));
+    }
+
     @Test
     public void testFileWriteReadChar() {
         assertEval(TestBase.template("{ writeChar(\"abc\", file(\"%0\")) }", testDir.subDir("wc1")));
@@ -81,6 +103,11 @@ public class TestConnections extends TestBase {
     public void testFileWriteReadBin() {
         assertEval(TestBase.template("{ writeBin(\"abc\", file(\"%0\", open=\"wb\")) }", testDir.subDir("wb1")));
         assertEval(TestBase.template("{ readBin(file(\"%0\", \"rb\"), 3) }", testDir.subDir("wb1")));
+        // seekable both with and without -DR:+MMapFileConnections
+        assertEval(TestBase.template("{ f <- \"%0\"; writeBin(1:10, f); con <- file(f, \"rb\"); seek(con, 8); x <- readBin(con, integer(), 3); close(con); x }", testDir.subDir("wb2")));
+        assertEval(TestBase.template("{ f <- \"%0\"; writeBin(1:10, f); con <- file(f, \"rb\"); seek(con, -8, \"end\"); x <- readBin(con, integer(), 5); close(con); x }", testDir.subDir("wb3")));
+        assertEval(TestBase.template("{ f <- \"%0\"; writeBin(1:10, f); con <- file(f); open(con, \"rb\"); readBin(con, integer(), 2); close(con); open(con, \"rb\"); x <- readBin(con, integer(), 2); close(con); x }",
+                        testDir.subDir("wb4")));
     }
 
     @Test
@@ -261,6 +261,20 @@ public class TestEnvironments extends TestBase {
         assertEval("{ h <- new.env(parent=globalenv()) ; assign(\"x\", 10, h, inherits=TRUE) ; x }");
         assertEval("{ ph <- new.env() ; h <- new.env(parent=ph) ; assign(\"x\", 10, h, inherits=TRUE) ; x }");
 
+        // hashed environments switch from a hash map to the frame when used for evaluation
+        assertEval("{ h <- new.env(hash=TRUE) ; for (i in 1:1000) assign(paste0(\"k\", i), i, h) ; rm(\"k500\", envir=h) ; c(length(ls(h)), get(\"k999\", h), exists(\"k500\", h), unlist(mget(c(\"k1\", \"k2\"), h))) }");
+        assertEval("{ h <- new.env(hash=TRUE) ; assign(\"x\", 1, h) ; assign(\".y\", 2, h) ; r <- list(ls(h), ls(h, all.names=TRUE)) ; assign(\"z\", 3, h) ; c(r, evalq(x + .y + z, h), ls(h)) }");
+        assertEval("{ h <- new.env(hash=TRUE) ; assign(\"x\", 1, h) ; c <- new.env(parent=h) ; evalq(x <- x + 1, h) ; c(get(\"x\", h), evalq(x, c)) }");
+        assertEval("{ h <- new.env(hash=TRUE) ; assign(\"x\", 1, h) ; f <- function() x ; environment(f) <- h ; assign(\"x\", 2, h) ; f() }");
+        assertEval(Output.IgnoreErrorContext, "{ h <- new.env(hash=TRUE) ; assign(\"x\", 1, h) ; lockBinding(\"x\", h) ; assign(\"x\", 2, h) }");
+        assertEval("{ h <- new.env(hash=TRUE) ; assign(\"b\", 2, h) ; assign(\"a\", 1, h) ; x <- as.list(h) ; evalq(c <- 3, h) ; y <- as.list(h) ; list(x[order(names(x))], y[order(names(y))]) }");
+        assertEval("{ h <- new.env(hash=TRUE) ; assign(\"x\", 1, h) ; f <- function() sys.function() ; environment(f) <- h ; g <- f() ; c(identical(environment(g), h), get(\"x\", environment(g))) }");
+        assertEval("{ h <- new.env(hash=TRUE) ; assign(\"x\", 1, h) ; f <- function() x ; environment(f) <- h ; environment(f) <- globalenv() ; x <- 5 ; c(f(), get(\"x\", h)) }");
+        assertEval("{ h <- new.env(hash=TRUE) ; assign(\"x\", 1, h) ; lockBinding(\"x\", h) ; evalq(y <- 2, h) ; c(bindingIsLocked(\"x\", h), bindingIsLocked(\"y\", h)) }");
+        assertEval(Output.IgnoreErrorContext, "{ h <- new.env(hash=TRUE) ; assign(\"x\", 1, h) ; lockBinding(\"x\", h) ; evalq(y <- 2, h) ; assign(\"x\", 2, h) }");
+        assertEval(Output.IgnoreErrorContext, "{ h <- new.env(hash=TRUE) ; assign(\"x\", 1, h) ; evalq(y <- 2, h) ; lockEnvironment(h, bindings=TRUE) ; evalq(x <- 3, h) }");
+        assertEval("{ h <- new.env(hash=TRUE) ; assign(\"x\", 1, h) ; evalq(y <- 2, h) ; lockBinding(\"x\", h) ; unlockBinding(\"x\", h) ; assign(\"x\", 3, h) ; get(\"x\", h) }");
+
         // Requires generic specialization
         assertEval("{ as.environment(as.environment) }");
     }
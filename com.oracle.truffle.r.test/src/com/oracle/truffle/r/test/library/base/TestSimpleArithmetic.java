@@ -12,6 +12,7 @@ package com.oracle.truffle.r.test.library.base;
 
 import org.junit.Test;
 
+import com.oracle.truffle.r.runtime.FastROptions;
 import com.oracle.truffle.r.test.TestBase;
 
 public class TestSimpleArithmetic extends TestBase {
@@ -744,6 +745,49 @@ public class TestSimpleArithmetic extends TestBase {
         assertEval("{ x <- 3 ; f <- function(z) { if (z) { x <- 1 } ; x <- x - 1L ; x } ; f(FALSE) }");
     }
 
+    @Test
+    public void testFusedArithmetic() {
+        assertEval("{ a <- c(1,2,3); b <- c(4,5,6); c <- c(7,8,9); d <- c(2,4,8); a * b + c / d }");
+        assertEval("{ a <- c(1,NA,3); b <- c(4,5,NaN); a * b - 2 / b }");
+        assertEval("{ a <- c(1,2,3); b <- c(4,5,6); a * 2 + b > 7 }");
+        assertEval("{ a <- c(1,NaN,3); b <- c(4,5,NA); a - b <= b / 2 }");
+        assertEval("{ f <- function(a, b) a * b + a / b; f(c(1,2), c(3,4)); f(1:2, 3:4) }");
+        assertEval("{ f <- function(a, b) a * b + a / b; f(c(1,2), c(3,4)); f(c(x=1,y=2), c(3,4)) }");
+        assertEval("{ f <- function(a, b) a * b + a / b; f(c(1,2), c(3,4)); f(c(1,2,3,4), c(3,4)) }");
+        assertEval("{ f <- function(a, b) a * b + a / b; f(c(1,2), c(3,4)); `*` <- function(x, y) x - y; f(c(1,2), c(3,4)) }");
+        // empty operands give an empty result and keep the call fused
+        assertEval("{ f <- function(a, b) a * b + a / b; f(c(1,2), c(3,4)); c(f(numeric(0), c(3,4)), f(c(1,2), c(3,4))) }");
+        assertEval("{ f <- function(a, b) a * b > a / b; list(f(numeric(0), 2), f(c(1,2), numeric(0)), f(c(1,2), c(3,4))) }");
+        assertEval("{ f <- function(a, b, c) a * b + c; f(1, 2, 3); f({cat(\"a\\n\"); 1}, {cat(\"b\\n\"); 2L}, {cat(\"c\\n\"); 3}) }");
+        assertEval("{ f <- function(a, b, c) a * b + c; f(1, 2, 3); f(1, {cat(\"b\\n\"); \"x\"}, {cat(\"c\\n\"); 3}) }");
+        assertEval("{ Ops.foo <- function(e1, e2) { cat(.Generic, \"\\n\"); 42 }; f <- function(a, b, c) a * b + c; f(1, 2, 3); f(structure(1, class=\"foo\"), {cat(\"b\\n\"); 2}, 3) }");
+    }
+
+    @Test
+    public void testVectorizedLong() {
+        // long enough to be computed in parallel chunks if option ParallelMapThreshold is set
+        assertEval("{ x <- as.double(1:200000); y <- x * 2; c(sum(y), anyNA(y), max(y)) }");
+        assertEval("{ x <- as.double(1:200000); y <- x / 4 + x; c(sum(y), anyNA(y)) }");
+        assertEval("{ x <- as.double(1:200000); x[c(5, 150000)] <- NA; y <- x / 2; list(sum(is.na(y)), sum(y, na.rm=TRUE), anyNA(y), max(y), y[4:6]) }");
+        assertEval("{ x <- as.double(1:200000); y <- x * c(1, NA); list(sum(is.na(y)), max(y), max(y, na.rm=TRUE)) }");
+        assertEval("{ x <- 1:200000; r <- x > 100000L; c(sum(r), anyNA(r)) }");
+        assertEval("{ x <- 1:200000; x[77777] <- NA; r <- x > 100000L; c(sum(r, na.rm=TRUE), sum(is.na(r)), anyNA(r)) }");
+        assertEval("{ f <- function(x) x * 3; a <- f(as.double(1:200000)); b <- f(c(NA, as.double(1:199999))); d <- f(as.double(1:200000)); list(anyNA(a), anyNA(b), anyNA(d), max(b), max(d)) }");
+    }
+
+    @Test
+    public void testVectorizedLongParallel() {
+        // chunks of at least 2^15 elements, so that recycling and NAs span several chunks
+        withOption(FastROptions.ParallelMapThreshold, "100000", () -> {
+            assertEval("{ x <- as.double(1:200000); y <- x / 4; z <- y + x; c(sum(z), anyNA(z), max(z)) }");
+            assertEval("{ x <- as.double(1:200000); x[c(5, 150000)] <- NA; y <- x / 2; list(sum(is.na(y)), sum(y, na.rm=TRUE), anyNA(y), max(y), y[4:6]) }");
+            assertEval("{ x <- as.double(1:200000); y <- x * c(1, NA, 3); list(sum(is.na(y)), max(y, na.rm=TRUE), y[199998:200000]) }");
+            assertEval("{ x <- as.double(1:200000); x[c(10, 190000)] <- NaN; y <- x * 2; list(sum(is.nan(y)), anyNA(y), max(y, na.rm=TRUE)) }");
+            assertEval("{ x <- as.double(1:200000); x[33333] <- NA; r <- x > 100000; c(sum(r, na.rm=TRUE), sum(is.na(r)), anyNA(r)) }");
+            assertEval("{ f <- function(x) x * 3; a <- f(as.double(1:200000)); b <- f(c(NA, as.double(1:199999))); d <- f(as.double(1:200000)); list(anyNA(a), anyNA(b), anyNA(d), max(b), max(d)) }");
+        });
+    }
+
     @Test
     public void testXor() {
         assertEval(" xor(TRUE, TRUE) ");
@@ -282,6 +282,10 @@ public class TestSimpleVectors extends TestBase {
         assertEval("{ x<-c(1,2); dim(x)<-c(1,2); x[[\"a\", \"b\"]] }");
         assertEval("{ x<-c(1,2); x[c(\"a\", \"b\")] }");
         assertEval("{ x<-c(1,2); x[[c(\"a\", \"b\")]] }");
+
+        // long names vectors are searched through a hash index
+        assertEval("{ x<-1:200; names(x)<-paste0(\"n\", 200:1); names(x)[150]<-\"n7\"; x[c(\"n1\", \"n7\", \"n100\", \"foo\", \"n1\", NA)] }");
+        assertEval("{ l<-as.list(1:100); names(l)<-paste0(\"n\", 1:100); r<-NULL; for (i in 1:10) r<-c(r, l[[\"n50\"]]); names(l)[50]<-\"m\"; c(r, l[[\"m\"]], is.null(l$n50)) }");
         assertEval("{ x<-1:2; x[c(TRUE, TRUE)] }");
         assertEval("{ x<-1:2; x[[c(TRUE, TRUE)]] }");
         assertEval(Output.IgnoreErrorContext, "{ x<-1:2; dim(x)<-c(1,2); x[2+2i, 2+2i] }");
@@ -2340,6 +2344,8 @@ public class TestSimpleVectors extends TestBase {
 
         assertEval("{ mp<-getOption(\"max.print\"); options(max.print=3); x<-c(1,2,3,4,5); print(x); options(max.print=mp) }");
         assertEval("{ mp<-getOption(\"max.print\"); options(max.print=3); x<-c(1,2,3,4,5); attr(x, \"foo\")<-\"foo\"; print(x); options(max.print=mp) }");
+        assertEval("{ mp<-getOption(\"max.print\"); options(max.print=3); x<-c(1,2,3,4,123456.75); print(x); options(max.print=mp) }");
+        assertEval("{ mp<-getOption(\"max.print\"); options(max.print=3); x<-c(a=1,b=2,c=3,d=4,eeeee=5); print(x); options(max.print=mp) }");
 
         assertEval("{ x<-integer(0); dim(x)<-c(1, 0, 0); x }");
         assertEval("{ x<-integer(0); dim(x)<-c(1, 0, 0, 2); x }");
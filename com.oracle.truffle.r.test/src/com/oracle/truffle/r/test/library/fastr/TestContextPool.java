@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.test.library.fastr;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.oracle.truffle.r.runtime.FastROptions;
+import com.oracle.truffle.r.runtime.context.ContextPool;
+import com.oracle.truffle.r.test.TestBase;
+
+// Checkstyle: stop line length check
+public class TestContextPool extends TestBase {
+
+    @Test
+    public void testReset() {
+        long reused = ContextPool.getReusedCount();
+        withOption(FastROptions.ContextPoolSize, "1", () -> {
+            // the second evaluation reuses the context of the first and must not see its changes
+            assertEvalFastR(Context.LongTimeout, "{ wd <- .fastr.context.eval('wd <- getwd(); x <- 1; options(fastr.test = 1, digits = 3); RNGkind(\"Marsaglia-Multicarry\"); set.seed(42); attach(list(y = 1), name = \"fastr.test\"); setwd(tempdir()); wd')[[1]][[1]]; " +
+                            ".fastr.context.eval(paste0('c(exists(\"x\"), exists(\"y\"), !is.null(getOption(\"fastr.test\")), getOption(\"digits\") != 7, exists(\".Random.seed\"), RNGkind()[1] != \"Mersenne-Twister\", getwd() != \"', wd, '\")'))[[1]][[1]] }",
+                            "rep(FALSE, 7)");
+            assertEvalFastR(Context.LongTimeout, "{ .fastr.context.eval('x <- 1'); .fastr.context.eval('exists(\"x\")')[[1]][[1]] }", "FALSE");
+        });
+        if (!generatingExpected()) {
+            assertTrue("no pooled context was reused", ContextPool.getReusedCount() > reused);
+        }
+    }
+}
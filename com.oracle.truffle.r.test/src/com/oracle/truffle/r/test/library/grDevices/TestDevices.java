@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.test.library.grDevices;
+
+import org.junit.Test;
+
+import com.oracle.truffle.r.test.TestBase;
+
+public class TestDevices extends TestBase {
+    @Test
+    public void testDevCur() {
+        assertEval("{ before <- dev.cur(); f <- tempfile(fileext=\".png\"); png(f); cur <- dev.cur(); invisible(dev.off()); after <- dev.cur(); unlink(f); as.integer(c(before, cur, after)) }");
+        assertEval("{ f <- tempfile(fileext=\".png\"); png(f); g <- tempfile(fileext=\".png\"); png(g); n <- as.integer(dev.cur()); invisible(dev.off(n)); cur <- as.integer(dev.cur()); invisible(dev.off()); unlink(c(f, g)); c(n, cur, as.integer(dev.cur())) }");
+    }
+
+    @Test
+    public void testPng() {
+        assertEval("{ f <- tempfile(fileext=\".png\"); png(f, width=100, height=80); plot.new(); lines(c(0, 1), c(0, 1)); invisible(dev.off()); r <- file.exists(f) && file.info(f)$size > 0; unlink(f); r }");
+        // the line is clipped to the plot region
+        assertEval("{ f <- tempfile(fileext=\".png\"); png(f, width=100, height=80); plot.new(); lines(c(-1, 2), c(0.5, 0.5)); lines(c(0, 1), c(0, 1)); invisible(dev.off()); r <- file.exists(f) && file.info(f)$size > 0; unlink(f); r }");
+        assertEval("{ d <- tempfile(); dir.create(d); png(file.path(d, \"page%03d.png\")); plot.new(); plot.new(); plot.new(); invisible(dev.off()); r <- sort(list.files(d)); unlink(d, recursive=TRUE); r }");
+        assertEval(Output.IgnoreErrorContext, "{ png(file.path(tempdir(), \"100%.png\")) }");
+        assertEval(Output.IgnoreErrorContext, "{ png(file.path(tempdir(), \"p%d%d.png\")) }");
+    }
+}
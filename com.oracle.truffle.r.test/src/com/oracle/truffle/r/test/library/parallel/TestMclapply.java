@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.test.library.parallel;
+
+import org.junit.Test;
+
+import com.oracle.truffle.r.test.TestBase;
+
+public class TestMclapply extends TestBase {
+    @Test
+    public void testErrors() {
+        assertEval(Output.IgnoreWarningContext,
+                        "{ library(parallel); r <- mclapply(1:4, function(i) if (i == 2) stop(\"boom\") else i, mc.cores=2); s <- mclapply(1:4, function(i) i * 10, mc.cores=2); list(sapply(r, inherits, \"try-error\"), unlist(s)) }");
+        assertEval("{ library(parallel); unlist(mclapply(1:4, function(i) i + 1, mc.cores=2, mc.preschedule=FALSE)) }");
+    }
+
+    @Test
+    public void testRecursive() {
+        assertEval("{ library(parallel); unlist(mclapply(1:2, function(i) sum(unlist(mclapply(1:3, function(j) i * j, mc.cores=2, mc.allow.recursive=FALSE))), mc.cores=2)) }");
+    }
+}
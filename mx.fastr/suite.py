@@ -198,6 +198,16 @@ suite = {
       "sha1" : "d7a65f54cda284f9706a750c23d64830bb740c39",
     },
 
+    "XZ-1.5" : {
+      "urls" : ["https://search.maven.org/remotecontent?filepath=org/tukaani/xz/1.5/xz-1.5.jar"],
+      "sha1" : "9c64274b7dbb65288237216e3fae7877fd3f2bee",
+    },
+
+    "COMMONS_COMPRESS" : {
+      "urls" : ["https://search.maven.org/remotecontent?filepath=org/apache/commons/commons-compress/1.12/commons-compress-1.12.jar"],
+      "sha1" : "84caa68576e345eb5e7ae61a0e5a9229eb100d7b",
+    },
+
 
   },
 
@@ -318,6 +328,8 @@ suite = {
       "dependencies" : [
         "truffle:TRUFFLE_API",
         "truffle:TRUFFLE_DEBUG",
+        "XZ-1.5",
+        "COMMONS_COMPRESS",
       ],
       "checkstyle" : "com.oracle.truffle.r.runtime",
       "javaCompliance" : "1.8",
@@ -418,6 +430,8 @@ suite = {
         "truffle:JLINE",
         "ANTLR-C-3.5",
         "ANTLR-3.5",
+        "XZ-1.5",
+        "COMMONS_COMPRESS",
         "GNUR",
         "GNU_ICONV",
       ],